@@ -0,0 +1,160 @@
+import bagel.util.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * All air support planes in a level, stored as parallel arrays indexed by plane.
+ * Planes fly from the edge of the map to the opposite edge, either left to right or top to bottom, dropping
+ * {@link Explosive}s at randomised intervals along their flight path. Planes are removed once they leave the map.
+ */
+public class AirSupports {
+    private static final int INITIAL_CAPACITY = 4;
+    private static final double HORIZONTAL_ROTATION = Math.PI / 2; // Facing down
+    private static final double VERTICAL_ROTATION = Math.PI; // Facing left
+
+    private int size = 0;
+    private TowerType[] types = new TowerType[INITIAL_CAPACITY];
+    private boolean[] flyVertical = new boolean[INITIAL_CAPACITY];
+    private double[] x = new double[INITIAL_CAPACITY];
+    private double[] y = new double[INITIAL_CAPACITY];
+    private double[] explosiveCooldown = new double[INITIAL_CAPACITY];
+
+    /**
+     * Buys a new plane. The caller alternates {@code flyVertical} for each successive plane, so if the previous plane
+     * was flying from top to bottom, this one will fly left to right and vice versa.
+     * The unfixed dimension (eg x if top to bottom) is taken from the input point.
+     * @param type type of tower, which must have {@link TowerType.Behaviour#AIR_SUPPORT} behaviour.
+     * @param position the position of the cursor when bought.
+     * @param flyVertical true to fly from top to bottom, false to fly from left to right.
+     * @param random game random number generator, used for explosive drop timers.
+     */
+    public void add(TowerType type, Point position, boolean flyVertical, GameRandom random) {
+        if (type.getBehaviour() != TowerType.Behaviour.AIR_SUPPORT) {
+            throw new IllegalArgumentException(type.getName() + " is not air support");
+        }
+        if (flyVertical) {
+            add(type, position.x, 0, true, generateExplosiveCooldown(type, random));
+        } else {
+            add(type, 0, position.y, false, generateExplosiveCooldown(type, random));
+        }
+    }
+
+    /**
+     * Adds a plane part way through its flight, e.g. when loading a {@link GameSnapshot}. Draws no random numbers.
+     * @param type type of tower.
+     * @param x x co-ordinate of plane.
+     * @param y y co-ordinate of plane.
+     * @param flyVertical true if flying from top to bottom, false if flying from left to right.
+     * @param explosiveCooldown frames until the next explosive drops.
+     */
+    public void add(TowerType type, double x, double y, boolean flyVertical, double explosiveCooldown) {
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            this.flyVertical = Arrays.copyOf(this.flyVertical, capacity);
+            this.x = Arrays.copyOf(this.x, capacity);
+            this.y = Arrays.copyOf(this.y, capacity);
+            this.explosiveCooldown = Arrays.copyOf(this.explosiveCooldown, capacity);
+        }
+        types[size] = type;
+        this.flyVertical[size] = flyVertical;
+        this.x[size] = x;
+        this.y[size] = y;
+        this.explosiveCooldown[size] = explosiveCooldown;
+        size++;
+    }
+
+    /**
+     * Generates a random number between 0 and the type's cooldown, representing the number of frames before the next
+     * explosive will drop. Technically the random number is 0 exclusive, but this is irrelevant as cooldown of 0<x<1
+     * will drop on the next frame anyway.
+     * @param type type of tower.
+     * @param random game random number generator.
+     * @return random real number between 0 and the type's cooldown.
+     */
+    private static double generateExplosiveCooldown(TowerType type, GameRandom random) {
+        return (1 - random.nextDouble()) * type.getCooldown();
+    }
+
+    /**
+     * Ticks time forward for every plane, in the order they were bought: moves it and drops an explosive if its timer
+     * has run out. Planes that have left the map are then removed. This must be called every frame.
+     * @param random game random number generator.
+     * @param explosives list to add dropped explosives to.
+     * @param width width of the map.
+     * @param height height of the map.
+     */
+    public void fly(GameRandom random, List<Explosive> explosives, int width, int height) {
+        boolean anyLeftMap = false;
+        for (int i = 0; i < size; i++) {
+            if (flyVertical[i]) {
+                y[i] += types[i].getSpeed();
+            } else {
+                x[i] += types[i].getSpeed();
+            }
+            explosiveCooldown[i]--;
+            if (explosiveCooldown[i] <= 0) {
+                explosiveCooldown[i] = generateExplosiveCooldown(types[i], random);
+                explosives.add(new Explosive(new Point(x[i], y[i]), types[i].getDamage()));
+            }
+            anyLeftMap |= x[i] >= width || y[i] >= height;
+        }
+        if (anyLeftMap) {
+            removeOutside(width, height);
+        }
+    }
+
+    /**
+     * Removes planes whose centre has left the map, keeping the rest in order.
+     * @param width width of the map.
+     * @param height height of the map.
+     */
+    private void removeOutside(int width, int height) {
+        int kept = 0;
+        for (int i = 0; i < size; i++) {
+            if (x[i] < width && y[i] < height) {
+                types[kept] = types[i];
+                flyVertical[kept] = flyVertical[i];
+                x[kept] = x[i];
+                y[kept] = y[i];
+                explosiveCooldown[kept] = explosiveCooldown[i];
+                kept++;
+            }
+        }
+        Arrays.fill(types, kept, size, null);
+        size = kept;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TowerType getType(int i) {
+        return types[i];
+    }
+
+    public boolean isFlyVertical(int i) {
+        return flyVertical[i];
+    }
+
+    public double getX(int i) {
+        return x[i];
+    }
+
+    public double getY(int i) {
+        return y[i];
+    }
+
+    /**
+     * @param i index of the plane.
+     * @return angle the plane is facing, in radians, as used to draw it.
+     */
+    public double getRotation(int i) {
+        return flyVertical[i] ? VERTICAL_ROTATION : HORIZONTAL_ROTATION;
+    }
+
+    public double getExplosiveCooldown(int i) {
+        return explosiveCooldown[i];
+    }
+}
@@ -0,0 +1,145 @@
+import bagel.Font;
+import bagel.Image;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Every image and font the game uses, loaded at most once each and shared by everything that draws them.
+ * Images are handed out as {@link Sprite}s, one per file path, so they can be asked for headless and are only loaded
+ * when first drawn. Fonts are kept per file path and size.
+ * <p>
+ * Bagel decodes images and uploads them to the GPU together in {@link Image}'s constructor, which must run on the
+ * render thread. So loading is split in two: {@link AssetCache#prefetch(Collection)} reads files on background threads
+ * while the window opens, and {@link AssetCache#preload()} then loads every known sprite on the render thread from the
+ * warm files, before the first frame, instead of the first time each one happens to be drawn.
+ */
+public class AssetCache {
+    private static final int PREFETCH_THREADS = 2;
+
+    private static AssetCache defaultCache;
+
+    private final Map<String, Sprite> sprites = new ConcurrentHashMap<>();
+    private final Map<String, Font> fonts = new ConcurrentHashMap<>();
+    private final List<Future<?>> prefetches = new ArrayList<>();
+    // Created the first time files are prefetched, and kept for the rest of the game. Its threads are daemons
+    private ExecutorService prefetchExecutor = null;
+
+    /**
+     * Gets the cache shared by the whole game.
+     * @return the game's asset cache.
+     */
+    public static synchronized AssetCache getDefault() {
+        if (defaultCache == null) {
+            defaultCache = new AssetCache();
+        }
+        return defaultCache;
+    }
+
+    /**
+     * Gets the sprite for an image file, creating it the first time the file is asked for. Safe to call headless and
+     * from any thread, but the sprite must only be drawn on the render thread.
+     * @param fileDir file path of the image.
+     * @return the shared sprite for the file.
+     */
+    public Sprite getSprite(String fileDir) {
+        return sprites.computeIfAbsent(fileDir, Sprite::new);
+    }
+
+    /**
+     * Gets the image for a file, loading it if needed. Must be called on the render thread.
+     * @param fileDir file path of the image.
+     * @return the loaded image.
+     */
+    public Image getImage(String fileDir) {
+        return getSprite(fileDir).getImage();
+    }
+
+    /**
+     * Gets a font at a given size, loading it if needed. Must be called on the render thread.
+     * @param fileDir file path of the font.
+     * @param size font size.
+     * @return the loaded font.
+     */
+    public Font getFont(String fileDir, int size) {
+        return fonts.computeIfAbsent(fileDir + "@" + size, key -> new Font(fileDir, size));
+    }
+
+    /**
+     * Starts reading files on background threads, so that loading them later finds them already in memory.
+     * Image files are also registered as sprites, so {@link AssetCache#preload()} will load them. Can be called at
+     * any time, e.g. to read the next level's map while the current one is played.
+     * @param fileDirs file paths of images and fonts.
+     */
+    public synchronized void prefetch(Collection<String> fileDirs) {
+        prefetches.removeIf(Future::isDone);
+        if (prefetchExecutor == null) {
+            prefetchExecutor = Executors.newFixedThreadPool(PREFETCH_THREADS, runnable -> {
+                Thread thread = new Thread(runnable, "asset-prefetch");
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+        for (String file : fileDirs) {
+            String fileDir = file;
+            if (fileDir.endsWith(".png")) {
+                Sprite sprite = getSprite(fileDir);
+                if (sprite.getRegion() != null) {
+                    // Read the atlas the sprite is drawn from instead
+                    fileDir = sprite.getRegion().getAtlasFile();
+                    getSprite(fileDir);
+                }
+            }
+            String prefetchFile = fileDir;
+            prefetches.add(prefetchExecutor.submit(() -> {
+                try {
+                    Files.readAllBytes(Paths.get(prefetchFile));
+                } catch (IOException e) {
+                    // Reported properly when the file is actually loaded
+                }
+            }));
+        }
+    }
+
+    /**
+     * Waits for any prefetching to finish, then loads the image of every sprite created so far.
+     * Must be called on the render thread, e.g. once the window is open and before the first frame.
+     */
+    public void preload() {
+        List<Future<?>> pending;
+        synchronized (this) {
+            pending = new ArrayList<>(prefetches);
+            prefetches.clear();
+        }
+        for (Future<?> prefetch : pending) {
+            try {
+                prefetch.get();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException e) {
+                e.printStackTrace();
+            }
+        }
+        for (Sprite sprite : new ArrayList<>(sprites.values())) {
+            sprite.load();
+        }
+    }
+
+    /**
+     * @return number of distinct images and fonts known to the cache.
+     */
+    public int size() {
+        return sprites.size() + fonts.size();
+    }
+}
@@ -0,0 +1,150 @@
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * Build-time tool that packs the game's sprite images into a few atlas images, and writes the lookup table read by
+ * {@link TextureAtlas}. Sprites drawn from the same atlas share one texture, so drawing them one after another needs
+ * no texture binds in between.
+ * <p>
+ * Images are packed tallest first into rows ("shelves"), with a transparent gutter around each so that neighbours
+ * don't bleed in when scaled or rotated. Images too large for an atlas (e.g. the panels) are left out and drawn on
+ * their own. Bagel draws an atlas section by covering the whole atlas and masking out the rest, so atlases are kept
+ * small rather than packing everything into one.
+ * <p>
+ * Usage: {@code java AtlasPacker [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code images}: directory of images to pack (default res/images)</li>
+ *     <li>{@code out}: directory to write atlas images to (default res/images/atlas)</li>
+ *     <li>{@code table}: file to write the lookup table to (default res/data/atlas.txt)</li>
+ *     <li>{@code size}: width and height of each atlas (default 256)</li>
+ *     <li>{@code gutter}: transparent pixels around each image (default 2)</li>
+ * </ul>
+ * Run it again whenever an image is added or changed.
+ */
+public class AtlasPacker {
+    private String images = "res/images";
+    private String out = "res/images/atlas";
+    private String table = "res/data/atlas.txt";
+    private int size = 256;
+    private int gutter = 2;
+
+    /**
+     * Packs the atlases from the command line.
+     * @param args settings as key=value pairs.
+     * @throws IOException if an image could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        AtlasPacker packer = new AtlasPacker();
+        Settings.apply(args, 0, packer::set);
+        packer.pack();
+    }
+
+    /**
+     * Changes one setting, using the same keys as the command line.
+     * @param key setting name.
+     * @param value setting value.
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "images":
+                images = value;
+                break;
+            case "out":
+                out = value;
+                break;
+            case "table":
+                table = value;
+                break;
+            case "size":
+                size = Integer.parseInt(value);
+                break;
+            case "gutter":
+                gutter = Integer.parseInt(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Packs every png image directly inside the image directory, writing the atlases and the lookup table.
+     * @throws IOException if an image could not be read or written.
+     */
+    public void pack() throws IOException {
+        File[] files = new File(images).listFiles((dir, name) -> name.endsWith(".png"));
+        if (files == null) {
+            throw new IOException("Could not list images in " + images);
+        }
+        Arrays.sort(files);
+
+        List<String> names = new ArrayList<>();
+        List<BufferedImage> sources = new ArrayList<>();
+        for (File file : files) {
+            BufferedImage image = ImageIO.read(file);
+            if (image.getWidth() + 2 * gutter > size || image.getHeight() + 2 * gutter > size) {
+                System.out.println("Not packing " + file.getPath() + ", too large for the atlas");
+                continue;
+            }
+            names.add(images + "/" + file.getName());
+            sources.add(image);
+        }
+        Integer[] order = new Integer[sources.size()];
+        for (int i = 0; i < order.length; i++) {
+            order[i] = i;
+        }
+        Arrays.sort(order, Comparator.comparingInt((Integer i) -> -sources.get(i).getHeight()).thenComparingInt(i -> i));
+
+        new File(out).mkdirs();
+        List<String> lines = new ArrayList<>();
+        List<BufferedImage> atlases = new ArrayList<>();
+        BufferedImage atlas = null;
+        int shelfX = 0;
+        int shelfY = 0;
+        int shelfHeight = 0;
+        for (int i : order) {
+            BufferedImage image = sources.get(i);
+            int width = image.getWidth() + 2 * gutter;
+            int height = image.getHeight() + 2 * gutter;
+            if (atlas != null && shelfX + width > size) {
+                // Start a new shelf
+                shelfX = 0;
+                shelfY += shelfHeight;
+                shelfHeight = 0;
+            }
+            if (atlas == null || shelfY + height > size) {
+                atlas = new BufferedImage(size, size, BufferedImage.TYPE_INT_ARGB);
+                atlases.add(atlas);
+                shelfX = 0;
+                shelfY = 0;
+                shelfHeight = 0;
+            }
+            atlas.getGraphics().drawImage(image, shelfX + gutter, shelfY + gutter, null);
+            lines.add(String.format("%s,%s,%d,%d,%d,%d", names.get(i), atlasFile(atlases.size() - 1),
+                    shelfX + gutter, shelfY + gutter, image.getWidth(), image.getHeight()));
+            shelfX += width;
+            shelfHeight = Math.max(shelfHeight, height);
+        }
+
+        for (int i = 0; i < atlases.size(); i++) {
+            ImageIO.write(atlases.get(i), "png", new File(atlasFile(i)));
+        }
+        try (PrintWriter writer = new PrintWriter(table)) {
+            writer.println("# Written by AtlasPacker: image,atlas image,x,y,width,height");
+            for (String line : lines) {
+                writer.println(line);
+            }
+        }
+        System.out.println("Packed " + lines.size() + " images into " + atlases.size() + " atlases");
+    }
+
+    private String atlasFile(int index) {
+        return out + "/atlas" + index + ".png";
+    }
+}
@@ -0,0 +1,288 @@
+import bagel.util.Point;
+
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.function.Consumer;
+
+/**
+ * One scenario to play headless for {@link BatchService}: a map, a wave script, towers placed on the first frame and
+ * a seed. Every wave is started as soon as the previous one ends, and the game runs until it is won, lost or runs out
+ * of frames.
+ * <p>
+ * Jobs are written one {@code key=value} setting per line, with keys:
+ * <ul>
+ *     <li>{@code map}: tmx map to play on (required)</li>
+ *     <li>{@code waves}: wave script to play (required)</li>
+ *     <li>{@code seed}: seed for all gameplay randomness (default 1)</li>
+ *     <li>{@code frames}: maximum frames to play (default 216000, one hour of play)</li>
+ *     <li>{@code gold}: starting gold (default the normal starting gold)</li>
+ *     <li>{@code tower}: {@code name,x,y} of a tower from the {@link TowerCatalog} to place, may be repeated</li>
+ *     <li>{@code projectiles}: {@code homing} or {@code scheduled} (see {@link ImpactScheduler}) (default homing)</li>
+ *     <li>{@code math}: {@code double} or {@code fixed} (see {@link FixedPoint}) (default double)</li>
+ *     <li>{@code retarget}: how far a homing projectile looks for a new target when its target leaves play, or 0 to
+ *     discard it (default {@link Simulation#DEFAULT_RETARGET_RADIUS})</li>
+ *     <li>{@code scan}: ticks between searches for a target by stationary towers that have none while cooling down
+ *     (default {@link StationaryTowers#DEFAULT_SCAN_INTERVAL})</li>
+ *     <li>{@code stream}: file to write a {@link StateStream} of the game to, or {@code tcp:<port>} to wait for one
+ *     {@link StateStreamViewer} to connect on that local port and stream to it (default none, and not allowed for jobs
+ *     run by {@link BatchService})</li>
+ * </ul>
+ * Blank lines and lines starting with {@code #} are ignored.
+ * <p>
+ * A job can also be played on its own from the command line, which may stream it, e.g. to watch a headless run live:
+ * {@code java BatchJob <job file> [key=value ...]}, where any settings given are added to the file's, e.g.
+ * {@code java BatchJob job.txt stream=tcp:7000} then {@code java StateStreamViewer tcp:7000}.
+ */
+public class BatchJob {
+    // How often waiting for a viewer checks if the job was cancelled
+    private static final int ACCEPT_POLL_MILLIS = 200;
+
+    private String map = null;
+    private String waves = null;
+    private long seed = 1;
+    private int frames = 216000;
+    private int gold = -1;
+    private boolean scheduledImpacts = false;
+    private boolean fixedPoint = false;
+    private int retargetRadius = Simulation.DEFAULT_RETARGET_RADIUS;
+    private int scanInterval = StationaryTowers.DEFAULT_SCAN_INTERVAL;
+    private String stream = null;
+    private final List<Command> placements = new ArrayList<>();
+
+    /**
+     * Plays a job file from the command line, printing its result lines.
+     * @param args job file, then settings as key=value pairs to add to the file's.
+     * @throws IOException if the job file could not be read.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: BatchJob <job file> [key=value ...]");
+            System.exit(2);
+        }
+        BatchJob job = parse(new String(Files.readAllBytes(Paths.get(args[0])), StandardCharsets.UTF_8));
+        Settings.apply(args, 1, job::set);
+        job.run(new LevelCache(), System.out::println);
+    }
+
+    /**
+     * Reads a job.
+     * @param text job settings, one per line.
+     * @return the job.
+     * @throws IllegalArgumentException if a setting is unknown or malformed, or the map or wave script is missing.
+     */
+    public static BatchJob parse(String text) {
+        BatchJob job = new BatchJob();
+        for (String line : text.split("\\R")) {
+            line = line.trim();
+            if (line.isEmpty() || line.startsWith("#")) {
+                continue;
+            }
+            String[] setting = Settings.split(line);
+            try {
+                job.set(setting[0], setting[1]);
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("Malformed number: " + line, e);
+            }
+        }
+        if (job.map == null || job.waves == null) {
+            throw new IllegalArgumentException("A job needs both map and waves");
+        }
+        return job;
+    }
+
+    private void set(String key, String value) {
+        switch (key) {
+            case "map":
+                map = value;
+                break;
+            case "waves":
+                waves = value;
+                break;
+            case "seed":
+                seed = Long.parseLong(value);
+                break;
+            case "frames":
+                frames = Integer.parseInt(value);
+                break;
+            case "gold":
+                gold = Integer.parseInt(value);
+                break;
+            case "tower":
+                String[] tower = value.split(",");
+                if (tower.length != 3) {
+                    throw new IllegalArgumentException("Expected tower=name,x,y: " + value);
+                }
+                TowerType type = TowerCatalog.getDefault().get(tower[0].trim());
+                Command.Type placement = type == null ? null : Command.placementFor(type);
+                if (placement == null) {
+                    throw new IllegalArgumentException("Unknown tower " + tower[0]);
+                }
+                placements.add(new Command(0, placement,
+                        new Point(Double.parseDouble(tower[1].trim()), Double.parseDouble(tower[2].trim()))));
+                break;
+            case "projectiles":
+                scheduledImpacts = value.equals("scheduled");
+                break;
+            case "math":
+                fixedPoint = value.equals("fixed");
+                break;
+            case "retarget":
+                retargetRadius = Integer.parseInt(value);
+                break;
+            case "scan":
+                scanInterval = Integer.parseInt(value);
+                if (scanInterval < 1) {
+                    throw new IllegalArgumentException("Expected scan of at least 1: " + value);
+                }
+                break;
+            case "stream":
+                if (value.startsWith("tcp:")) {
+                    Integer.parseInt(value.substring(4));
+                }
+                stream = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Plays the job to the end on the calling thread. Towers are not checked against blocked tiles, but are only
+     * placed if they can be afforded. Stops early, without a result line, if the thread is interrupted.
+     * One line is written to {@code output} as each wave ends:
+     * {@code wave <number> frame <frame> gold <gold> lives <lives>}, and a final line once the game ends:
+     * {@code result <won|lost|timeout> frame <frame> gold <gold> lives <lives> kills <kills> leaks <leaks>
+     * checksum <rolling checksum in hex>}.
+     * @param cache cache to read the map and wave script through.
+     * @param output receives result lines, without line separators.
+     * @return the finished game, or {@code null} if the thread was interrupted.
+     */
+    public Simulation run(LevelCache cache, Consumer<String> output) {
+        Simulation simulation = new Simulation(seed,
+                Collections.singletonList(new LevelDefinition(map, waves, cache)), true);
+        // The service already runs one job per core
+        simulation.setParallelTargeting(false);
+        simulation.setScheduledImpacts(scheduledImpacts);
+        simulation.setFixedPoint(fixedPoint);
+        simulation.setRetargetRadius(retargetRadius);
+        simulation.setScanInterval(scanInterval);
+        if (gold >= 0) {
+            simulation.getCurrentPlayer().setGold(gold);
+        }
+
+        StateStreamWriter streamWriter = openStream(simulation.getLevelDefinitions());
+
+        List<Command> commands = new ArrayList<>(placements);
+        commands.add(new Command(0, Command.Type.START_WAVE));
+        int wavesReported = 0;
+        while (simulation.getFrame() < frames && !simulation.isPlayerDead() && !simulation.isGameComplete()) {
+            if (Thread.currentThread().isInterrupted()) {
+                closeStream(streamWriter);
+                return null;
+            }
+            simulation.update(commands);
+            commands.clear();
+            if (streamWriter != null) {
+                try {
+                    streamWriter.frameComplete(simulation);
+                } catch (IOException e) {
+                    System.out.println("State stream could not be written, streaming stopped");
+                    e.printStackTrace();
+                    streamWriter = null;
+                }
+            }
+
+            Level level = simulation.getCurrentLevel();
+            if (!level.waveInProgress()) {
+                if (level.getCurrentWave() > wavesReported) {
+                    wavesReported = level.getCurrentWave();
+                    output.accept(String.format("wave %d frame %d gold %d lives %d", wavesReported,
+                            simulation.getFrame(), simulation.getCurrentPlayer().getGold(),
+                            simulation.getCurrentPlayer().getHealth()));
+                }
+                if (!level.isAllWavesStarted()) {
+                    commands.add(new Command(simulation.getFrame(), Command.Type.START_WAVE));
+                }
+            }
+        }
+
+        String result = simulation.isPlayerDead() ? "lost" : simulation.isGameComplete() ? "won" : "timeout";
+        Player player = simulation.getCurrentPlayer();
+        output.accept(String.format("result %s frame %d gold %d lives %d kills %d leaks %d checksum %016x", result,
+                simulation.getFrame(), player.getGold(), player.getHealth(), player.getKills(), player.getLeaks(),
+                simulation.getChecksum()));
+        closeStream(streamWriter);
+        return simulation;
+    }
+
+    /**
+     * Opens the job's state stream, waiting for a viewer to connect if streaming over TCP.
+     * @param levels levels of the game.
+     * @return the stream, or {@code null} if the job has no stream, it could not be opened, or the thread was
+     * interrupted while waiting for a viewer.
+     */
+    private StateStreamWriter openStream(List<LevelDefinition> levels) {
+        if (stream == null) {
+            return null;
+        }
+        try {
+            OutputStream out;
+            boolean live = false;
+            if (stream.startsWith("tcp:")) {
+                try (ServerSocket server = new ServerSocket(Integer.parseInt(stream.substring(4)), 1,
+                        InetAddress.getLoopbackAddress())) {
+                    System.out.println("Waiting for a viewer on port " + server.getLocalPort());
+                    // accept can't be interrupted, so wake up now and then to see if the job was cancelled
+                    server.setSoTimeout(ACCEPT_POLL_MILLIS);
+                    Socket viewer = null;
+                    while (viewer == null) {
+                        if (Thread.currentThread().isInterrupted()) {
+                            return null;
+                        }
+                        try {
+                            viewer = server.accept();
+                        } catch (SocketTimeoutException e) {
+                            // No viewer yet
+                        }
+                    }
+                    viewer.setTcpNoDelay(true);
+                    out = viewer.getOutputStream();
+                    live = true;
+                }
+            } else {
+                out = new FileOutputStream(stream);
+            }
+            return new StateStreamWriter(out, levels, live);
+        } catch (IOException e) {
+            System.out.println("State stream could not be opened, game will not be streamed");
+            e.printStackTrace();
+            return null;
+        }
+    }
+
+    public String getStream() {
+        return stream;
+    }
+
+    private static void closeStream(StateStreamWriter streamWriter) {
+        if (streamWriter != null) {
+            try {
+                streamWriter.close();
+            } catch (IOException e) {
+                System.out.println("State stream could not be closed");
+                e.printStackTrace();
+            }
+        }
+    }
+}
@@ -0,0 +1,171 @@
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+
+/**
+ * Long-running local service that plays {@link BatchJob}s headless, so balancing tools don't pay for a JVM start per
+ * scenario. Listens on loopback HTTP only: {@code POST /run} with a job as the body streams back the job's result lines
+ * as plain text while it plays, and {@code GET /status} reports the number of workers and cached files.
+ * <p>
+ * Each connection is handled on its own virtual thread, which waits for results and writes them out. The games
+ * themselves are CPU bound, so they run on a fixed pool of worker threads, one per core by default; jobs beyond that
+ * wait their turn. Maps and wave scripts are parsed once and shared by every job through a {@link LevelCache}.
+ * <p>
+ * Jobs can't use the {@code stream} setting, as it writes to a file or waits for a viewer (stream a job from
+ * {@link BatchJob}'s command line instead), and requests with an {@code Origin} header are refused, so web pages can't
+ * post jobs to the service.
+ * <p>
+ * Usage: {@code java BatchService [port] [workers]}, e.g.
+ * {@code curl --data-binary @job.txt http://127.0.0.1:8637/run}.
+ */
+public class BatchService {
+    private static final int DEFAULT_PORT = 8637;
+    private static final int STOP_DELAY_SECONDS = 1;
+    // Marks the end of a job's result lines
+    private static final String END_OF_JOB = "";
+
+    private final LevelCache cache = new LevelCache();
+    private final ExecutorService connectionExecutor = Executors.newVirtualThreadPerTaskExecutor();
+    private final ExecutorService workerPool;
+    private final int workers;
+    private final HttpServer server;
+
+    /**
+     * Starts the service from the command line and runs until the process is killed.
+     * @param args optional port and number of worker threads.
+     * @throws IOException if the port could not be bound.
+     */
+    public static void main(String[] args) throws IOException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        int workers = args.length > 1 ? Integer.parseInt(args[1]) : Runtime.getRuntime().availableProcessors();
+        BatchService service = new BatchService(port, workers);
+        service.start();
+        System.out.println("Batch service listening on " + service.getAddress() + " with " + workers + " workers");
+    }
+
+    /**
+     * Binds the service to a loopback port, without accepting connections yet.
+     * @param port port to listen on, or 0 for any free port.
+     * @param workers maximum number of games played at once.
+     * @throws IOException if the port could not be bound.
+     */
+    public BatchService(int port, int workers) throws IOException {
+        this.workers = workers;
+        this.workerPool = Executors.newFixedThreadPool(workers, runnable -> {
+            Thread thread = new Thread(runnable, "batch-worker");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 0);
+        server.setExecutor(connectionExecutor);
+        server.createContext("/run", this::handleRun);
+        server.createContext("/status", this::handleStatus);
+    }
+
+    /**
+     * Starts accepting jobs.
+     */
+    public void start() {
+        server.start();
+    }
+
+    /**
+     * Stops accepting jobs, and cancels any still being played.
+     */
+    public void stop() {
+        server.stop(STOP_DELAY_SECONDS);
+        workerPool.shutdownNow();
+        connectionExecutor.shutdownNow();
+    }
+
+    public InetSocketAddress getAddress() {
+        return server.getAddress();
+    }
+
+    /**
+     * Plays the job in the request body on the worker pool, streaming its result lines back as they are written.
+     * If the client goes away, the job is cancelled.
+     * @param exchange request and response.
+     * @throws IOException if the request could not be read.
+     */
+    private void handleRun(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            if (!exchange.getRequestMethod().equals("POST")) {
+                sendText(exchange, 405, "Jobs must be POSTed\n");
+                return;
+            }
+            // Browsers send an Origin header with cross-origin posts, which other local tools have no need for
+            if (exchange.getRequestHeaders().containsKey("Origin")) {
+                sendText(exchange, 403, "Jobs can't be posted from a web page\n");
+                return;
+            }
+            BatchJob job;
+            try {
+                job = BatchJob.parse(new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8));
+            } catch (IllegalArgumentException e) {
+                sendText(exchange, 400, e.getMessage() + "\n");
+                return;
+            }
+            if (job.getStream() != null) {
+                sendText(exchange, 400, "Jobs run by the service can't be streamed\n");
+                return;
+            }
+
+            BlockingQueue<String> lines = new LinkedBlockingQueue<>();
+            Future<?> game = workerPool.submit(() -> {
+                try {
+                    job.run(cache, lines::add);
+                } catch (RuntimeException e) {
+                    lines.add("error " + e);
+                } finally {
+                    lines.add(END_OF_JOB);
+                }
+            });
+
+            exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+            exchange.sendResponseHeaders(200, 0);
+            try (Writer writer = new OutputStreamWriter(exchange.getResponseBody(), StandardCharsets.UTF_8)) {
+                String line;
+                while (!(line = lines.take()).equals(END_OF_JOB)) {
+                    writer.write(line);
+                    writer.write('\n');
+                    writer.flush();
+                }
+            } catch (IOException | InterruptedException e) {
+                game.cancel(true);
+            }
+        }
+    }
+
+    /**
+     * Reports the number of workers and cached maps, wave scripts and level bundles.
+     * @param exchange request and response.
+     * @throws IOException if the response could not be written.
+     */
+    private void handleStatus(HttpExchange exchange) throws IOException {
+        try (exchange) {
+            sendText(exchange, 200, String.format("workers %d%ncached %d%n", workers, cache.size()));
+        }
+    }
+
+    private static void sendText(HttpExchange exchange, int status, String text) throws IOException {
+        byte[] body = text.getBytes(StandardCharsets.UTF_8);
+        exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=utf-8");
+        exchange.sendResponseHeaders(status, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+}
@@ -0,0 +1,92 @@
+import bagel.util.Point;
+
+/**
+ * A single player action, stamped with the frame it was applied on.
+ * All player input that changes the game state goes through commands, so recording them together with the random seed
+ * is enough to replay a whole game (see {@link InputLogWriter} and {@link ReplayRunner}).
+ */
+public class Command {
+    /**
+     * Types of player actions. The ordinal is used as the op code in input logs, so only append new types.
+     * Placements name the {@link TowerType} they place, as listed in the {@link TowerCatalog}.
+     */
+    public enum Type {
+        START_WAVE(null),
+        INCREASE_TIMESCALE(null),
+        DECREASE_TIMESCALE(null),
+        PLACE_TANK("tank"),
+        PLACE_SUPER_TANK("supertank"),
+        PLACE_AIR_SUPPORT("airsupport");
+
+        private final String towerName;
+
+        Type(String towerName) {
+            this.towerName = towerName;
+        }
+
+        /**
+         * @return true if this command places a tower and so carries a position.
+         */
+        public boolean isPlacement() {
+            return towerName != null;
+        }
+
+        /**
+         * @return name of the tower type placed, or {@code null} if this command is not a placement.
+         */
+        public String getTowerName() {
+            return towerName;
+        }
+    }
+
+    private final int frame;
+    private final Type type;
+    private final Point position;
+
+    /**
+     * Creates a new command without a position.
+     * @param frame frame the command is applied on.
+     * @param type type of action.
+     */
+    public Command(int frame, Type type) {
+        this(frame, type, null);
+    }
+
+    /**
+     * Creates a new command.
+     * @param frame frame the command is applied on.
+     * @param type type of action.
+     * @param position position of placed tower, or {@code null} if not a placement.
+     */
+    public Command(int frame, Type type, Point position) {
+        this.frame = frame;
+        this.type = type;
+        this.position = position;
+    }
+
+    /**
+     * Gets the placement command for a tower type as selected in the {@link BuyPanel}.
+     * @param towerType type of tower being bought.
+     * @return placement command type, or {@code null} if no command places this tower type.
+     */
+    public static Type placementFor(TowerType towerType) {
+        for (Type type : Type.values()) {
+            if (towerType.getName().equals(type.getTowerName())) {
+                return type;
+            }
+        }
+        return null;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public Point getPosition() {
+        return position;
+    }
+}
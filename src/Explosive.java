@@ -1,5 +1,4 @@
 import bagel.util.Point;
-import bagel.Image;
 
 /**
  * This class implements and controls the "Explosive" object.
@@ -11,7 +10,7 @@ import bagel.Image;
  * Explosives lie dormant until their timer counts down to zero, then explodes, dealing damage to all slicers in range.
  */
 public class Explosive {
-    private static final Image image = new Image("res/images/explosive.png");
+    private static final Sprite image = AssetCache.getDefault().getSprite("res/images/explosive.png");
     private static final int range = 200;
 
     private final int damage;
@@ -29,13 +28,6 @@ public class Explosive {
         this.damage = damage;
     }
 
-    /**
-     * Renders the explosive image at its given position
-     */
-    public void draw() {
-        image.draw(position.x, position.y);
-    }
-
     /**
      * Ticks time down for the explosion timer for one frame, returning true if it explodes.
      * Should be called every frame.
@@ -54,10 +46,22 @@ public class Explosive {
         this.position = position;
     }
 
+    public Double getTimeToExplosion() {
+        return timeToExplosion;
+    }
+
+    public void setTimeToExplosion(Double timeToExplosion) {
+        this.timeToExplosion = timeToExplosion;
+    }
+
     public int getDamage() {
         return damage;
     }
 
+    public static Sprite getImage() {
+        return image;
+    }
+
     public static int getRange() {
         return range;
     }
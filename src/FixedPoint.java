@@ -0,0 +1,122 @@
+import bagel.util.Point;
+
+/**
+ * Fixed point maths for the simulation's fixed point mode (see {@link Simulation#setFixedPoint(boolean)}).
+ * Co-ordinates and speeds are held as ints counting 1/256ths of a pixel, and all movement and range checks are done
+ * in integer arithmetic, so results never depend on floating point rounding. Distances are compared squared, so no
+ * square roots are needed except to scale a movement vector, which uses an exact integer square root.
+ * <p>
+ * Every fixed point value converts to a double exactly, so the {@link Point}s written from fixed point positions for
+ * drawing and targeting hold exactly the same positions.
+ */
+public final class FixedPoint {
+    // Bits after the binary point, so values count 1/256ths of a pixel
+    public static final int FRACTION_BITS = 8;
+    public static final int ONE = 1 << FRACTION_BITS;
+
+    private FixedPoint() {
+    }
+
+    /**
+     * @param value value in pixels.
+     * @return nearest fixed point value.
+     */
+    public static int toFixed(double value) {
+        return (int) Math.round(value * ONE);
+    }
+
+    /**
+     * @param value fixed point value.
+     * @return the same value in pixels, exactly.
+     */
+    public static double toDouble(int value) {
+        return (double) value / ONE;
+    }
+
+    /**
+     * Rounds a point to the nearest point that has exact fixed point co-ordinates.
+     * @param point point in pixels.
+     * @return the rounded point.
+     */
+    public static Point snap(Point point) {
+        return new Point(toDouble(toFixed(point.x)), toDouble(toFixed(point.y)));
+    }
+
+    /**
+     * @param dx fixed point x distance.
+     * @param dy fixed point y distance.
+     * @return squared length, in squared fixed point units.
+     */
+    public static long lengthSquared(long dx, long dy) {
+        return dx * dx + dy * dy;
+    }
+
+    /**
+     * @param range whole number of pixels.
+     * @return the range squared, in squared fixed point units, to compare with {@link #lengthSquared(long, long)}.
+     */
+    public static long rangeSquared(int range) {
+        long fixed = (long) range * ONE;
+        return fixed * fixed;
+    }
+
+    /**
+     * Works out the integer square root, so that vectors are scaled the same on every machine.
+     * @param value non-negative value.
+     * @return largest number whose square is at most {@code value}.
+     */
+    public static long sqrt(long value) {
+        long root = (long) Math.sqrt((double) value);
+        while (root * root > value) {
+            root--;
+        }
+        while ((root + 1) * (root + 1) <= value) {
+            root++;
+        }
+        return root;
+    }
+
+    /**
+     * Scales one component of a direction to a speed, rounding towards zero.
+     * @param component fixed point component of the direction.
+     * @param length fixed point length of the direction, greater than 0.
+     * @param speed fixed point speed.
+     * @return fixed point component of the movement vector.
+     */
+    public static int scale(long component, long length, int speed) {
+        return (int) (component * speed / length);
+    }
+
+    /**
+     * Moves a point a step towards another, in the same way as {@link Projectile#move()} but in fixed point.
+     * @param from point to move from, with exact fixed point co-ordinates.
+     * @param to point to move towards.
+     * @param speed distance to move, in pixels.
+     * @return the moved point, or {@code from} if the two points are the same.
+     */
+    public static Point moveTowards(Point from, Point to, double speed) {
+        int x = toFixed(from.x);
+        int y = toFixed(from.y);
+        long dx = toFixed(to.x) - x;
+        long dy = toFixed(to.y) - y;
+        long length = sqrt(lengthSquared(dx, dy));
+        if (length == 0) {
+            return from;
+        }
+        int fixedSpeed = toFixed(speed);
+        return new Point(toDouble(x + scale(dx, length, fixedSpeed)), toDouble(y + scale(dy, length, fixedSpeed)));
+    }
+
+    /**
+     * Checks if two points are within a distance of each other, in the same way as {@link Point#distanceTo(Point)}
+     * but in fixed point.
+     * @param a first point.
+     * @param b second point.
+     * @param distance distance in pixels.
+     * @return true if the points are at most {@code distance} apart, false otherwise.
+     */
+    public static boolean isWithin(Point a, Point b, double distance) {
+        long fixedDistance = toFixed(distance);
+        return lengthSquared(toFixed(a.x) - toFixed(b.x), toFixed(a.y) - toFixed(b.y)) <= fixedDistance * fixedDistance;
+    }
+}
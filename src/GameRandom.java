@@ -0,0 +1,46 @@
+/**
+ * Seeded pseudo-random number generator used for all gameplay randomness (child slicer offsets, air support explosive
+ * timers). Replaces {@code Math.random()} so that a game can be replayed exactly from its seed.
+ * Uses the SplitMix64 algorithm, whose whole state is one {@code long}, so it can also be saved and restored.
+ */
+public class GameRandom {
+    private static final long GOLDEN_GAMMA = 0x9E3779B97F4A7C15L;
+    private static final double DOUBLE_UNIT = 0x1.0p-53;
+
+    private long state;
+
+    /**
+     * Creates a new random number generator.
+     * @param seed starting seed. Two generators with the same seed produce the same sequence.
+     */
+    public GameRandom(long seed) {
+        this.state = seed;
+    }
+
+    /**
+     * Generates the next 64 random bits.
+     * @return random long.
+     */
+    public long nextLong() {
+        long z = (state += GOLDEN_GAMMA);
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+     * Generates a random double, drop-in replacement for {@code Math.random()}.
+     * @return random real number between 0 (inclusive) and 1 (exclusive).
+     */
+    public double nextDouble() {
+        return (nextLong() >>> 11) * DOUBLE_UNIT;
+    }
+
+    public long getState() {
+        return state;
+    }
+
+    public void setState(long state) {
+        this.state = state;
+    }
+}
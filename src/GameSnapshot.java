@@ -0,0 +1,497 @@
+import bagel.util.Point;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Saves and loads the full state of a {@link Simulation} as a compact, versioned binary snapshot.
+ * Entities are written column by column (e.g. every slicer's x, then every slicer's y), so each column is one bulk
+ * copy, and references between entities (a projectile's target slicer, an image) are written as indices.
+ * Derived state such as movement vectors is not saved, as it is recalculated at the start of every tick.
+ * <p>
+ * Layout (little-endian), after the magic number and version:
+ * <ul>
+ *     <li>Level definitions, then game-wide state (level, frame, checksum, random state, timescale, flags, retarget
+ *     radius, scan interval)</li>
+ *     <li>Player gold and health, and the level's wave cursor</li>
+ *     <li>Current wave events: timer, spawns remaining, complete flag and slicer count columns</li>
+ *     <li>Slicers: type, x, y, destination and health columns</li>
+ *     <li>Image path table</li>
+ *     <li>Stationary towers: type, x, y, facing x, facing y, cooldown, target slicer index and ticks to scan
+ *     columns</li>
+ *     <li>Air support: type, direction, x, y and explosive cooldown columns</li>
+ *     <li>Projectiles: image index, x, y, damage and target slicer index columns</li>
+ *     <li>Scheduled impacts: the same columns as projectiles (x and y being where it was fired), then ticks since
+ *     fired and ticks until impact columns</li>
+ *     <li>Explosives: x, y, damage and timer columns</li>
+ * </ul>
+ */
+public class GameSnapshot {
+    private static final int MAGIC = 0x53445356;
+    private static final short VERSION = 6;
+
+    /**
+     * Writes a snapshot of the game to a file, replacing it if it exists.
+     * @param simulation game to save.
+     * @param fileDir file path to write to.
+     * @throws IOException if the file could not be written.
+     */
+    public static void save(Simulation simulation, String fileDir) throws IOException {
+        ByteBuffer buffer = write(simulation);
+        try (FileChannel channel = FileChannel.open(Paths.get(fileDir), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+        }
+    }
+
+    /**
+     * Loads a game from a snapshot file.
+     * @param fileDir file path to read from.
+     * @param headless true to run without a window (no maps or images are loaded), false otherwise.
+     * @return game in the saved state.
+     * @throws IOException if the file could not be read or is not a snapshot.
+     */
+    public static Simulation load(String fileDir, boolean headless) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileDir), StandardOpenOption.READ)) {
+            ByteBuffer buffer = ByteBuffer.allocateDirect((int) channel.size());
+            while (buffer.hasRemaining() && channel.read(buffer) >= 0) {
+                // Keep reading until the whole file is in the buffer
+            }
+            buffer.flip();
+            return read(buffer, headless);
+        }
+    }
+
+    /**
+     * Writes a snapshot of the game to a new buffer.
+     * @param simulation game to save.
+     * @return buffer holding the snapshot, ready to be read or written to a channel.
+     */
+    public static ByteBuffer write(Simulation simulation) {
+        Level level = simulation.getCurrentLevel();
+        List<WaveEvent> events = level.getCurrentWaveEvents();
+        List<Slicer> slicers = new ArrayList<>();
+        for (WaveEvent event : events) {
+            slicers.addAll(event.getSlicerList());
+        }
+        StationaryTowers towers = simulation.getStationaryTowers();
+        AirSupports airSupports = simulation.getAirSupports();
+        List<Projectile> projectiles = simulation.getProjectileList();
+        List<ImpactScheduler.ScheduledImpact> impacts = simulation.getImpactScheduler().getImpacts();
+        long tick = simulation.getImpactScheduler().getTick();
+        List<Explosive> explosives = simulation.getExplosiveList();
+        List<String> images = new ArrayList<>();
+        for (Projectile projectile : projectiles) {
+            if (!images.contains(projectile.getImage().getFileDir())) {
+                images.add(projectile.getImage().getFileDir());
+            }
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            if (!images.contains(impact.getProjectile().getImage().getFileDir())) {
+                images.add(impact.getProjectile().getImage().getFileDir());
+            }
+        }
+
+        int size = 79 + events.size() * 17 + slicers.size() * 25 + towers.size() * 49 + airSupports.size() * 26
+                + projectiles.size() * 26 + impacts.size() * 34 + explosives.size() * 28;
+        for (LevelDefinition definition : simulation.getLevelDefinitions()) {
+            size += stringSize(definition.getMapFile()) + stringSize(definition.getWaveFile());
+        }
+        for (String image : images) {
+            size += stringSize(image);
+        }
+        ByteBuffer buffer = ByteBuffer.allocateDirect(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        // Game-wide state
+        buffer.putInt(MAGIC).putShort(VERSION);
+        buffer.putShort((short) simulation.getLevelDefinitions().size());
+        for (LevelDefinition definition : simulation.getLevelDefinitions()) {
+            putString(buffer, definition.getMapFile());
+            putString(buffer, definition.getWaveFile());
+        }
+        buffer.putInt(simulation.getLevelNumber());
+        buffer.putInt(simulation.getFrame());
+        buffer.putLong(simulation.getRollingChecksum());
+        buffer.putLong(simulation.getRandom().getState());
+        buffer.put((byte) simulation.getTimeScale());
+        buffer.put((byte) ((simulation.isGoldAwarded() ? 1 : 0) | (simulation.isLastAirSupportVertical() ? 2 : 0)
+                | (simulation.isScheduledImpacts() ? 4 : 0) | (simulation.isFixedPoint() ? 8 : 0)));
+        buffer.putShort((short) simulation.getRetargetRadius());
+        buffer.putShort((short) simulation.getScanInterval());
+        buffer.putInt(simulation.getCurrentPlayer().getGold());
+        buffer.putInt(simulation.getCurrentPlayer().getHealth());
+        buffer.putInt(level.getCurrentWave());
+        buffer.put((byte) (level.isAllWavesStarted() ? 1 : 0));
+
+        // Wave events
+        buffer.putShort((short) events.size());
+        for (WaveEvent event : events) {
+            buffer.putDouble(event.getCurrentTimer());
+        }
+        for (WaveEvent event : events) {
+            buffer.putInt(event.getSlicersToSpawnRemaining());
+        }
+        for (WaveEvent event : events) {
+            buffer.put((byte) (event.isWaveEventComplete() ? 1 : 0));
+        }
+        for (WaveEvent event : events) {
+            buffer.putInt(event.getSlicerList().size());
+        }
+
+        // Slicers
+        Map<Slicer, Integer> slicerIndex = new IdentityHashMap<>();
+        buffer.putInt(slicers.size());
+        for (int i = 0; i < slicers.size(); i++) {
+            slicerIndex.put(slicers.get(i), i);
+            buffer.put((byte) slicers.get(i).getType().getId());
+        }
+        for (Slicer slicer : slicers) {
+            buffer.putDouble(slicer.getPosition().x);
+        }
+        for (Slicer slicer : slicers) {
+            buffer.putDouble(slicer.getPosition().y);
+        }
+        for (Slicer slicer : slicers) {
+            buffer.putInt(slicer.getDstNum());
+        }
+        for (Slicer slicer : slicers) {
+            buffer.putInt(slicer.getHealth());
+        }
+
+        // Image paths
+        buffer.putShort((short) images.size());
+        for (String image : images) {
+            putString(buffer, image);
+        }
+
+        // Stationary towers
+        buffer.putInt(towers.size());
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.put((byte) towers.getType(i).getId());
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putDouble(towers.getPosition(i).x);
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putDouble(towers.getPosition(i).y);
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putDouble(towers.getFaceX(i));
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putDouble(towers.getFaceY(i));
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putDouble(towers.getCurrentCooldown(i));
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            Integer target = slicerIndex.get(towers.getTarget(i));
+            buffer.putInt(target == null ? -1 : target);
+        }
+        for (int i = 0; i < towers.size(); i++) {
+            buffer.putInt(towers.getTicksToScan(i));
+        }
+
+        // Air support
+        buffer.putInt(airSupports.size());
+        for (int i = 0; i < airSupports.size(); i++) {
+            buffer.put((byte) airSupports.getType(i).getId());
+        }
+        for (int i = 0; i < airSupports.size(); i++) {
+            buffer.put((byte) (airSupports.isFlyVertical(i) ? 1 : 0));
+        }
+        for (int i = 0; i < airSupports.size(); i++) {
+            buffer.putDouble(airSupports.getX(i));
+        }
+        for (int i = 0; i < airSupports.size(); i++) {
+            buffer.putDouble(airSupports.getY(i));
+        }
+        for (int i = 0; i < airSupports.size(); i++) {
+            buffer.putDouble(airSupports.getExplosiveCooldown(i));
+        }
+
+        // Projectiles
+        buffer.putInt(projectiles.size());
+        for (Projectile projectile : projectiles) {
+            buffer.putShort((short) images.indexOf(projectile.getImage().getFileDir()));
+        }
+        for (Projectile projectile : projectiles) {
+            buffer.putDouble(projectile.getPosition().x);
+        }
+        for (Projectile projectile : projectiles) {
+            buffer.putDouble(projectile.getPosition().y);
+        }
+        for (Projectile projectile : projectiles) {
+            buffer.putInt(projectile.getDamage());
+        }
+        for (Projectile projectile : projectiles) {
+            // Target can already be dead (and removed, or even reused by the slicer pool) if it was killed after the
+            // projectile moved this tick
+            Integer target = projectile.checkTargetIsAlive() ? slicerIndex.get(projectile.getTarget()) : null;
+            buffer.putInt(target == null ? -1 : target);
+        }
+
+        // Scheduled impacts
+        buffer.putInt(impacts.size());
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putShort((short) images.indexOf(impact.getProjectile().getImage().getFileDir()));
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putDouble(impact.getProjectile().getPosition().x);
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putDouble(impact.getProjectile().getPosition().y);
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putInt(impact.getProjectile().getDamage());
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            Projectile projectile = impact.getProjectile();
+            Integer target = projectile.checkTargetIsAlive() ? slicerIndex.get(projectile.getTarget()) : null;
+            buffer.putInt(target == null ? -1 : target);
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putInt((int) (tick - impact.getFiredTick()));
+        }
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            buffer.putInt((int) (impact.getImpactTick() - tick));
+        }
+
+        // Explosives
+        buffer.putInt(explosives.size());
+        for (Explosive explosive : explosives) {
+            buffer.putDouble(explosive.getPosition().x);
+        }
+        for (Explosive explosive : explosives) {
+            buffer.putDouble(explosive.getPosition().y);
+        }
+        for (Explosive explosive : explosives) {
+            buffer.putInt(explosive.getDamage());
+        }
+        for (Explosive explosive : explosives) {
+            buffer.putDouble(explosive.getTimeToExplosion());
+        }
+
+        buffer.flip();
+        return buffer;
+    }
+
+    /**
+     * Reads a game from a snapshot buffer.
+     * @param buffer buffer positioned at the start of a snapshot.
+     * @param headless true to run without a window (no maps or images are loaded), false otherwise.
+     * @return game in the saved state.
+     * @throws IOException if the buffer does not hold a snapshot of this version.
+     */
+    public static Simulation read(ByteBuffer buffer, boolean headless) throws IOException {
+        buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " snapshot");
+        }
+
+        // Game-wide state
+        List<LevelDefinition> definitions = new ArrayList<>();
+        int numberOfLevels = buffer.getShort();
+        for (int i = 0; i < numberOfLevels; i++) {
+            definitions.add(new LevelDefinition(getString(buffer), getString(buffer)));
+        }
+        Simulation simulation = new Simulation(0, definitions, headless);
+        int levelNumber = buffer.getInt();
+        int frame = buffer.getInt();
+        long rollingChecksum = buffer.getLong();
+        long randomState = buffer.getLong();
+        int timeScale = buffer.get();
+        int flags = buffer.get();
+        simulation.restore(levelNumber, frame, rollingChecksum, timeScale, (flags & 1) != 0, (flags & 2) != 0);
+        simulation.setScheduledImpacts((flags & 4) != 0);
+        simulation.setFixedPoint((flags & 8) != 0);
+        simulation.setRetargetRadius(buffer.getShort());
+        simulation.setScanInterval(buffer.getShort());
+        simulation.getCurrentPlayer().setGold(buffer.getInt());
+        simulation.getCurrentPlayer().setHealth(buffer.getInt());
+        Level level = simulation.getCurrentLevel();
+        level.restoreWave(buffer.getInt(), buffer.get() != 0);
+
+        // Wave events
+        List<WaveEvent> events = level.getCurrentWaveEvents();
+        int numberOfEvents = buffer.getShort();
+        if (numberOfEvents != events.size()) {
+            throw new IOException("Snapshot does not match wave file: expected " + events.size() + " events");
+        }
+        double[] eventTimers = new double[numberOfEvents];
+        int[] remaining = new int[numberOfEvents];
+        int[] slicerCounts = new int[numberOfEvents];
+        buffer.asDoubleBuffer().get(eventTimers);
+        buffer.position(buffer.position() + numberOfEvents * Double.BYTES);
+        buffer.asIntBuffer().get(remaining);
+        buffer.position(buffer.position() + numberOfEvents * Integer.BYTES);
+        for (int i = 0; i < numberOfEvents; i++) {
+            events.get(i).restore(eventTimers[i], remaining[i], buffer.get() != 0);
+        }
+        buffer.asIntBuffer().get(slicerCounts);
+        buffer.position(buffer.position() + numberOfEvents * Integer.BYTES);
+
+        // Slicers
+        int numberOfSlicers = buffer.getInt();
+        byte[] types = new byte[numberOfSlicers];
+        buffer.get(types);
+        double[] x = getDoubles(buffer, numberOfSlicers);
+        double[] y = getDoubles(buffer, numberOfSlicers);
+        int[] dstNums = getInts(buffer, numberOfSlicers);
+        int[] health = getInts(buffer, numberOfSlicers);
+        Slicer[] slicers = new Slicer[numberOfSlicers];
+        int eventIndex = 0;
+        int eventEnd = numberOfEvents > 0 ? slicerCounts[0] : 0;
+        for (int i = 0; i < numberOfSlicers; i++) {
+            while (i >= eventEnd) {
+                eventEnd += slicerCounts[++eventIndex];
+            }
+            Slicer slicer = simulation.getSlicerPool().acquire(SlicerCatalog.getDefault().get(types[i]),
+                    events.get(eventIndex).getPath());
+            slicer.setPosition(new Point(x[i], y[i]));
+            slicer.setDstNum(dstNums[i]);
+            slicer.setHealth(health[i]);
+            events.get(eventIndex).getSlicerList().add(slicer);
+            slicers[i] = slicer;
+        }
+
+        // Image paths
+        int numberOfImages = buffer.getShort();
+        Sprite[] images = new Sprite[numberOfImages];
+        for (int i = 0; i < numberOfImages; i++) {
+            images[i] = AssetCache.getDefault().getSprite(getString(buffer));
+        }
+
+        // Stationary towers
+        TowerCatalog towerCatalog = TowerCatalog.getDefault();
+        int numberOfTowers = buffer.getInt();
+        byte[] towerTypes = new byte[numberOfTowers];
+        buffer.get(towerTypes);
+        x = getDoubles(buffer, numberOfTowers);
+        y = getDoubles(buffer, numberOfTowers);
+        double[] faceX = getDoubles(buffer, numberOfTowers);
+        double[] faceY = getDoubles(buffer, numberOfTowers);
+        double[] cooldowns = getDoubles(buffer, numberOfTowers);
+        int[] towerTargets = getInts(buffer, numberOfTowers);
+        int[] ticksToScan = getInts(buffer, numberOfTowers);
+        for (int i = 0; i < numberOfTowers; i++) {
+            int tower = simulation.getStationaryTowers().add(towerCatalog.get(towerTypes[i]), new Point(x[i], y[i]));
+            simulation.getStationaryTowers().setFacing(tower, faceX[i], faceY[i]);
+            simulation.getStationaryTowers().setCurrentCooldown(tower, cooldowns[i]);
+            simulation.getStationaryTowers().setTicksToScan(tower, ticksToScan[i]);
+            if (towerTargets[i] >= 0) {
+                simulation.getStationaryTowers().lockOn(tower, slicers[towerTargets[i]]);
+                // Keep the saved facing, as locking on turns the tower
+                simulation.getStationaryTowers().setFacing(tower, faceX[i], faceY[i]);
+            }
+        }
+
+        // Air support
+        int numberOfAirSupports = buffer.getInt();
+        towerTypes = new byte[numberOfAirSupports];
+        buffer.get(towerTypes);
+        byte[] vertical = new byte[numberOfAirSupports];
+        buffer.get(vertical);
+        x = getDoubles(buffer, numberOfAirSupports);
+        y = getDoubles(buffer, numberOfAirSupports);
+        cooldowns = getDoubles(buffer, numberOfAirSupports);
+        for (int i = 0; i < numberOfAirSupports; i++) {
+            simulation.getAirSupports().add(towerCatalog.get(towerTypes[i]), x[i], y[i], vertical[i] != 0, cooldowns[i]);
+        }
+
+        // Projectiles
+        int numberOfProjectiles = buffer.getInt();
+        short[] imageIndices = new short[numberOfProjectiles];
+        buffer.asShortBuffer().get(imageIndices);
+        buffer.position(buffer.position() + numberOfProjectiles * Short.BYTES);
+        x = getDoubles(buffer, numberOfProjectiles);
+        y = getDoubles(buffer, numberOfProjectiles);
+        int[] damage = getInts(buffer, numberOfProjectiles);
+        int[] targets = getInts(buffer, numberOfProjectiles);
+        for (int i = 0; i < numberOfProjectiles; i++) {
+            // Projectiles with a dead target would be discarded next tick anyway
+            if (targets[i] >= 0) {
+                Projectile projectile = new Projectile(images[imageIndices[i]], new Point(x[i], y[i]),
+                        slicers[targets[i]], damage[i]);
+                projectile.track();
+                simulation.getProjectileList().add(projectile);
+            }
+        }
+
+        // Scheduled impacts
+        int numberOfImpacts = buffer.getInt();
+        imageIndices = new short[numberOfImpacts];
+        buffer.asShortBuffer().get(imageIndices);
+        buffer.position(buffer.position() + numberOfImpacts * Short.BYTES);
+        x = getDoubles(buffer, numberOfImpacts);
+        y = getDoubles(buffer, numberOfImpacts);
+        damage = getInts(buffer, numberOfImpacts);
+        targets = getInts(buffer, numberOfImpacts);
+        int[] ticksSinceFired = getInts(buffer, numberOfImpacts);
+        int[] ticksUntilImpact = getInts(buffer, numberOfImpacts);
+        ImpactScheduler impactScheduler = simulation.getImpactScheduler();
+        for (int i = 0; i < numberOfImpacts; i++) {
+            if (targets[i] >= 0) {
+                Projectile projectile = new Projectile(images[imageIndices[i]], new Point(x[i], y[i]),
+                        slicers[targets[i]], damage[i]);
+                impactScheduler.schedule(projectile, impactScheduler.getTick() - ticksSinceFired[i], impactScheduler.getTick() + ticksUntilImpact[i]);
+            }
+        }
+
+        // Explosives
+        int numberOfExplosives = buffer.getInt();
+        x = getDoubles(buffer, numberOfExplosives);
+        y = getDoubles(buffer, numberOfExplosives);
+        damage = getInts(buffer, numberOfExplosives);
+        double[] explosiveTimers = getDoubles(buffer, numberOfExplosives);
+        for (int i = 0; i < numberOfExplosives; i++) {
+            Explosive explosive = new Explosive(new Point(x[i], y[i]), damage[i]);
+            explosive.setTimeToExplosion(explosiveTimers[i]);
+            simulation.getExplosiveList().add(explosive);
+        }
+
+        // Restored last, so nothing above can disturb it
+        simulation.getRandom().setState(randomState);
+        return simulation;
+    }
+
+    private static double[] getDoubles(ByteBuffer buffer, int n) {
+        double[] column = new double[n];
+        buffer.asDoubleBuffer().get(column);
+        buffer.position(buffer.position() + n * Double.BYTES);
+        return column;
+    }
+
+    private static int[] getInts(ByteBuffer buffer, int n) {
+        int[] column = new int[n];
+        buffer.asIntBuffer().get(column);
+        buffer.position(buffer.position() + n * Integer.BYTES);
+        return column;
+    }
+
+    private static int stringSize(String string) {
+        return Short.BYTES + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,260 @@
+import bagel.util.Point;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * Schedules projectile hits in advance instead of flying projectiles tick by tick.
+ * Slicers follow a known polyline at a constant speed, so when a tower fires, the tick on which a homing projectile
+ * would reach its target can be solved straight away, in closed form (see
+ * {@link ImpactScheduler#ticksToImpact(Point, Slicer, double[])}).
+ * The hit is queued for that tick, and the projectile's on-screen position is only interpolated when drawing, so
+ * projectiles in flight cost nothing per tick. Hits due on the same tick are applied in the order they were fired.
+ * Hits on slicers that are already dead, or that reach the end of the polyline first, are dropped.
+ */
+public class ImpactScheduler {
+    private static final int MAX_FLIGHT_TICKS = 600;
+
+    private final PriorityQueue<ScheduledImpact> impacts = new PriorityQueue<>(
+            Comparator.comparingLong(ScheduledImpact::getImpactTick).thenComparingLong(ScheduledImpact::getSequence));
+    private final Collection<ScheduledImpact> impactView = Collections.unmodifiableCollection(impacts);
+    // Arc lengths of each polyline slicers have been fired at, as slicers don't hold them
+    private final Map<List<Point>, double[]> arcLengths = new IdentityHashMap<>();
+
+    private long tick = 0;
+    private long sequence = 0;
+    // Sums over every queued hit, kept as hits are queued and applied so the checksum never walks the queue
+    private long impactTickSum = 0;
+    private long damageSum = 0;
+
+    /**
+     * A projectile in flight whose hit has been scheduled.
+     */
+    public static class ScheduledImpact {
+        private final Projectile projectile;
+        private final long targetSerial;
+        private final long firedTick;
+        private final long impactTick;
+        private final long sequence;
+
+        private ScheduledImpact(Projectile projectile, long firedTick, long impactTick, long sequence) {
+            this.projectile = projectile;
+            this.targetSerial = projectile.getTarget().getSerial();
+            this.firedTick = firedTick;
+            this.impactTick = impactTick;
+            this.sequence = sequence;
+        }
+
+        public Projectile getProjectile() {
+            return projectile;
+        }
+
+        /**
+         * @return spawn serial number of the target when the projectile was fired, so a renderer can find it.
+         */
+        public long getTargetSerial() {
+            return targetSerial;
+        }
+
+        public long getFiredTick() {
+            return firedTick;
+        }
+
+        public long getImpactTick() {
+            return impactTick;
+        }
+
+        public long getSequence() {
+            return sequence;
+        }
+    }
+
+    /**
+     * Schedules the hit of a newly fired projectile, which starts at its position and chases its target.
+     * Nothing is scheduled if the target would reach the end of the polyline before being hit.
+     * @param projectile projectile fired this tick.
+     * @return true if a hit was scheduled, false otherwise.
+     */
+    public boolean schedule(Projectile projectile) {
+        Slicer target = projectile.getTarget();
+        double[] lengths = arcLengths.computeIfAbsent(target.getPath(), PathCoverage::arcLengths);
+        int flightTicks = ticksToImpact(projectile.getPosition(), target, lengths);
+        if (flightTicks < 0) {
+            projectile.resolve();
+            return false;
+        }
+        // A projectile moves on the tick it is fired, so one tick of flight hits this tick
+        schedule(projectile, tick, tick + flightTicks - 1);
+        return true;
+    }
+
+    /**
+     * Schedules a hit at a given tick, e.g. when loading a {@link GameSnapshot}.
+     * @param projectile projectile in flight, positioned where it was fired.
+     * @param firedTick tick the projectile was fired.
+     * @param impactTick tick the projectile hits.
+     */
+    public void schedule(Projectile projectile, long firedTick, long impactTick) {
+        impacts.add(new ScheduledImpact(projectile, firedTick, impactTick, sequence++));
+        impactTickSum += impactTick;
+        damageSum += projectile.getDamage();
+    }
+
+    /**
+     * Applies every hit due this tick, queueing the deaths of slicers whose health runs out (see
+     * {@link Level#addDeath(Slicer)}), then moves on to the next tick.
+     * This should be called once every tick, after towers have fired.
+     * @param level level containing the slicers.
+     */
+    public void applyDueImpacts(Level level) {
+        while (!impacts.isEmpty() && impacts.peek().getImpactTick() <= tick) {
+            ScheduledImpact impact = impacts.poll();
+            impactTickSum -= impact.getImpactTick();
+            Projectile projectile = impact.getProjectile();
+            damageSum -= projectile.getDamage();
+            projectile.resolve();
+            if (projectile.checkTargetIsAlive() && projectile.getTarget().takeDamage(projectile.getDamage())) {
+                // Target is dead
+                level.addDeath(projectile.getTarget());
+            }
+        }
+        tick++;
+    }
+
+    /**
+     * Solves how many ticks a projectile fired now from a point takes to reach a slicer. The slicer is taken to move
+     * at its speed along the rest of its polyline, first to its next point and then along each segment, and the
+     * projectile to close in at its full speed, hitting once it is within the same distance as
+     * {@link Projectile#checkIntersectionWithTarget()}. Along each segment the distance left to close is a quadratic
+     * in time, so the first tick it is closed is found from the quadratic's roots, one segment at a time until then.
+     * @param origin where the projectile is fired from.
+     * @param target slicer to hit, which has already moved this tick.
+     * @param arcLengths distance along the slicer's polyline to each of its points (see
+     * {@link PathCoverage#arcLengths(List)}).
+     * @return number of ticks of flight, at least 1, or -1 if the slicer reaches the end of the polyline first.
+     */
+    public static int ticksToImpact(Point origin, Slicer target, double[] arcLengths) {
+        List<Point> path = target.getPath();
+        double speed = target.getFinalMovementSpeed();
+        Point start = target.getPosition();
+        double startTime = 0;
+        for (int dstNum = target.getDstNum(); dstNum < path.size() && startTime < MAX_FLIGHT_TICKS; dstNum++) {
+            Point end = path.get(dstNum);
+            double length = dstNum == target.getDstNum() ? Math.hypot(end.x - start.x, end.y - start.y)
+                    : arcLengths[dstNum] - arcLengths[dstNum - 1];
+            double endTime = speed > 0 ? startTime + length / speed : Double.POSITIVE_INFINITY;
+            long tick = firstTickInReach(origin, start, end, length, speed, startTime, endTime);
+            if (tick >= 0) {
+                // The slicer is where it is now on the first tick of flight
+                return (int) tick + 1;
+            }
+            start = end;
+            startTime = endTime;
+        }
+        return -1;
+    }
+
+    /**
+     * Finds the first whole tick, while the slicer is on one segment, at which a projectile fired now reaches it.
+     * @param origin where the projectile is fired from.
+     * @param start where the slicer starts the segment.
+     * @param end where the slicer ends the segment.
+     * @param length length of the segment.
+     * @param speed slicer speed.
+     * @param startTime ticks from now the slicer is at {@code start}.
+     * @param endTime ticks from now the slicer is at {@code end}.
+     * @return ticks from now, or -1 if the projectile doesn't reach the slicer on this segment.
+     */
+    private static long firstTickInReach(Point origin, Point start, Point end, double length, double speed,
+                                         double startTime, double endTime) {
+        long first = (long) Math.ceil(startTime);
+        long last = (long) Math.min(Math.floor(endTime), MAX_FLIGHT_TICKS - 1);
+        if (first > last) {
+            return -1;
+        }
+        double projectileSpeed = Projectile.getSpeed();
+        double velocityX = length > 0 ? (end.x - start.x) / length * speed : 0;
+        double velocityY = length > 0 ? (end.y - start.y) / length * speed : 0;
+        double offsetX = start.x - origin.x;
+        double offsetY = start.y - origin.y;
+        double reach = projectileSpeed * (startTime + 1) + projectileSpeed + speed;
+
+        // t ticks into the segment, the slicer is out of reach while a*t^2 + b*t + c > 0
+        double a = velocityX * velocityX + velocityY * velocityY - projectileSpeed * projectileSpeed;
+        double b = 2 * (offsetX * velocityX + offsetY * velocityY - reach * projectileSpeed);
+        double c = offsetX * offsetX + offsetY * offsetY - reach * reach;
+        double[] within;
+        if (a == 0) {
+            if (b == 0) {
+                within = c <= 0 ? new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY} : new double[0];
+            } else if (b < 0) {
+                within = new double[]{-c / b, Double.POSITIVE_INFINITY};
+            } else {
+                within = new double[]{Double.NEGATIVE_INFINITY, -c / b};
+            }
+        } else {
+            double discriminant = b * b - 4 * a * c;
+            if (discriminant < 0) {
+                within = a < 0 ? new double[]{Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY} : new double[0];
+            } else {
+                double root = Math.sqrt(discriminant);
+                double low = Math.min((-b - root) / (2 * a), (-b + root) / (2 * a));
+                double high = Math.max((-b - root) / (2 * a), (-b + root) / (2 * a));
+                within = a < 0 ? new double[]{Double.NEGATIVE_INFINITY, low, high, Double.POSITIVE_INFINITY}
+                        : new double[]{low, high};
+            }
+        }
+
+        // Each pair is a time range, in order, within which the slicer is in reach
+        for (int i = 0; i < within.length; i += 2) {
+            long from = Math.max(first, (long) Math.ceil(Math.max(startTime + within[i], first)));
+            long to = Math.min(last, (long) Math.floor(Math.min(startTime + within[i + 1], last)));
+            if (from <= to) {
+                return from;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Copies the projectiles in flight, for saving them in a {@link GameSnapshot}.
+     * @return projectiles in flight, in no particular order.
+     */
+    public List<ScheduledImpact> getImpacts() {
+        return new ArrayList<>(impacts);
+    }
+
+    /**
+     * Gives read-only access to the projectiles in flight without copying them, for reading them every tick. The view
+     * follows the scheduler, so don't hold on to it while hits are scheduled or applied.
+     * @return projectiles in flight, in no particular order.
+     */
+    public Collection<ScheduledImpact> getImpactView() {
+        return impactView;
+    }
+
+    /**
+     * Combines every queued hit into a checksum, without walking the queue. Hits are combined in an order-independent
+     * way, as the queue keeps no fixed order, and by ticks until impact, so a game loaded from a snapshot gives the same
+     * checksum.
+     * @param prime multiplier to mix the sums with.
+     * @return checksum of the queued hits.
+     */
+    public long checksum(long prime) {
+        return (impactTickSum - impacts.size() * tick) * prime + damageSum;
+    }
+
+    public long getTick() {
+        return tick;
+    }
+
+    public int size() {
+        return impacts.size();
+    }
+}
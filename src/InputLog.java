@@ -0,0 +1,143 @@
+import bagel.util.Point;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A recorded game read back from a file written by {@link InputLogWriter}.
+ * File format (big-endian):
+ * <ul>
+ *     <li>Header: magic {@code "SDLG"}, version byte, seed long, level count short, map and wave file paths, then
+ *     the length and bytes of the {@link GameSnapshot} the game was resumed from (length 0 for a new game)</li>
+ *     <li>Records: varint frame delta, op code byte, then a payload depending on the op code:
+ *         <ul>
+ *             <li>{@link Command.Type} ordinal: x and y doubles for placements, nothing otherwise</li>
+ *             <li>{@code OP_CHECKPOINT}: rolling checksum long</li>
+ *             <li>{@code OP_END}: rolling checksum long, always the last record</li>
+ *         </ul>
+ *     </li>
+ * </ul>
+ */
+public class InputLog {
+    public static final int MAGIC = 0x53444C47;
+    public static final int VERSION = 12;
+    public static final int OP_CHECKPOINT = 0x7E;
+    public static final int OP_END = 0x7F;
+
+    private final List<Command> commands = new ArrayList<>();
+    private final Map<Integer, Long> checkpoints = new LinkedHashMap<>();
+    private final List<LevelDefinition> levels = new ArrayList<>();
+
+    private long seed;
+    private ByteBuffer startSnapshot = null;
+    private int finalFrame;
+    private long finalChecksum;
+    private boolean complete = false;
+
+    /**
+     * Reads a log file into memory.
+     * Logs cut short (e.g. the game crashed) are still read, up to the last complete record, but have no final checksum.
+     * @param fileDir file path of the log.
+     * @throws IOException if the file could not be read or is not an input log.
+     */
+    public InputLog(String fileDir) throws IOException {
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileDir)))) {
+            if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+                throw new IOException(fileDir + " is not a version " + VERSION + " input log");
+            }
+            seed = in.readLong();
+            int numberOfLevels = in.readShort();
+            for (int i = 0; i < numberOfLevels; i++) {
+                levels.add(new LevelDefinition(in.readUTF(), in.readUTF()));
+            }
+            byte[] snapshot = new byte[in.readInt()];
+            in.readFully(snapshot);
+            if (snapshot.length > 0) {
+                startSnapshot = ByteBuffer.wrap(snapshot);
+            }
+
+            Command.Type[] types = Command.Type.values();
+            int frame = 0;
+            try {
+                while (!complete) {
+                    int recordFrame = frame + readVarInt(in);
+                    int opCode = in.readUnsignedByte();
+                    if (opCode == OP_CHECKPOINT) {
+                        checkpoints.put(recordFrame, in.readLong());
+                    } else if (opCode == OP_END) {
+                        finalChecksum = in.readLong();
+                        complete = true;
+                    } else if (opCode < types.length) {
+                        Command.Type type = types[opCode];
+                        Point position = type.isPlacement() ? new Point(in.readDouble(), in.readDouble()) : null;
+                        commands.add(new Command(recordFrame, type, position));
+                    } else {
+                        throw new IOException("Unknown op code " + opCode + " at frame " + recordFrame);
+                    }
+                    frame = recordFrame;
+                }
+            } catch (EOFException e) {
+                // Truncated log, keep everything up to the last complete record
+            }
+            finalFrame = frame;
+        }
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        int shift = 0;
+        int b;
+        do {
+            b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            shift += 7;
+        } while ((b & 0x80) != 0);
+        return value;
+    }
+
+    public long getSeed() {
+        return seed;
+    }
+
+    /**
+     * @return snapshot the game was resumed from, or {@code null} if it was a new game.
+     */
+    public ByteBuffer getStartSnapshot() {
+        return startSnapshot == null ? null : startSnapshot.duplicate();
+    }
+
+    public List<LevelDefinition> getLevels() {
+        return levels;
+    }
+
+    public List<Command> getCommands() {
+        return commands;
+    }
+
+    public Map<Integer, Long> getCheckpoints() {
+        return checkpoints;
+    }
+
+    public int getFinalFrame() {
+        return finalFrame;
+    }
+
+    public long getFinalChecksum() {
+        return finalChecksum;
+    }
+
+    /**
+     * @return true if the log was closed properly and has a final checksum, false if it was cut short.
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+}
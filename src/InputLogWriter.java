@@ -0,0 +1,108 @@
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+/**
+ * Streams a compact binary log of player {@link Command}s to a file, so a game can be replayed by {@link ReplayRunner}.
+ * The log starts with a header holding the random seed and the levels played, followed by one record per command.
+ * Frames are stored as varint deltas from the previous record, so most records are 2 bytes long.
+ * A checkpoint of the rolling state checksum is written every {@link Simulation#CHECKSUM_INTERVAL} frames, when the
+ * simulation folds in a full state hash, which also flushes the file so a crashed game still leaves a usable log.
+ * @see InputLog for the file format.
+ */
+public class InputLogWriter {
+    private static final int CHECKPOINT_INTERVAL = Simulation.CHECKSUM_INTERVAL;
+
+    private final DataOutputStream out;
+
+    private int lastFrame = 0;
+
+    /**
+     * Creates a new log file, writing the header.
+     * @param fileDir file path of the log. Parent folders are created if needed.
+     * @param seed random seed of the game.
+     * @param levels levels of the game, in order.
+     * @param startSnapshot {@link GameSnapshot} the game was resumed from, or {@code null} for a new game.
+     * @throws IOException if the file could not be created.
+     */
+    public InputLogWriter(String fileDir, long seed, List<LevelDefinition> levels, ByteBuffer startSnapshot) throws IOException {
+        File file = new File(fileDir);
+        if (file.getParentFile() != null) {
+            file.getParentFile().mkdirs();
+        }
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(InputLog.MAGIC);
+        out.writeByte(InputLog.VERSION);
+        out.writeLong(seed);
+        out.writeShort(levels.size());
+        for (LevelDefinition level : levels) {
+            out.writeUTF(level.getMapFile());
+            out.writeUTF(level.getWaveFile());
+        }
+        if (startSnapshot == null) {
+            out.writeInt(0);
+        } else {
+            byte[] snapshot = new byte[startSnapshot.remaining()];
+            startSnapshot.duplicate().get(snapshot);
+            out.writeInt(snapshot.length);
+            out.write(snapshot);
+        }
+    }
+
+    /**
+     * Appends a command to the log.
+     * @param command command applied this frame.
+     * @throws IOException if the log could not be written.
+     */
+    public void record(Command command) throws IOException {
+        writeHeader(command.getFrame(), command.getType().ordinal());
+        if (command.getType().isPlacement()) {
+            out.writeDouble(command.getPosition().x);
+            out.writeDouble(command.getPosition().y);
+        }
+    }
+
+    /**
+     * Records a checkpoint of the rolling checksum if one is due. Call this once after every frame.
+     * @param frame number of frames completed.
+     * @param rollingChecksum rolling state checksum after the frame.
+     * @throws IOException if the log could not be written.
+     */
+    public void frameComplete(int frame, long rollingChecksum) throws IOException {
+        if (frame % CHECKPOINT_INTERVAL == 0) {
+            writeHeader(frame, InputLog.OP_CHECKPOINT);
+            out.writeLong(rollingChecksum);
+            out.flush();
+        }
+    }
+
+    /**
+     * Writes the final checksum and closes the file.
+     * @param frame number of frames completed.
+     * @param rollingChecksum checksum after the last frame, from {@link Simulation#getChecksum()}.
+     * @throws IOException if the log could not be written.
+     */
+    public void close(int frame, long rollingChecksum) throws IOException {
+        writeHeader(frame, InputLog.OP_END);
+        out.writeLong(rollingChecksum);
+        out.close();
+    }
+
+    private void writeHeader(int frame, int opCode) throws IOException {
+        writeVarInt(frame - lastFrame);
+        out.writeByte(opCode);
+        lastFrame = frame;
+    }
+
+    private void writeVarInt(int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
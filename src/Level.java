@@ -1,9 +1,9 @@
-import bagel.Window;
 import bagel.map.TiledMap;
 import bagel.util.Point;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.Scanner;
 
@@ -11,13 +11,24 @@ import java.util.Scanner;
  * This class provides control over wave and wave events within each level.
  * This includes the map, waves, wave events and slicers but NOT the player, towers and projectiles.
  * Level information is read through "waves.txt", but otherwise mostly acts as a wrapper for {@link WaveEvent}s.
+ * Maps may have several lanes (polylines), and wave script lines pick which lane their slicers spawn on.
  */
 public class Level {
     private static final int MAX_EVENTS_PER_WAVE = 1000; // Needed for initialisation of wave array
 
     private final TiledMap map;
+    private final LevelBundle bundle;
+    private final List<Point> path;
+    private final List<List<Point>> lanes;
+    private final List<double[]> laneArcLengths;
+    private final int width;
+    private final int height;
     private final Player player;
+    private GameRandom random;
+    private SlicerPool slicerPool;
     private final List<List<WaveEvent>> eventList = new ArrayList<List<WaveEvent>>();
+    // Slicers killed this tick, removed together by resolveDeaths
+    private final List<Slicer> deaths = new ArrayList<>();
 
     private int numberOfWaves = 0;
     private int currentWave = 0;
@@ -27,17 +38,68 @@ public class Level {
      * Creates a new instance of Level, reading in information from a given wave text file.
      * This populates a wave events 2D arrayList, with {@code MAX_EVENTS_PER_WAVE = 1000}.
      * Increase this limit if needed, at a one-time level load performance cost.
-     * @param map TiledMap to play wave events on.
+     * @param map TiledMap to draw, or {@code null} when running headless.
+     * @param path polyline for slicers to travel along.
+     * @param width width of the level in pixels.
+     * @param height height of the level in pixels.
      * @param player player specific to this level, containing gold and health information.
      * @param fileDir file path to waves.txt to load
+     * @param random game random number generator.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
      */
-    public Level(TiledMap map, Player player, String fileDir) {
+    public Level(TiledMap map, List<Point> path, int width, int height, Player player, String fileDir, GameRandom random, SlicerPool slicerPool) {
+        this(map, path, width, height, player, readWaveFile(fileDir), random, slicerPool);
+    }
+
+    /**
+     * Creates a new instance of Level from the already read lines of a waves.txt, e.g. shared through a
+     * {@link LevelCache}.
+     * @param map TiledMap to draw, or {@code null} when running headless.
+     * @param path polyline for slicers to travel along.
+     * @param width width of the level in pixels.
+     * @param height height of the level in pixels.
+     * @param player player specific to this level, containing gold and health information.
+     * @param waveLines lines of waves.txt, which are not modified.
+     * @param random game random number generator.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
+     */
+    public Level(TiledMap map, List<Point> path, int width, int height, Player player, List<String> waveLines, GameRandom random, SlicerPool slicerPool) {
+        this(map, null, Collections.singletonList(path), Collections.singletonList(PathCoverage.arcLengths(path)),
+                width, height, player, random, slicerPool);
+        readWaveLines(waveLines);
+    }
+
+    /**
+     * Creates a new instance of Level from a compiled {@link LevelBundle}, with one lane for each of the bundle's
+     * polylines. Nothing needs to be parsed.
+     * @param map TiledMap to draw, or {@code null} when running headless.
+     * @param bundle compiled map and wave schedule, which may be shared with other levels.
+     * @param player player specific to this level, containing gold and health information.
+     * @param random game random number generator.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
+     */
+    public Level(TiledMap map, LevelBundle bundle, Player player, GameRandom random, SlicerPool slicerPool) {
+        this(map, bundle, bundle.getPolylines(), bundle.getAllArcLengths(), bundle.getWidth(), bundle.getHeight(), player,
+                random, slicerPool);
+        for (LevelBundle.ScheduledEvent event : bundle.getSchedule()) {
+            addWaveEvent(event);
+        }
+    }
+
+    private Level(TiledMap map, LevelBundle bundle, List<List<Point>> lanes, List<double[]> laneArcLengths, int width, int height, Player player, GameRandom random, SlicerPool slicerPool) {
         for (int i = 0; i < MAX_EVENTS_PER_WAVE; i++) {
             eventList.add(new ArrayList<WaveEvent>());
         }
         this.map = map;
+        this.bundle = bundle;
+        this.lanes = lanes;
+        this.laneArcLengths = laneArcLengths;
+        this.path = lanes.get(0);
+        this.width = width;
+        this.height = height;
         this.player = player;
-        readLevelFile(fileDir);
+        this.random = random;
+        this.slicerPool = slicerPool;
     }
 
     /**
@@ -49,81 +111,113 @@ public class Level {
      * @param fileDir file path to waves.txt to load
      */
     public void readLevelFile(String fileDir) {
+        readWaveLines(readWaveFile(fileDir));
+    }
 
+    /**
+     * Reads every line of a waves.txt.
+     * @param fileDir file path to waves.txt to load
+     * @return lines of the file, or an empty list if it could not be opened.
+     */
+    public static List<String> readWaveFile(String fileDir) {
+        List<String> lines = new ArrayList<>();
         try {
             File textFile = new File(fileDir);
             Scanner waveReader = new Scanner(textFile);
             while (waveReader.hasNextLine()) {
-                String waveEvent = waveReader.nextLine();
-                String[] waveEventSplit = waveEvent.split(",");
-                int waveNumber = Integer.parseInt(waveEventSplit[0]);
-                double delay;
-                if (waveEventSplit[1].equalsIgnoreCase("delay")) {
-                    // Delay event
-                    delay = Double.parseDouble(waveEventSplit[2]);
-                    eventList.get(waveNumber).add(new WaveEvent(delay, player));
-                } else {
-                    // Slicer spawn event
-                    delay = Double.parseDouble(waveEventSplit[4]);
-                    int numberOfSlicers = Integer.parseInt(waveEventSplit[2]);
-                    numberOfWaves = waveNumber; // Assume wave numbers don't go backwards
-                    String slicerText = waveEventSplit[3];
-                    Class<?> slicerClass;
-                    switch (slicerText) {
-                        case "superslicer":
-                            slicerClass = SuperSlicer.class;
-                            break;
-                        case "megaslicer":
-                            slicerClass = MegaSlicer.class;
-                            break;
-                        case "apexslicer":
-                            slicerClass = ApexSlicer.class;
-                            break;
-                        case "slicer":
-                        default:
-                            slicerClass = RegularSlicer.class;
-                    }
-                    eventList.get(waveNumber).add(new WaveEvent(delay, map, numberOfSlicers, slicerClass, player));
-                }
+                lines.add(waveReader.nextLine());
             }
             waveReader.close();
         } catch (FileNotFoundException e) {
             System.out.println("waves.txt could not be opened");
             e.printStackTrace();
         }
+        return lines;
     }
 
     /**
-     * Renders map image. Call this every frame.
+     * Creates the wave events described by the lines of a waves.txt, as for {@link Level#readLevelFile(String)}.
+     * @param waveLines lines of waves.txt.
      */
-    public void drawMap() {
-        map.draw(0, 0, 0, 0, Window.getWidth(), Window.getHeight());
+    private void readWaveLines(List<String> waveLines) {
+        for (String waveEvent : waveLines) {
+            addWaveEvent(LevelBundle.ScheduledEvent.parse(waveEvent));
+        }
     }
 
     /**
-     * Ticks time forward for slicers and wave events. Moves all slicers forward. Spawns and kills slicers at beginning
-     * and end of polyline respectively. Starts wave events when the previous are finished.
+     * Creates the wave event for one line of a wave script. Events shared out across every lane become one event per
+     * lane, started together, each spawning its share of the slicers at the given delay.
+     * @param event parsed line of the wave script.
      */
-    public void moveAllWaveEvents() {
-        for (int j = 0; j < eventList.get(currentWave).size(); j++) {
-            if (!eventList.get(currentWave).get(j).isWaveEventComplete()) {
-                if (j == 0 || eventList.get(currentWave).get(j-1).canStartNextEvent()) {
-                    // Previous event is complete
-                    eventList.get(currentWave).get(j).moveAllSlicers();
-                }
+    private void addWaveEvent(LevelBundle.ScheduledEvent event) {
+        int waveNumber = event.getWaveNumber();
+        if (event.isDelay()) {
+            // Delay event
+            eventList.get(waveNumber).add(new WaveEvent(event.getDelay(), player));
+            return;
+        }
+        // Slicer spawn event
+        numberOfWaves = waveNumber; // Assume wave numbers don't go backwards
+        SlicerType slicerType = SlicerCatalog.getDefault().get(event.getSlicerType());
+        if (event.getLane() >= lanes.size()) {
+            throw new IllegalArgumentException("Wave " + waveNumber + " spawns on lane " + (event.getLane() + 1)
+                    + ", but the map only has " + lanes.size());
+        }
+        if (event.getLane() != LevelBundle.ScheduledEvent.ALL_LANES) {
+            eventList.get(waveNumber).add(new WaveEvent(event.getDelay(), lanes.get(event.getLane()), event.getLane(),
+                    laneArcLengths.get(event.getLane()), event.getNumberOfSlicers(), slicerType, player, random, slicerPool));
+            return;
+        }
+        boolean first = true;
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            // Earlier lanes take the remainder
+            int share = event.getNumberOfSlicers() / lanes.size() + (lane < event.getNumberOfSlicers() % lanes.size() ? 1 : 0);
+            if (share == 0) {
+                continue;
+            }
+            WaveEvent laneEvent = new WaveEvent(event.getDelay(), lanes.get(lane), lane, laneArcLengths.get(lane), share,
+                    slicerType, player, random, slicerPool);
+            laneEvent.setStartsWithPrevious(!first);
+            eventList.get(waveNumber).add(laneEvent);
+            first = false;
+        }
+    }
+
+    /**
+     * Checks if a wave event has been started: the first event starts with the wave, and each following event once
+     * the one before it can start the next. Events that start with the previous event are treated as one event with
+     * it, so the event after them waits for all of them.
+     * @param events events of a wave.
+     * @param j index of the event to check.
+     * @return true if the event has started, false otherwise.
+     */
+    private static boolean isEventStarted(List<WaveEvent> events, int j) {
+        int first = j;
+        while (first > 0 && events.get(first).startsWithPrevious()) {
+            first--;
+        }
+        for (int i = first - 1; i >= 0; i--) {
+            if (!events.get(i).canStartNextEvent()) {
+                return false;
+            }
+            if (!events.get(i).startsWithPrevious()) {
+                break;
             }
         }
+        return true;
     }
 
     /**
-     * Renders all slicers currently alive.
+     * Ticks time forward for slicers and wave events. Moves all slicers forward. Spawns and kills slicers at beginning
+     * and end of polyline respectively. Starts wave events when the previous are finished.
      */
-    public void drawAllWaveEvents() {
+    public void moveAllWaveEvents() {
         for (int j = 0; j < eventList.get(currentWave).size(); j++) {
             if (!eventList.get(currentWave).get(j).isWaveEventComplete()) {
-                if (j == 0 || eventList.get(currentWave).get(j-1).canStartNextEvent()) {
+                if (isEventStarted(eventList.get(currentWave), j)) {
                     // Previous event is complete
-                    eventList.get(currentWave).get(j).drawAllSlicers();
+                    eventList.get(currentWave).get(j).moveAllSlicers();
                 }
             }
         }
@@ -143,20 +237,90 @@ public class Level {
 
     /**
      * Returns the nearest slicer to a tower at given point with given range, or null if none are in range.
+     * Slicers that projectiles already in flight will kill are skipped. Looks through every active event, and if
+     * slicers from different events are equally near, the one from the earlier event is returned.
      * @param position position of tower.
      * @param range range of tower (radius).
      * @return nearest slicer or {@code null} if none in range.
      */
     public Slicer getNearestSlicerInRange(Point position, int range) {
+        Slicer nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
+        for (WaveEvent e : eventList.get(currentWave)) {
+            if (!e.isWaveEventComplete()) {
+                Slicer slicer = e.getNearestSlicerInRange(position, range);
+                if (slicer != null && e.rangeDistance(slicer, position) < nearestDistance) {
+                    nearest = slicer;
+                    nearestDistance = e.rangeDistance(slicer, position);
+                }
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Returns the nearest slicer to a tower in the same way as {@link Level#getNearestSlicerInRange(Point, int)}, but
+     * only looks at slicers within the tower's precomputed coverage of the lanes.
+     * @param position position of tower.
+     * @param range range of tower (radius).
+     * @param coverage the tower's coverage, from {@link Level#getCoverage(Point, int)}.
+     * @return nearest slicer or {@code null} if none in range.
+     */
+    public Slicer getNearestSlicerInRange(Point position, int range, PathCoverage coverage) {
+        Slicer nearest = null;
+        double nearestDistance = Double.MAX_VALUE;
         for (WaveEvent e : eventList.get(currentWave)) {
             if (!e.isWaveEventComplete()) {
-                Slicer nearest = e.getNearestSlicerInRange(position, range);
-                if (nearest != null) {
-                    return nearest;
+                Slicer slicer = e.getNearestSlicerInRange(position, range, coverage.getIntervals(e.getLane()));
+                if (slicer != null && e.rangeDistance(slicer, position) < nearestDistance) {
+                    nearest = slicer;
+                    nearestDistance = e.rangeDistance(slicer, position);
                 }
             }
         }
-        return null;
+        return nearest;
+    }
+
+    /**
+     * Checks cheaply if {@link Level#getNearestSlicerInRange(Point, int, PathCoverage)} could find a slicer (see
+     * {@link WaveEvent#mayHaveSlicerInRange(Point, int, double[])}).
+     * @param position position of tower.
+     * @param range range of tower (radius).
+     * @param coverage the tower's coverage, from {@link Level#getCoverage(Point, int)}.
+     * @return false if no slicer can be in range, true otherwise.
+     */
+    public boolean mayHaveSlicerInRange(Point position, int range, PathCoverage coverage) {
+        for (WaveEvent e : eventList.get(currentWave)) {
+            if (!e.isWaveEventComplete()
+                    && e.mayHaveSlicerInRange(position, range, coverage.getIntervals(e.getLane()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any slicer in the current wave has drifted too far off its lane for {@link PathCoverage} to find it
+     * (see {@link WaveEvent#hasDriftedSlicers()}).
+     * @return true if any slicer has drifted off its lane.
+     */
+    public boolean hasDriftedSlicers() {
+        for (WaveEvent e : eventList.get(currentWave)) {
+            if (!e.isWaveEventComplete() && e.hasDriftedSlicers()) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Works out which parts of this level's lanes are in range of a point, e.g. when a tower is placed.
+     * @param position position of tower.
+     * @param range range of tower (radius).
+     * @return coverage of every lane.
+     */
+    public PathCoverage getCoverage(Point position, int range) {
+        return new PathCoverage(position, range, lanes, laneArcLengths);
     }
 
     /**
@@ -199,22 +363,142 @@ public class Level {
     }
 
     /**
-     * Kills specified slicer, removing it from the slicer list.
-     * @param slicer the (currently living) slicer
+     * Restores the wave cursor, e.g. when loading a {@link GameSnapshot}. All events of earlier waves are marked
+     * complete, and the current wave's events should be restored separately through {@link Level#getCurrentWaveEvents()}.
+     * @param currentWave wave currently being played.
+     * @param allWavesStarted true if every wave has been started.
+     */
+    public void restoreWave(int currentWave, boolean allWavesStarted) {
+        this.currentWave = currentWave;
+        this.allWavesStarted = allWavesStarted;
+        for (int i = 1; i < currentWave; i++) {
+            for (WaveEvent e : eventList.get(i)) {
+                e.restore(0, 0, true);
+            }
+        }
+    }
+
+    /**
+     * Gives the level, and every wave event, the game's random number generator and slicer pool, e.g. once a level
+     * loaded on another thread without them is handed to the game.
+     * @param random game random number generator.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
+     */
+    public void bind(GameRandom random, SlicerPool slicerPool) {
+        this.random = random;
+        this.slicerPool = slicerPool;
+        for (List<WaveEvent> wave : eventList) {
+            for (WaveEvent e : wave) {
+                e.bind(random, slicerPool);
+            }
+        }
+    }
+
+    /**
+     * Turns fixed point mode on or off for every wave event (see {@link WaveEvent#setFixedPoint(boolean)}). This
+     * should only be changed before the level's first wave starts.
+     * @param fixedPoint true to move and range check slicers in fixed point, false to use doubles.
      */
-    public void killSlicer(Slicer slicer) {
+    public void setFixedPoint(boolean fixedPoint) {
+        for (List<WaveEvent> wave : eventList) {
+            for (WaveEvent e : wave) {
+                e.setFixedPoint(fixedPoint);
+            }
+        }
+    }
+
+    /**
+     * Returns all wave events of the current wave, including complete ones.
+     * @return list of wave events in order.
+     */
+    public List<WaveEvent> getCurrentWaveEvents() {
+        return eventList.get(currentWave);
+    }
+
+    /**
+     * Returns all slicers currently alive in the current wave.
+     * @return list of slicers. If no slicers are alive, returns a list with length 0.
+     */
+    public List<Slicer> getAllSlicers() {
+        List<Slicer> slicerList = new ArrayList<>();
         for (WaveEvent e : eventList.get(currentWave)) {
-            if (!e.isWaveEventComplete() && e.getSlicerList().contains(slicer)) {
-                e.killSlicer(slicer);
-                return;
+            if (!e.isWaveEventComplete()) {
+                slicerList.addAll(e.getSlicerList());
             }
         }
+        return slicerList;
+    }
+
+    /**
+     * Queues a slicer killed by a tower this tick. It stays in its wave event, but with no health left, so it is
+     * skipped by anything that checks the slicer is alive, until {@link Level#resolveDeaths()} removes it.
+     * @param slicer slicer whose health just ran out.
+     */
+    public void addDeath(Slicer slicer) {
+        deaths.add(slicer);
+    }
+
+    /**
+     * Removes every slicer killed this tick, spawning their children and granting the player their gold at once.
+     * Each wave event is compacted in one pass, rather than searching for and removing each slicer as it dies.
+     * Call this once at the end of every tick.
+     */
+    public void resolveDeaths() {
+        if (deaths.isEmpty()) {
+            return;
+        }
+        int reward = 0;
+        for (Slicer slicer : deaths) {
+            reward += slicer.getReward();
+        }
+        player.gainGold(reward);
+        player.addKills(deaths.size());
+
+        int remaining = deaths.size();
+        for (WaveEvent e : eventList.get(currentWave)) {
+            if (remaining == 0) {
+                break;
+            }
+            if (!e.isWaveEventComplete()) {
+                remaining -= e.removeDeadSlicers();
+            }
+        }
+        deaths.clear();
     }
 
     public TiledMap getMap() {
         return map;
     }
 
+    /**
+     * @return the compiled bundle this level was created from, or {@code null} if it was created from wave lines.
+     */
+    public LevelBundle getBundle() {
+        return bundle;
+    }
+
+    /**
+     * @return polyline of the first lane.
+     */
+    public List<Point> getPath() {
+        return path;
+    }
+
+    /**
+     * @return polyline of every lane, in map order.
+     */
+    public List<List<Point>> getLanes() {
+        return lanes;
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
     public int getCurrentWave() {
         return currentWave;
     }
@@ -0,0 +1,501 @@
+import bagel.util.Point;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Everything the simulation needs from a level's tmx map and wave script, compiled into one versioned binary file by
+ * {@link LevelCompiler}, so that loading a level needs no XML or text parsing.
+ * Bundle files are memory mapped: tile layers and the blocked tile bitset are read straight out of the mapping when
+ * asked for, and only the polylines and wave schedule are copied out on load. Bundles never change once loaded, so one
+ * bundle can be shared by any number of games and threads.
+ * <p>
+ * A bundle records a hash of the contents of the files it was compiled from: the map, its external tilesets and the
+ * wave script. File times are not used, as version control doesn't keep them, so a bundle is only used while that
+ * hash still matches (see {@link #isCompiledFrom(String, String)}).
+ * <p>
+ * Layout (little-endian), after the magic number and version:
+ * <ul>
+ *     <li>Source map and wave file paths, tileset file paths, and the hash of all their contents</li>
+ *     <li>Tile width, tile height, columns and rows</li>
+ *     <li>Tile layers: one global tile id per tile, row by row, starting on an 8 byte boundary</li>
+ *     <li>Blocked tiles: one bit per tile, row by row, as longs</li>
+ *     <li>Polylines: for each point, x, y and distance along the polyline from its first point</li>
+ *     <li>Slicer type name table</li>
+ *     <li>Wave schedule: wave number, slicer name index (-1 for delays), lane, slicer count and delay of each event</li>
+ * </ul>
+ */
+public class LevelBundle {
+    private static final int MAGIC = 0x53444C42;
+    private static final short VERSION = 3;
+    private static final String BLOCKED_PROPERTY = "blocked";
+
+    private final ByteBuffer buffer;
+    private final String mapFile;
+    private final String waveFile;
+    private final List<String> tilesetFiles = new ArrayList<>();
+    private final long sourceHash;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int columns;
+    private final int rows;
+    private final List<IntBuffer> layers = new ArrayList<>();
+    private final LongBuffer blocked;
+    private final List<List<Point>> polylines = new ArrayList<>();
+    private final List<double[]> arcLengths = new ArrayList<>();
+    private final List<ScheduledEvent> schedule = new ArrayList<>();
+
+    /**
+     * One line of a wave script: either a delay, or a number of slicers to spawn.
+     */
+    public static class ScheduledEvent {
+        // Lane of events whose slicers are shared out across every lane of the map
+        public static final int ALL_LANES = -1;
+
+        private final int waveNumber;
+        private final String slicerType;
+        private final int lane;
+        private final int numberOfSlicers;
+        private final double delay;
+
+        /**
+         * Creates a new scheduled event.
+         * @param waveNumber wave the event belongs to, starting from 1.
+         * @param slicerType name of the slicer type to spawn, or {@code null} for a delay.
+         * @param lane index of the polyline to spawn on, starting from 0, or {@code ALL_LANES}.
+         * @param numberOfSlicers number of slicers to spawn, 0 for a delay.
+         * @param delay delay in milliseconds, between spawns or before the next event.
+         */
+        public ScheduledEvent(int waveNumber, String slicerType, int lane, int numberOfSlicers, double delay) {
+            this.waveNumber = waveNumber;
+            this.slicerType = slicerType;
+            this.lane = lane;
+            this.numberOfSlicers = numberOfSlicers;
+            this.delay = delay;
+        }
+
+        /**
+         * Parses one line of a waves.txt, e.g. {@code 1,spawn,5,slicer,1000} or {@code 1,delay,2000}.
+         * Spawn lines may end with a lane: the number of the map's polyline to spawn on, starting from 1, or
+         * {@code all} to share the slicers out across every polyline, e.g. {@code 1,spawn,5,slicer,1000,2}. Without
+         * one, slicers spawn on the first polyline.
+         * @param line line to parse.
+         * @return the event described by the line.
+         */
+        public static ScheduledEvent parse(String line) {
+            String[] fields = line.split(",");
+            int waveNumber = Integer.parseInt(fields[0]);
+            if (fields[1].equalsIgnoreCase("delay")) {
+                return new ScheduledEvent(waveNumber, null, 0, 0, Double.parseDouble(fields[2]));
+            }
+            int lane = 0;
+            if (fields.length > 5) {
+                lane = fields[5].equalsIgnoreCase("all") ? ALL_LANES : Integer.parseInt(fields[5]) - 1;
+                if (lane < ALL_LANES) {
+                    throw new IllegalArgumentException("Lanes are numbered from 1: " + line);
+                }
+            }
+            return new ScheduledEvent(waveNumber, fields[3], lane, Integer.parseInt(fields[2]),
+                    Double.parseDouble(fields[4]));
+        }
+
+        public int getWaveNumber() {
+            return waveNumber;
+        }
+
+        public String getSlicerType() {
+            return slicerType;
+        }
+
+        public int getLane() {
+            return lane;
+        }
+
+        public int getNumberOfSlicers() {
+            return numberOfSlicers;
+        }
+
+        public double getDelay() {
+            return delay;
+        }
+
+        public boolean isDelay() {
+            return slicerType == null;
+        }
+    }
+
+    /**
+     * Compiles a bundle in memory from a parsed map and wave script.
+     * @param mapFile file path the map was read from.
+     * @param tmx parsed map.
+     * @param waveFile file path the wave script was read from.
+     * @param waveLines lines of the wave script.
+     * @return compiled bundle, the same as loading it from a file written by {@link LevelBundle#write(String)}.
+     * @throws UncheckedIOException if the map, its tilesets or the wave script could not be read to hash them.
+     */
+    public static LevelBundle compile(String mapFile, TmxReader tmx, String waveFile, List<String> waveLines) {
+        int tiles = tmx.getColumns() * tmx.getRows();
+        List<ScheduledEvent> events = new ArrayList<>();
+        List<String> names = new ArrayList<>();
+        for (String line : waveLines) {
+            ScheduledEvent event = ScheduledEvent.parse(line);
+            events.add(event);
+            if (!event.isDelay() && !names.contains(event.getSlicerType())) {
+                names.add(event.getSlicerType());
+            }
+        }
+
+        long sourceHash;
+        try {
+            sourceHash = hashSources(mapFile, tmx.getTilesetFiles(), waveFile);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Could not read the sources of " + mapFile, e);
+        }
+
+        int size = 58 + stringSize(mapFile) + stringSize(waveFile) + tmx.getLayers().size() * tiles * 4
+                + (tiles + 63) / 64 * 8 + events.size() * 18;
+        for (List<Point> polyline : tmx.getPolylines()) {
+            size += 4 + polyline.size() * 24;
+        }
+        for (String name : names) {
+            size += stringSize(name);
+        }
+        for (String tileset : tmx.getTilesetFiles()) {
+            size += stringSize(tileset);
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(size).order(ByteOrder.LITTLE_ENDIAN);
+
+        buffer.putInt(MAGIC).putShort(VERSION);
+        putString(buffer, mapFile);
+        putString(buffer, waveFile);
+        buffer.putShort((short) tmx.getTilesetFiles().size());
+        for (String tileset : tmx.getTilesetFiles()) {
+            putString(buffer, tileset);
+        }
+        buffer.putLong(sourceHash);
+        buffer.putInt(tmx.getTileWidth()).putInt(tmx.getTileHeight()).putInt(tmx.getColumns()).putInt(tmx.getRows());
+        buffer.putShort((short) tmx.getLayers().size());
+        padToLong(buffer);
+        for (int[] layer : tmx.getLayers()) {
+            for (int tileId : layer) {
+                buffer.putInt(tileId);
+            }
+        }
+
+        // Blocked the same way as TiledMap#getPropertyBoolean: the first layer whose tile sets the property decides
+        long[] blocked = new long[(tiles + 63) / 64];
+        for (int i = 0; i < tiles; i++) {
+            for (int[] layer : tmx.getLayers()) {
+                String value = tmx.getTileProperty(layer[i], BLOCKED_PROPERTY);
+                if (value != null) {
+                    if (value.equalsIgnoreCase("true")) {
+                        blocked[i >>> 6] |= 1L << (i & 63);
+                    }
+                    break;
+                }
+            }
+        }
+        for (long bits : blocked) {
+            buffer.putLong(bits);
+        }
+
+        buffer.putShort((short) tmx.getPolylines().size());
+        for (List<Point> polyline : tmx.getPolylines()) {
+            buffer.putInt(polyline.size());
+            double[] lengths = PathCoverage.arcLengths(polyline);
+            for (int i = 0; i < polyline.size(); i++) {
+                buffer.putDouble(polyline.get(i).x).putDouble(polyline.get(i).y).putDouble(lengths[i]);
+            }
+        }
+
+        buffer.putShort((short) names.size());
+        for (String name : names) {
+            putString(buffer, name);
+        }
+        buffer.putInt(events.size());
+        for (ScheduledEvent event : events) {
+            buffer.putShort((short) event.getWaveNumber());
+            buffer.putShort((short) (event.isDelay() ? -1 : names.indexOf(event.getSlicerType())));
+            buffer.putShort((short) event.getLane());
+            buffer.putInt(event.getNumberOfSlicers());
+            buffer.putDouble(event.getDelay());
+        }
+        buffer.flip();
+        return new LevelBundle(buffer);
+    }
+
+    /**
+     * Memory maps a bundle file.
+     * @param fileDir file path of the bundle.
+     * @return the loaded bundle.
+     * @throws IOException if the file could not be read or is not a bundle of this version.
+     */
+    public static LevelBundle load(String fileDir) throws IOException {
+        try (FileChannel channel = FileChannel.open(Paths.get(fileDir), StandardOpenOption.READ)) {
+            // The mapping stays valid after the channel is closed
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            try {
+                return new LevelBundle(buffer.order(ByteOrder.LITTLE_ENDIAN));
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt level bundle " + fileDir, e);
+            }
+        }
+    }
+
+    private LevelBundle(ByteBuffer buffer) {
+        this.buffer = buffer;
+        if (buffer.getInt() != MAGIC || buffer.getShort() != VERSION) {
+            throw new IllegalArgumentException("Not a version " + VERSION + " level bundle");
+        }
+        mapFile = getString(buffer);
+        waveFile = getString(buffer);
+        int numberOfTilesets = buffer.getShort();
+        for (int i = 0; i < numberOfTilesets; i++) {
+            tilesetFiles.add(getString(buffer));
+        }
+        sourceHash = buffer.getLong();
+        tileWidth = buffer.getInt();
+        tileHeight = buffer.getInt();
+        columns = buffer.getInt();
+        rows = buffer.getInt();
+        int tiles = columns * rows;
+        int numberOfLayers = buffer.getShort();
+        buffer.position((buffer.position() + 7) & ~7);
+        for (int i = 0; i < numberOfLayers; i++) {
+            layers.add(buffer.slice(buffer.position(), tiles * 4).order(ByteOrder.LITTLE_ENDIAN).asIntBuffer());
+            buffer.position(buffer.position() + tiles * 4);
+        }
+        int blockedLongs = (tiles + 63) / 64;
+        blocked = buffer.slice(buffer.position(), blockedLongs * 8).order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+        buffer.position(buffer.position() + blockedLongs * 8);
+
+        int numberOfPolylines = buffer.getShort();
+        for (int i = 0; i < numberOfPolylines; i++) {
+            int numberOfPoints = buffer.getInt();
+            List<Point> polyline = new ArrayList<>(numberOfPoints);
+            double[] lengths = new double[numberOfPoints];
+            for (int j = 0; j < numberOfPoints; j++) {
+                polyline.add(new Point(buffer.getDouble(), buffer.getDouble()));
+                lengths[j] = buffer.getDouble();
+            }
+            polylines.add(Collections.unmodifiableList(polyline));
+            arcLengths.add(lengths);
+        }
+
+        String[] names = new String[buffer.getShort()];
+        for (int i = 0; i < names.length; i++) {
+            names[i] = getString(buffer);
+        }
+        int numberOfEvents = buffer.getInt();
+        for (int i = 0; i < numberOfEvents; i++) {
+            int waveNumber = buffer.getShort();
+            int name = buffer.getShort();
+            int lane = buffer.getShort();
+            int numberOfSlicers = buffer.getInt();
+            double delay = buffer.getDouble();
+            schedule.add(new ScheduledEvent(waveNumber, name < 0 ? null : names[name], lane, numberOfSlicers, delay));
+        }
+    }
+
+    /**
+     * Writes the bundle to a file, replacing it if it exists. The bundle is written to a temporary file first and then
+     * moved into place, so a game that has the old file mapped, or loads it at the same time, never sees half a file.
+     * @param fileDir file path to write to.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(String fileDir) throws IOException {
+        ByteBuffer contents = buffer.duplicate();
+        contents.rewind();
+        Path target = Paths.get(fileDir).toAbsolutePath();
+        Path temporary = Files.createTempFile(target.getParent(), target.getFileName().toString(), ".tmp");
+        try {
+            try (FileChannel channel = FileChannel.open(temporary, StandardOpenOption.WRITE)) {
+                while (contents.hasRemaining()) {
+                    channel.write(contents);
+                }
+            }
+            // Temporary files are only readable by their owner
+            temporary.toFile().setReadable(true, false);
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporary);
+        }
+    }
+
+    /**
+     * Hashes the contents of a level's source files with 64-bit FNV-1a.
+     * @param mapFile file path to the tmx map.
+     * @param tilesetFiles file paths to the map's external tilesets.
+     * @param waveFile file path to the waves.txt.
+     * @return hash of the files' contents, in that order.
+     * @throws IOException if a file could not be read.
+     */
+    public static long hashSources(String mapFile, List<String> tilesetFiles, String waveFile) throws IOException {
+        List<String> files = new ArrayList<>();
+        files.add(mapFile);
+        files.addAll(tilesetFiles);
+        files.add(waveFile);
+        long hash = 0xCBF29CE484222325L;
+        for (String file : files) {
+            byte[] bytes = Files.readAllBytes(Paths.get(file));
+            for (byte b : bytes) {
+                hash = (hash ^ (b & 0xFF)) * 0x100000001B3L;
+            }
+            // Keeps the boundary between files part of the hash
+            hash = (hash ^ bytes.length) * 0x100000001B3L;
+        }
+        return hash;
+    }
+
+    /**
+     * Checks if the tile at a point is blocked, e.g. so towers can't be placed on the path.
+     * Gives the same answer as {@code getPropertyBoolean(x, y, "blocked", false)} on the level's TiledMap.
+     * @param x x co-ordinate in pixels.
+     * @param y y co-ordinate in pixels.
+     * @return true if the tile is blocked, false if it isn't or the point is outside the map.
+     */
+    public boolean isBlocked(double x, double y) {
+        if (x < 0 || y < 0 || x >= columns * tileWidth || y >= rows * tileHeight) {
+            return false;
+        }
+        int tile = ((int) y / tileHeight) * columns + (int) x / tileWidth;
+        return (blocked.get(tile >>> 6) & (1L << (tile & 63))) != 0;
+    }
+
+    /**
+     * @param layer index of the tile layer, in map order.
+     * @param column column of the tile.
+     * @param row row of the tile.
+     * @return global tile id at the position, or 0 if there is no tile there.
+     */
+    public int getTile(int layer, int column, int row) {
+        return layers.get(layer).get(row * columns + column);
+    }
+
+    /**
+     * @param polyline index of the polyline, in map order.
+     * @return distance along the polyline to each of its points, starting from 0. Must not be modified.
+     */
+    public double[] getArcLengths(int polyline) {
+        return arcLengths.get(polyline);
+    }
+
+    /**
+     * @return distance along each polyline to each of its points, in the same order as the polylines.
+     */
+    public List<double[]> getAllArcLengths() {
+        return arcLengths;
+    }
+
+    /**
+     * Checks if this bundle was compiled from the given files as they are now, so a stale or unrelated bundle isn't
+     * used. Reads and hashes the map, its tilesets and the wave file.
+     * @param mapFile file path to the tmx map.
+     * @param waveFile file path to the waves.txt.
+     * @return true if the bundle was compiled from both files and none of its sources have changed since, false
+     * otherwise.
+     */
+    public boolean isCompiledFrom(String mapFile, String waveFile) {
+        if (!this.mapFile.equals(mapFile) || !this.waveFile.equals(waveFile)) {
+            return false;
+        }
+        try {
+            return hashSources(mapFile, tilesetFiles, waveFile) == sourceHash;
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Checks if this bundle was compiled from the given map and wave file paths, whatever their contents now.
+     * @param mapFile file path to the tmx map.
+     * @param waveFile file path to the waves.txt.
+     * @return true if the paths match the bundle's sources, false otherwise.
+     */
+    public boolean hasSources(String mapFile, String waveFile) {
+        return this.mapFile.equals(mapFile) && this.waveFile.equals(waveFile);
+    }
+
+    public List<List<Point>> getPolylines() {
+        return polylines;
+    }
+
+    /**
+     * @return number of the schedule's last wave, or 0 if it has none.
+     */
+    public int getNumberOfWaves() {
+        return schedule.isEmpty() ? 0 : schedule.get(schedule.size() - 1).getWaveNumber();
+    }
+
+    public List<ScheduledEvent> getSchedule() {
+        return schedule;
+    }
+
+    public int getNumberOfLayers() {
+        return layers.size();
+    }
+
+    public int getColumns() {
+        return columns;
+    }
+
+    public int getRows() {
+        return rows;
+    }
+
+    /**
+     * @return width of the map in pixels.
+     */
+    public int getWidth() {
+        return columns * tileWidth;
+    }
+
+    /**
+     * @return height of the map in pixels.
+     */
+    public int getHeight() {
+        return rows * tileHeight;
+    }
+
+    /**
+     * @return size of the compiled bundle in bytes.
+     */
+    public int size() {
+        return buffer.limit();
+    }
+
+    private static void padToLong(ByteBuffer buffer) {
+        while (buffer.position() % 8 != 0) {
+            buffer.put((byte) 0);
+        }
+    }
+
+    private static int stringSize(String string) {
+        return 2 + string.getBytes(StandardCharsets.UTF_8).length;
+    }
+
+    private static void putString(ByteBuffer buffer, String string) {
+        byte[] bytes = string.getBytes(StandardCharsets.UTF_8);
+        buffer.putShort((short) bytes.length).put(bytes);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        byte[] bytes = new byte[buffer.getShort()];
+        buffer.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,47 @@
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Keeps parsed tmx maps, wave scripts and level bundles in memory, so that many games played on the same levels (e.g.
+ * by {@link BatchService}) only read and parse each file once. Safe to share between threads: cached maps, wave
+ * scripts and bundles are never modified after they are loaded.
+ */
+public class LevelCache {
+    private final Map<String, TmxReader> maps = new ConcurrentHashMap<>();
+    private final Map<String, List<String>> waveScripts = new ConcurrentHashMap<>();
+    private final Map<String, LevelBundle> bundles = new ConcurrentHashMap<>();
+
+    /**
+     * @param mapFile file path to a tmx map.
+     * @return the parsed map, reading it if it is not cached yet.
+     */
+    public TmxReader getMap(String mapFile) {
+        return maps.computeIfAbsent(mapFile, TmxReader::new);
+    }
+
+    /**
+     * @param waveFile file path to a waves.txt.
+     * @return the lines of the wave script, reading it if it is not cached yet.
+     */
+    public List<String> getWaveScript(String waveFile) {
+        return waveScripts.computeIfAbsent(waveFile, file -> Collections.unmodifiableList(Level.readWaveFile(file)));
+    }
+
+    /**
+     * @param definition level to get the bundle of.
+     * @return the level's bundle, loading or compiling it if it is not cached yet.
+     */
+    public LevelBundle getBundle(LevelDefinition definition) {
+        return bundles.computeIfAbsent(definition.getMapFile() + "," + definition.getWaveFile(),
+                key -> definition.loadBundle());
+    }
+
+    /**
+     * @return number of maps, wave scripts and bundles cached.
+     */
+    public int size() {
+        return maps.size() + waveScripts.size() + bundles.size();
+    }
+}
@@ -0,0 +1,65 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Build-time tool that compiles levels into {@link LevelBundle}s, so the game can load them without parsing any XML
+ * or text. Each bundle is written next to its map (see {@link LevelDefinition#getBundleFile()}), and is only used
+ * while the map, tilesets and wave file it was compiled from still have the same contents. Games write missing or
+ * stale bundles themselves on first load, so this only saves that first load the work.
+ * <p>
+ * Usage: {@code java LevelCompiler [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code maps}: comma separated tmx maps to compile (default the game's levels)</li>
+ *     <li>{@code waves}: wave file to compile with every map (default res/levels/waves.txt)</li>
+ * </ul>
+ */
+public class LevelCompiler {
+    private final List<String> maps = new ArrayList<>(Arrays.asList(LevelDefinition.LEVEL_MAPS));
+    private String waves = LevelDefinition.WAVE_FILE;
+
+    /**
+     * Compiles the levels from the command line.
+     * @param args settings as key=value pairs.
+     * @throws IOException if a bundle could not be written.
+     */
+    public static void main(String[] args) throws IOException {
+        LevelCompiler compiler = new LevelCompiler();
+        Settings.apply(args, 0, compiler::set);
+        compiler.compile();
+    }
+
+    /**
+     * Changes one setting, using the same keys as the command line.
+     * @param key setting name.
+     * @param value setting value.
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "maps":
+                maps.clear();
+                maps.addAll(Arrays.asList(value.split(",")));
+                break;
+            case "waves":
+                waves = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Compiles and writes the bundle of every map.
+     * @throws IOException if a bundle could not be written.
+     */
+    public void compile() throws IOException {
+        List<String> waveLines = Level.readWaveFile(waves);
+        for (String map : maps) {
+            LevelDefinition definition = new LevelDefinition(map, waves);
+            LevelBundle bundle = LevelBundle.compile(map, new TmxReader(map), waves, waveLines);
+            bundle.write(definition.getBundleFile());
+            System.out.println("Compiled " + map + " into " + definition.getBundleFile() + " (" + bundle.size() + " bytes)");
+        }
+    }
+}
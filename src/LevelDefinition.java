@@ -0,0 +1,111 @@
+import bagel.map.TiledMap;
+
+import java.io.File;
+import java.io.IOException;
+
+/**
+ * Describes where a level's map and wave file are, so a {@link Level} can be created from it either with a window
+ * (drawing the {@link TiledMap}) or headless (reading only the polyline through {@link TmxReader}).
+ * <p>
+ * If the level has been compiled into a {@link LevelBundle} next to the map (e.g. "1.sdlevel" for "1.tmx"), from the
+ * current contents of the same map, tilesets and wave file, the bundle is loaded instead of parsing them. Bundles are
+ * not kept in version control: the first load of a level with no bundle, or a stale one, writes it (see
+ * {@link LevelCompiler} to write them ahead of time).
+ */
+public class LevelDefinition {
+    // The game's levels, in the order they are played
+    public static final String[] LEVEL_MAPS = {"res/levels/1.tmx", "res/levels/2.tmx"};
+    public static final String WAVE_FILE = "res/levels/waves.txt";
+
+    private static final String BUNDLE_EXTENSION = ".sdlevel";
+
+    private final String mapFile;
+    private final String waveFile;
+    private final LevelCache cache;
+
+    /**
+     * Creates a new level definition.
+     * @param mapFile file path to the level's tmx map.
+     * @param waveFile file path to the level's waves.txt.
+     */
+    public LevelDefinition(String mapFile, String waveFile) {
+        this(mapFile, waveFile, null);
+    }
+
+    /**
+     * Creates a new level definition whose map and wave files are read through a cache.
+     * @param mapFile file path to the level's tmx map.
+     * @param waveFile file path to the level's waves.txt.
+     * @param cache cache to read the files through, or {@code null} to read them every time the level is loaded.
+     */
+    public LevelDefinition(String mapFile, String waveFile, LevelCache cache) {
+        this.mapFile = mapFile;
+        this.waveFile = waveFile;
+        this.cache = cache;
+    }
+
+    /**
+     * Loads the level with a new player.
+     * @param random game random number generator shared by the whole game, or {@code null} to give it later with
+     * {@link Level#bind(GameRandom, SlicerPool)}.
+     * @param slicerPool slicer pool shared by the whole game, or {@code null} to give it later.
+     * @param headless true to skip loading the TiledMap (and so any images), false otherwise.
+     * @return newly loaded level.
+     */
+    public Level load(GameRandom random, SlicerPool slicerPool, boolean headless) {
+        LevelBundle bundle = cache == null ? loadBundle() : cache.getBundle(this);
+        TiledMap map = headless ? null : new TiledMap(mapFile);
+        return new Level(map, bundle, new Player(), random, slicerPool);
+    }
+
+    /**
+     * Loads the level's compiled bundle if there is an up to date one, or else compiles one from the map and wave file.
+     * A newly compiled bundle is written next to the map if there was none, or if the one there is a stale bundle of
+     * the same files; a bundle of another wave file (e.g. a generated one) is left alone. Safe to call headless.
+     * @return the level's map and wave schedule.
+     */
+    public LevelBundle loadBundle() {
+        File bundleFile = new File(getBundleFile());
+        boolean write = !bundleFile.exists();
+        if (!write) {
+            try {
+                LevelBundle bundle = LevelBundle.load(bundleFile.getPath());
+                if (bundle.isCompiledFrom(mapFile, waveFile)) {
+                    return bundle;
+                }
+                write = bundle.hasSources(mapFile, waveFile);
+            } catch (IOException e) {
+                System.out.println("Level bundle could not be loaded, reading level files instead");
+                e.printStackTrace();
+                write = true;
+            }
+        }
+        TmxReader tmx = cache == null ? new TmxReader(mapFile) : cache.getMap(mapFile);
+        LevelBundle bundle = LevelBundle.compile(mapFile, tmx, waveFile,
+                cache == null ? Level.readWaveFile(waveFile) : cache.getWaveScript(waveFile));
+        if (write) {
+            try {
+                bundle.write(bundleFile.getPath());
+            } catch (IOException e) {
+                System.out.println("Level bundle could not be written, it will be compiled again next time");
+                e.printStackTrace();
+            }
+        }
+        return bundle;
+    }
+
+    /**
+     * @return file path the level's compiled bundle is written to and loaded from.
+     */
+    public String getBundleFile() {
+        return mapFile.replaceFirst("\\.tmx$", "") + BUNDLE_EXTENSION;
+    }
+
+    public String getMapFile() {
+        return mapFile;
+    }
+
+    public String getWaveFile() {
+        return waveFile;
+    }
+}
@@ -0,0 +1,118 @@
+import bagel.util.Point;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The parts of a level's lanes that a circle (e.g. a stationary tower's range) covers, as intervals of distance along
+ * each lane's polyline. Towers never move, so their coverage is worked out once and then used every tick to look up
+ * only the slicers whose progress along the lane falls inside it (see {@link WaveEvent}).
+ * <p>
+ * Slicers are not always exactly on their polyline: children spawn slightly offset, and slicers overshoot corners.
+ * So the intervals are worked out for the radius plus {@code MARGIN}, and slicers further than that from the point on
+ * the polyline matching their progress must be checked some other way.
+ */
+public class PathCoverage {
+    // Furthest a slicer may be from its point on the polyline for the intervals to still find it
+    public static final double MARGIN = 32;
+
+    private final double[][] intervals;
+    private final boolean empty;
+
+    /**
+     * Works out which parts of every lane are within {@code radius + MARGIN} of a point.
+     * @param centre centre of the circle.
+     * @param radius radius of the circle.
+     * @param lanes polyline of every lane.
+     * @param arcLengths distance along each lane's polyline to each of its points (see {@link #arcLengths(List)}).
+     */
+    public PathCoverage(Point centre, double radius, List<List<Point>> lanes, List<double[]> arcLengths) {
+        double reach = radius + MARGIN;
+        intervals = new double[lanes.size()][];
+        for (int lane = 0; lane < lanes.size(); lane++) {
+            intervals[lane] = coverLane(centre, reach, lanes.get(lane), arcLengths.get(lane));
+        }
+        empty = Arrays.stream(intervals).allMatch(covered -> covered.length == 0);
+    }
+
+    /**
+     * Intersects a circle with each segment of a polyline, merging intervals that touch.
+     * @return start and end of each interval, in order.
+     */
+    private static double[] coverLane(Point centre, double reach, List<Point> path, double[] arcLengths) {
+        double[] covered = new double[8];
+        int count = 0;
+        for (int i = 1; i < path.size(); i++) {
+            double ax = path.get(i - 1).x - centre.x;
+            double ay = path.get(i - 1).y - centre.y;
+            double dx = path.get(i).x - path.get(i - 1).x;
+            double dy = path.get(i).y - path.get(i - 1).y;
+            // |a + t * d|^2 = reach^2, for t from 0 to 1 along the segment
+            double a = dx * dx + dy * dy;
+            double b = 2 * (ax * dx + ay * dy);
+            double c = ax * ax + ay * ay - reach * reach;
+            double from;
+            double to;
+            if (a == 0) {
+                if (c > 0) {
+                    continue;
+                }
+                from = 0;
+                to = 0;
+            } else {
+                double discriminant = b * b - 4 * a * c;
+                if (discriminant < 0) {
+                    continue;
+                }
+                double root = Math.sqrt(discriminant);
+                from = Math.max(0, (-b - root) / (2 * a));
+                to = Math.min(1, (-b + root) / (2 * a));
+                if (from > to) {
+                    continue;
+                }
+            }
+            double length = arcLengths[i] - arcLengths[i - 1];
+            double start = arcLengths[i - 1] + from * length;
+            double end = arcLengths[i - 1] + to * length;
+            if (count > 0 && start <= covered[count - 1]) {
+                covered[count - 1] = Math.max(covered[count - 1], end);
+                continue;
+            }
+            if (count == covered.length) {
+                covered = Arrays.copyOf(covered, count * 2);
+            }
+            covered[count++] = start;
+            covered[count++] = end;
+        }
+        return Arrays.copyOf(covered, count);
+    }
+
+    /**
+     * Works out the distance along a polyline to each of its points.
+     * @param polyline points of the polyline.
+     * @return distance to each point, starting from 0.
+     */
+    public static double[] arcLengths(List<Point> polyline) {
+        double[] lengths = new double[polyline.size()];
+        for (int i = 1; i < polyline.size(); i++) {
+            lengths[i] = lengths[i - 1] + polyline.get(i).distanceTo(polyline.get(i - 1));
+        }
+        return lengths;
+    }
+
+    /**
+     * @param lane index of the lane.
+     * @return start and end of each covered interval of the lane, in order, as distances along its polyline. Empty if
+     * the circle doesn't reach the lane. Must not be modified.
+     */
+    public double[] getIntervals(int lane) {
+        return intervals[lane];
+    }
+
+    /**
+     * @return true if the circle doesn't reach any lane, so only slicers that have drifted off their lane can be in it.
+     */
+    public boolean isEmpty() {
+        return empty;
+    }
+}
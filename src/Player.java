@@ -10,6 +10,9 @@ public class Player {
 
     private int health;
     private int gold;
+    // Not saved in snapshots, as they don't affect play
+    private int kills = 0;
+    private int leaks = 0;
 
     /**
      * Creates a new Player object, with 25 starting health and 500 starting gold.
@@ -41,6 +44,32 @@ public class Player {
         health -= n;
     }
 
+    /**
+     * Counts slicers killed by towers, including children.
+     * @param n number of slicers killed.
+     */
+    public void addKills(int n) {
+        kills += n;
+    }
+
+    /**
+     * Counts a slicer that reached the end of the polyline.
+     */
+    public void addLeak() {
+        leaks++;
+    }
+
+    public void setHealth(int health) {
+        this.health = health;
+    }
+
+    public void setGold(int gold) {
+        if (gold < 0) {
+            throw new IllegalArgumentException();
+        }
+        this.gold = gold;
+    }
+
     public int getHealth() {
         return health;
     }
@@ -48,4 +77,12 @@ public class Player {
     public int getGold() {
         return gold;
     }
+
+    public int getKills() {
+        return kills;
+    }
+
+    public int getLeaks() {
+        return leaks;
+    }
 }
@@ -1,42 +1,81 @@
 import bagel.util.Point;
 import bagel.util.Vector2;
-import bagel.Image;
 
 /**
  * This class implements and controls the "Projectile" object.
- * Projectiles are spawned from {@link StationaryTower}s but are controlled by the base game class afterwards.
+ * Projectiles are spawned from {@link StationaryTowers} but are controlled by the base game class afterwards.
  * Projectiles chase after a specified target, dealing damage to them when they reach their target.
- * They have a speed of 10px/frame.
+ * They have a speed of 10px/frame. Once tracked by their target, homing projectiles are retargeted when it leaves play.
  */
 public class Projectile {
     private static final double PROJECTILE_SPEED = 10;
 
-    private final Image image;
-    private final Slicer target;
+    private final Sprite image;
     private final int damage;
 
+    private Slicer target;
+    private int targetGeneration;
+    private int targetSlot = -1;
+    private boolean discarded = false;
+
     private Point position;
     private Vector2 vector;
 
     /**
-     * Creates a new projectile.
+     * Creates a new projectile, adding its damage to the target's pending damage until
+     * {@link Projectile#resolve()} is called.
      * @param image image of projectile.
      * @param position where the projectile is spawned.
      * @param target the slicer to chase after.
      * @param damage amount of damage to deal to the slicer when reached.
      */
-    public Projectile(Image image, Point position, Slicer target, int damage) {
+    public Projectile(Sprite image, Point position, Slicer target, int damage) {
         this.image = image;
         this.position = position;
         this.target = target;
+        this.targetGeneration = target.getGeneration();
         this.damage = damage;
+        target.addPendingDamage(damage);
+    }
+
+    /**
+     * Removes this projectile's damage from its target's pending damage. Call this exactly once, when the projectile
+     * hits or is discarded. Does nothing if the target has since been reused by the slicer pool.
+     */
+    public void resolve() {
+        if (target.getGeneration() == targetGeneration) {
+            target.addPendingDamage(-damage);
+            if (targetSlot >= 0) {
+                target.removeProjectile(this);
+            }
+        }
+    }
+
+    /**
+     * Records this projectile with its target, so that if the target leaves play the projectile is handed to
+     * {@link SlicerPool#getOrphanedProjectiles()} to be retargeted. Only for homing projectiles.
+     */
+    public void track() {
+        target.addProjectile(this);
     }
 
     /**
-     * Renders the projectile at it's current position.
+     * Sends the projectile after a new target, from where it is now, after its target has left play.
+     * The projectile's damage becomes pending on the new target, which tracks it.
+     * @param newTarget slicer to chase.
      */
-    public void draw() {
-        image.draw(position.x, position.y);
+    public void retarget(Slicer newTarget) {
+        target = newTarget;
+        targetGeneration = newTarget.getGeneration();
+        newTarget.addPendingDamage(damage);
+        newTarget.addProjectile(this);
+    }
+
+    /**
+     * Marks the projectile as having nothing left to chase, after its target has left play, so it can be removed.
+     */
+    public void discard() {
+        discarded = true;
     }
 
     /**
@@ -47,6 +86,14 @@ public class Projectile {
         this.position = new Point(position.x + vector.x, position.y + vector.y);
     }
 
+    /**
+     * Moves the projectile towards it's target in the same way as {@link Projectile#move()}, but in fixed point (see
+     * {@link FixedPoint}). The projectile's position is rounded to the nearest 1/256th of a pixel first.
+     */
+    public void moveFixed() {
+        position = FixedPoint.moveTowards(FixedPoint.snap(position), target.getPosition(), PROJECTILE_SPEED);
+    }
+
     /**
      * Updates vector of projectile so it homes onto slicer.
      * This is called in {@link Projectile#move()} and does not need to be called elsewhere.
@@ -66,11 +113,32 @@ public class Projectile {
         return position.distanceTo(target.getPosition()) <= PROJECTILE_SPEED + target.getFinalMovementSpeed();
     }
 
+    /**
+     * Checks if projectile has reached the target in the same way as {@link Projectile#checkIntersectionWithTarget()},
+     * but in fixed point.
+     * @return true if projectile is close enough to target, false otherwise.
+     */
+    public boolean checkIntersectionWithTargetFixed() {
+        return FixedPoint.isWithin(position, target.getPosition(), PROJECTILE_SPEED + target.getFinalMovementSpeed());
+    }
+
+    /**
+     * Checks if the target is still alive. Slicers are reused once they die or reach the end (see {@link SlicerPool}),
+     * so the target only counts as alive if it has not been released since this projectile was fired.
+     * @return true if the target is alive, false otherwise.
+     */
     public boolean checkTargetIsAlive() {
-        return target.getHealth() > 0;
+        return target.getGeneration() == targetGeneration && target.getHealth() > 0;
     }
 
-    public Image getImage() {
+    /**
+     * @return distance projectiles move each frame, in pixels.
+     */
+    public static double getSpeed() {
+        return PROJECTILE_SPEED;
+    }
+
+    public Sprite getImage() {
         return image;
     }
 
@@ -89,4 +157,16 @@ public class Projectile {
     public Slicer getTarget() {
         return target;
     }
+
+    public int getTargetSlot() {
+        return targetSlot;
+    }
+
+    public void setTargetSlot(int targetSlot) {
+        this.targetSlot = targetSlot;
+    }
+
+    public boolean isDiscarded() {
+        return discarded;
+    }
 }
\ No newline at end of file
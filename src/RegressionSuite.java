@@ -0,0 +1,346 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.PriorityQueue;
+import java.util.Scanner;
+
+/**
+ * Headless regression suite, run by {@code mvn verify}. Plays a fixed set of {@link BatchJob} scenarios to the end and
+ * compares each against its golden result: the build fails if a final state checksum changes (the engine now behaves
+ * differently), or if relative throughput has dropped by more than the tolerance (the engine is now slower).
+ * <p>
+ * Ticks per second depend on the machine, so throughput is compared relative to a fixed calibration workload, timed
+ * in the same run just before each scenario so that both see the same load on the machine. The calibration steers points with square roots and churns a priority queue, like slicers and
+ * scheduled hits, but runs no engine code, so a change to the engine never changes it. Relative throughput is a
+ * scenario's ticks per second divided by the calibration's rounds per second.
+ * <p>
+ * The final state checksum covers the player's gold, health, kills and leaks, the final frame, and the game's rolling
+ * checksum of every tick. Every scenario is played once to warm up the JIT, then each is played several times more;
+ * the best ticks per second counts, and every run must finish with the same checksum. Peak heap is reported but not
+ * checked.
+ * <p>
+ * Scenarios are read from a file of {@link BatchJob} settings, each scenario starting with a {@code [name]} line.
+ * Settings starting with {@code generate.} are passed to a {@link WaveScriptGenerator} (e.g.
+ * {@code generate.slicers=5000}), whose script is then played instead of a {@code waves} file. Golden results are one
+ * line per scenario: {@code name checksum relative-throughput}.
+ * <p>
+ * Usage: {@code java RegressionSuite [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code scenarios}: scenario file (default res/regression/scenarios.txt)</li>
+ *     <li>{@code golden}: golden results file (default res/regression/golden.txt)</li>
+ *     <li>{@code runs}: timed plays of each scenario (default 5)</li>
+ *     <li>{@code tolerance}: largest allowed drop in relative throughput, as a fraction (default 0.4)</li>
+ *     <li>{@code throughput}: {@code false} to check checksums only (default true)</li>
+ *     <li>{@code update}: {@code true} to write the results as the new golden results instead of checking them
+ *     (default false)</li>
+ * </ul>
+ * Exits with status 1 if any scenario fails.
+ */
+public class RegressionSuite {
+    private static final long CHECKSUM_PRIME = 1099511628211L;
+    private static final String GENERATE_PREFIX = "generate.";
+    // Points steered and queue entries churned in each calibration round
+    private static final int CALIBRATION_POINTS = 4096;
+    private static final int CALIBRATION_ROUNDS = 200;
+
+    private String scenarios = "res/regression/scenarios.txt";
+    private String golden = "res/regression/golden.txt";
+    private int runs = 5;
+    private double tolerance = 0.4;
+    private boolean throughput = true;
+    private boolean update = false;
+
+    /**
+     * Runs the suite from the command line.
+     * @param args settings as key=value pairs.
+     * @throws IOException if a file could not be read or written.
+     */
+    public static void main(String[] args) throws IOException {
+        RegressionSuite suite = new RegressionSuite();
+        Settings.apply(args, 0, suite::set);
+        if (!suite.run()) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Changes one setting, using the same keys as the command line.
+     * @param key setting name.
+     * @param value setting value.
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "scenarios":
+                scenarios = value;
+                break;
+            case "golden":
+                golden = value;
+                break;
+            case "runs":
+                runs = Integer.parseInt(value);
+                break;
+            case "tolerance":
+                tolerance = Double.parseDouble(value);
+                break;
+            case "throughput":
+                throughput = Boolean.parseBoolean(value);
+                break;
+            case "update":
+                update = Boolean.parseBoolean(value);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Plays every scenario, printing a table of results, then checks them against (or writes) the golden results.
+     * @return true if every scenario passed, false otherwise.
+     * @throws IOException if a file could not be read or written.
+     */
+    public boolean run() throws IOException {
+        Map<String, BatchJob> jobs = new LinkedHashMap<>();
+        for (Map.Entry<String, String> scenario : readScenarios(scenarios).entrySet()) {
+            jobs.put(scenario.getKey(), BatchJob.parse(prepare(scenario.getKey(), scenario.getValue())));
+        }
+        Map<String, String[]> expected = update ? new LinkedHashMap<>() : readGolden(golden);
+        Map<String, long[]> results = new LinkedHashMap<>();
+        Map<String, Double> relative = new LinkedHashMap<>();
+        LevelCache cache = new LevelCache();
+        boolean passed = true;
+
+        // Play everything once first, so the JIT has compiled the engine before any scenario is timed
+        for (BatchJob job : jobs.values()) {
+            job.run(cache, line -> { });
+        }
+        calibrate();
+
+        System.out.printf("%-20s %-16s %8s %9s %9s %12s  %s%n", "scenario", "checksum", "ticks/s", "relative",
+                "golden", "peak heap MB", "status");
+        for (Map.Entry<String, BatchJob> job : jobs.entrySet()) {
+            String name = job.getKey();
+            double calibration = calibrate();
+            long[] result = play(job.getValue(), cache);
+            results.put(name, result);
+            if (result != null) {
+                relative.put(name, result[1] / calibration);
+            }
+
+            String status;
+            String[] golden = expected.get(name);
+            if (update) {
+                status = "updated";
+            } else if (result == null) {
+                status = "FAIL: checksum differs between runs";
+            } else if (golden == null) {
+                status = "FAIL: no golden result";
+            } else if (Long.parseUnsignedLong(golden[0], 16) != result[0]) {
+                status = "FAIL: checksum drift";
+            } else if (throughput && relative.get(name) < Double.parseDouble(golden[1]) * (1 - tolerance)) {
+                status = "FAIL: throughput dropped";
+            } else {
+                status = "ok";
+            }
+            passed &= !status.startsWith("FAIL");
+            System.out.printf("%-20s %-16s %8s %9s %9s %12s  %s%n", name,
+                    result == null ? "-" : String.format("%016x", result[0]), result == null ? "-" : result[1],
+                    result == null ? "-" : String.format("%.2f", relative.get(name)),
+                    golden == null ? "-" : golden[1], result == null ? "-" : result[2], status);
+        }
+
+        if (update) {
+            try (PrintWriter writer = new PrintWriter(golden)) {
+                writer.println("# Written by RegressionSuite update=true: name checksum relative-throughput");
+                for (Map.Entry<String, long[]> result : results.entrySet()) {
+                    if (result.getValue() != null) {
+                        writer.printf(Locale.ROOT, "%s %016x %.2f%n", result.getKey(), result.getValue()[0],
+                                relative.get(result.getKey()));
+                    }
+                }
+            }
+            System.out.println("Golden results written to " + golden);
+        }
+        System.out.println(passed ? "Regression suite passed" : "Regression suite FAILED");
+        return passed;
+    }
+
+    /**
+     * Plays a scenario {@code runs} times.
+     * @param job the scenario.
+     * @param cache cache to read maps and wave scripts through.
+     * @return final state checksum, best ticks per second and peak heap in MB, or {@code null} if the runs did not all
+     * finish with the same checksum.
+     */
+    private long[] play(BatchJob job, LevelCache cache) {
+        long checksum = 0;
+        long bestTicksPerSecond = 0;
+        long peakHeap = 0;
+        for (int run = 0; run < runs; run++) {
+            System.gc();
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                pool.resetPeakUsage();
+            }
+            long startTime = System.nanoTime();
+            Simulation simulation = job.run(cache, line -> { });
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+
+            Player player = simulation.getCurrentPlayer();
+            long runChecksum = simulation.getChecksum();
+            for (long value : new long[]{player.getGold(), player.getHealth(), player.getKills(), player.getLeaks(),
+                    simulation.getFrame()}) {
+                runChecksum = runChecksum * CHECKSUM_PRIME + value;
+            }
+            if (run > 0 && runChecksum != checksum) {
+                return null;
+            }
+            checksum = runChecksum;
+            bestTicksPerSecond = Math.max(bestTicksPerSecond, Math.round(simulation.getFrame() / seconds));
+            for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+                if (pool.getType() == MemoryType.HEAP) {
+                    peakHeap = Math.max(peakHeap, pool.getPeakUsage().getUsed() >> 20);
+                }
+            }
+        }
+        return new long[]{checksum, bestTicksPerSecond, peakHeap};
+    }
+
+    /**
+     * Times the calibration workload {@code runs} times. Each round steers {@value #CALIBRATION_POINTS} points a step
+     * towards their targets and pushes as many entries through a priority queue.
+     * @return best calibration rounds per second.
+     */
+    private double calibrate() {
+        double[] x = new double[CALIBRATION_POINTS];
+        double[] y = new double[CALIBRATION_POINTS];
+        PriorityQueue<Long> queue = new PriorityQueue<>();
+        double best = 0;
+        long sink = 0;
+        for (int run = 0; run < Math.max(runs, 1); run++) {
+            for (int i = 0; i < CALIBRATION_POINTS; i++) {
+                x[i] = i % 64;
+                y[i] = i / 64;
+            }
+            long startTime = System.nanoTime();
+            for (int round = 0; round < CALIBRATION_ROUNDS; round++) {
+                for (int i = 0; i < CALIBRATION_POINTS; i++) {
+                    double dx = 1024 - x[i] + round;
+                    double dy = 768 - y[i] - i;
+                    double length = Math.sqrt(dx * dx + dy * dy);
+                    if (length > 0) {
+                        x[i] += dx / length;
+                        y[i] += dy / length;
+                    }
+                    queue.add((long) (x[i] * 31 + y[i]) * CALIBRATION_POINTS + i);
+                }
+                while (!queue.isEmpty()) {
+                    sink += queue.poll();
+                }
+            }
+            double seconds = (System.nanoTime() - startTime) / 1e9;
+            best = Math.max(best, CALIBRATION_ROUNDS / seconds);
+        }
+        // Keeps the JIT from dropping the work as unused
+        if (sink == 42) {
+            System.out.println();
+        }
+        return best;
+    }
+
+    /**
+     * Turns a scenario's settings into a {@link BatchJob}, generating its wave script if it has {@code generate.}
+     * settings.
+     * @param name scenario name.
+     * @param settings scenario settings, one per line.
+     * @return job settings.
+     * @throws IOException if the generated wave script could not be written.
+     */
+    private static String prepare(String name, String settings) throws IOException {
+        WaveScriptGenerator generator = null;
+        StringBuilder job = new StringBuilder();
+        for (String line : settings.split("\\R")) {
+            if (line.startsWith(GENERATE_PREFIX)) {
+                if (generator == null) {
+                    generator = new WaveScriptGenerator();
+                }
+                String[] setting = Settings.split(line.substring(GENERATE_PREFIX.length()));
+                generator.set(setting[0], setting[1]);
+            } else {
+                job.append(line).append('\n');
+            }
+        }
+        if (generator != null) {
+            File waveFile = File.createTempFile(name, ".txt");
+            waveFile.deleteOnExit();
+            generator.write(waveFile.getPath());
+            job.append("waves=").append(waveFile.getPath()).append('\n');
+        }
+        return job.toString();
+    }
+
+    /**
+     * Reads a scenario file.
+     * @param fileDir file path of the scenarios.
+     * @return settings of each scenario by name, in file order.
+     * @throws FileNotFoundException if the file does not exist.
+     */
+    private static Map<String, String> readScenarios(String fileDir) throws FileNotFoundException {
+        Map<String, String> scenarios = new LinkedHashMap<>();
+        String name = null;
+        StringBuilder settings = new StringBuilder();
+        try (Scanner reader = new Scanner(new File(fileDir))) {
+            while (reader.hasNextLine()) {
+                String line = reader.nextLine().trim();
+                if (line.startsWith("[") && line.endsWith("]")) {
+                    if (name != null) {
+                        scenarios.put(name, settings.toString());
+                    }
+                    name = line.substring(1, line.length() - 1);
+                    settings.setLength(0);
+                } else if (!line.isEmpty() && !line.startsWith("#")) {
+                    if (name == null) {
+                        throw new IllegalArgumentException("Setting before the first [scenario]: " + line);
+                    }
+                    settings.append(line).append('\n');
+                }
+            }
+        }
+        if (name != null) {
+            scenarios.put(name, settings.toString());
+        }
+        return scenarios;
+    }
+
+    /**
+     * Reads a golden results file. A missing file has no results, so every scenario fails until it is written.
+     * @param fileDir file path of the golden results.
+     * @return checksum and relative throughput of each scenario by name.
+     * @throws FileNotFoundException never, as a missing file is treated as empty.
+     */
+    private static Map<String, String[]> readGolden(String fileDir) throws FileNotFoundException {
+        Map<String, String[]> golden = new LinkedHashMap<>();
+        if (!new File(fileDir).exists()) {
+            return golden;
+        }
+        try (Scanner reader = new Scanner(new File(fileDir))) {
+            while (reader.hasNextLine()) {
+                String line = reader.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split("\\s+");
+                if (fields.length != 3) {
+                    throw new IllegalArgumentException("Expected name checksum relative-throughput: " + line);
+                }
+                golden.put(fields[0], new String[]{fields[1], fields[2]});
+            }
+        }
+        return golden;
+    }
+}
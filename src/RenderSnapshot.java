@@ -0,0 +1,257 @@
+import bagel.util.Point;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Everything the renderer needs to draw one tick of the game: positions, rotations and images of slicers, towers,
+ * projectiles and explosives, plus the values shown on the panels.
+ * Snapshots are captured by the simulation thread after every frame (see {@link SimulationLoop}) and never change
+ * afterwards, so the render thread can read them without locks. Slicers carry their spawn serial number, so the
+ * renderer can interpolate each slicer between two snapshots; everything else is drawn where it was in the latest one.
+ * Scheduled hits are only copied as they were fired (origin, target, fired and impact tick), and placed along their
+ * flight when drawn, on the render thread.
+ */
+public class RenderSnapshot {
+    private final long publishedNanos;
+    private final int frame;
+    private final int levelNumber;
+    private final int gold;
+    private final int health;
+    private final int currentWave;
+    private final int timeScale;
+    private final boolean waveInProgress;
+    private final boolean allWavesComplete;
+    private final boolean playerDead;
+
+    private final long[] slicerSerials;
+    private final Sprite[] slicerImages;
+    private final double[] slicerX;
+    private final double[] slicerY;
+    private final double[] slicerRotation;
+
+    private final Sprite[] towerImages;
+    private final double[] towerX;
+    private final double[] towerY;
+    private final double[] towerRotation;
+
+    private final Sprite[] projectileImages;
+    private final double[] projectileX;
+    private final double[] projectileY;
+
+    private final long impactTick;
+    private final Sprite[] impactImages;
+    private final double[] impactOriginX;
+    private final double[] impactOriginY;
+    private final long[] impactTargets;
+    private final long[] impactFiredTicks;
+    private final long[] impactDueTicks;
+
+    private final double[] explosiveX;
+    private final double[] explosiveY;
+
+    // Built on the render thread the first time this snapshot is interpolated from
+    private Map<Long, Integer> slicerIndex = null;
+
+    /**
+     * Captures the current state of a game. Must be called on the thread running the simulation.
+     * @param simulation game to capture.
+     * @param publishedNanos {@link System#nanoTime()} when the captured frame finished.
+     */
+    public RenderSnapshot(Simulation simulation, long publishedNanos) {
+        Level level = simulation.getCurrentLevel();
+        this.publishedNanos = publishedNanos;
+        this.frame = simulation.getFrame();
+        this.levelNumber = simulation.getLevelNumber();
+        this.gold = simulation.getCurrentPlayer().getGold();
+        this.health = simulation.getCurrentPlayer().getHealth();
+        this.currentWave = level.getCurrentWave();
+        this.timeScale = simulation.getTimeScale();
+        this.waveInProgress = level.waveInProgress();
+        this.allWavesComplete = level.isAllWavesComplete();
+        this.playerDead = simulation.isPlayerDead();
+
+        List<Slicer> slicers = level.getAllSlicers();
+        slicerSerials = new long[slicers.size()];
+        slicerImages = new Sprite[slicers.size()];
+        slicerX = new double[slicers.size()];
+        slicerY = new double[slicers.size()];
+        slicerRotation = new double[slicers.size()];
+        for (int i = 0; i < slicers.size(); i++) {
+            Slicer slicer = slicers.get(i);
+            slicerSerials[i] = slicer.getSerial();
+            slicerImages[i] = slicer.getType().getImage();
+            slicerX[i] = slicer.getPosition().x;
+            slicerY[i] = slicer.getPosition().y;
+            slicerRotation[i] = slicer.getRotation();
+        }
+
+        StationaryTowers stationaryTowers = simulation.getStationaryTowers();
+        AirSupports airSupports = simulation.getAirSupports();
+        int numberOfTowers = stationaryTowers.size() + airSupports.size();
+        towerImages = new Sprite[numberOfTowers];
+        towerX = new double[numberOfTowers];
+        towerY = new double[numberOfTowers];
+        towerRotation = new double[numberOfTowers];
+        for (int i = 0; i < stationaryTowers.size(); i++) {
+            towerImages[i] = stationaryTowers.getType(i).getImage();
+            towerX[i] = stationaryTowers.getPosition(i).x;
+            towerY[i] = stationaryTowers.getPosition(i).y;
+            towerRotation[i] = stationaryTowers.getRotation(i);
+        }
+        for (int i = 0, j = stationaryTowers.size(); i < airSupports.size(); i++, j++) {
+            towerImages[j] = airSupports.getType(i).getImage();
+            towerX[j] = airSupports.getX(i);
+            towerY[j] = airSupports.getY(i);
+            towerRotation[j] = airSupports.getRotation(i);
+        }
+
+        List<Projectile> projectiles = simulation.getProjectileList();
+        projectileImages = new Sprite[projectiles.size()];
+        projectileX = new double[projectiles.size()];
+        projectileY = new double[projectiles.size()];
+        for (int i = 0; i < projectiles.size(); i++) {
+            projectileImages[i] = projectiles.get(i).getImage();
+            projectileX[i] = projectiles.get(i).getPosition().x;
+            projectileY[i] = projectiles.get(i).getPosition().y;
+        }
+
+        Collection<ImpactScheduler.ScheduledImpact> impacts = simulation.getImpactScheduler().getImpactView();
+        impactTick = simulation.getImpactScheduler().getTick();
+        impactImages = new Sprite[impacts.size()];
+        impactOriginX = new double[impacts.size()];
+        impactOriginY = new double[impacts.size()];
+        impactTargets = new long[impacts.size()];
+        impactFiredTicks = new long[impacts.size()];
+        impactDueTicks = new long[impacts.size()];
+        int n = 0;
+        for (ImpactScheduler.ScheduledImpact impact : impacts) {
+            Projectile projectile = impact.getProjectile();
+            impactImages[n] = projectile.getImage();
+            impactOriginX[n] = projectile.getPosition().x;
+            impactOriginY[n] = projectile.getPosition().y;
+            impactTargets[n] = impact.getTargetSerial();
+            impactFiredTicks[n] = impact.getFiredTick();
+            impactDueTicks[n] = impact.getImpactTick();
+            n++;
+        }
+
+        List<Explosive> explosives = simulation.getExplosiveList();
+        explosiveX = new double[explosives.size()];
+        explosiveY = new double[explosives.size()];
+        for (int i = 0; i < explosives.size(); i++) {
+            explosiveX[i] = explosives.get(i).getPosition().x;
+            explosiveY[i] = explosives.get(i).getPosition().y;
+        }
+    }
+
+    /**
+     * Renders slicers, towers, projectiles and explosives. Slicers are drawn part way between where they were in the
+     * previous snapshot and this one; slicers that have just spawned are drawn where they are now.
+     * @param previous snapshot before this one, or {@code null} if there is none.
+     * @param alpha how far between the previous snapshot (0) and this one (1) to draw slicers.
+     */
+    public void draw(RenderSnapshot previous, double alpha) {
+        Map<Long, Integer> previousIndex = previous == null ? null : previous.getSlicerIndex();
+        for (int i = 0; i < slicerSerials.length; i++) {
+            double x = slicerX[i];
+            double y = slicerY[i];
+            Integer j = previousIndex == null ? null : previousIndex.get(slicerSerials[i]);
+            if (j != null) {
+                x = previous.slicerX[j] + (x - previous.slicerX[j]) * alpha;
+                y = previous.slicerY[j] + (y - previous.slicerY[j]) * alpha;
+            }
+            slicerImages[i].draw(x, y, slicerRotation[i]);
+        }
+
+        for (int i = 0; i < towerImages.length; i++) {
+            towerImages[i].draw(towerX[i], towerY[i], towerRotation[i]);
+        }
+
+        for (int i = 0; i < projectileImages.length; i++) {
+            projectileImages[i].draw(projectileX[i], projectileY[i]);
+        }
+
+        // A scheduled hit is drawn on a straight line from where it was fired to its target, unless the target is gone
+        Map<Long, Integer> index = impactImages.length == 0 ? null : getSlicerIndex();
+        for (int i = 0; i < impactImages.length; i++) {
+            Integer target = index.get(impactTargets[i]);
+            if (target != null) {
+                double progress = Math.min(1, (double) (impactTick - impactFiredTicks[i] + 1)
+                        / (impactDueTicks[i] - impactFiredTicks[i] + 1));
+                impactImages[i].draw(impactOriginX[i] + (slicerX[target] - impactOriginX[i]) * progress,
+                        impactOriginY[i] + (slicerY[target] - impactOriginY[i]) * progress);
+            }
+        }
+
+        for (int i = 0; i < explosiveX.length; i++) {
+            Explosive.getImage().draw(explosiveX[i], explosiveY[i]);
+        }
+    }
+
+    /**
+     * Checks if any tower's image covers a point, e.g. to stop towers being placed on top of each other.
+     * @param point point to check.
+     * @return true if a tower covers the point, false otherwise.
+     */
+    public boolean intersectsTower(Point point) {
+        for (int i = 0; i < towerImages.length; i++) {
+            if (towerImages[i].getBoundingBoxAt(new Point(towerX[i], towerY[i])).intersects(point)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private Map<Long, Integer> getSlicerIndex() {
+        if (slicerIndex == null) {
+            slicerIndex = new HashMap<>(slicerSerials.length * 2);
+            for (int i = 0; i < slicerSerials.length; i++) {
+                slicerIndex.put(slicerSerials[i], i);
+            }
+        }
+        return slicerIndex;
+    }
+
+    public long getPublishedNanos() {
+        return publishedNanos;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    public int getGold() {
+        return gold;
+    }
+
+    public int getHealth() {
+        return health;
+    }
+
+    public int getCurrentWave() {
+        return currentWave;
+    }
+
+    public int getTimeScale() {
+        return timeScale;
+    }
+
+    public boolean isWaveInProgress() {
+        return waveInProgress;
+    }
+
+    public boolean isAllWavesComplete() {
+        return allWavesComplete;
+    }
+
+    public boolean isPlayerDead() {
+        return playerDead;
+    }
+}
@@ -0,0 +1,72 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Replays an input log recorded by {@link ShadowDefend} without a window, as fast as possible.
+ * The game is re-simulated from the recorded seed and commands, and the rolling state checksum is compared against
+ * every checkpoint in the log. A mismatch means the simulation no longer behaves the same as when it was recorded.
+ * <p>
+ * Usage: {@code java ReplayRunner <input log>}. Exits with status 1 if the replay diverges.
+ */
+public class ReplayRunner {
+
+    /**
+     * Runs a replay from the command line.
+     * @param args file path of the input log.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: ReplayRunner <input log>");
+            System.exit(2);
+        }
+        InputLog log = new InputLog(args[0]);
+        long startTime = System.nanoTime();
+        int divergedFrame = replay(log);
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        System.out.printf("Replayed %d frames in %.3fs (%.0f frames/s)%n", log.getFinalFrame(), seconds, log.getFinalFrame() / seconds);
+        if (divergedFrame >= 0) {
+            System.out.println("FAILED: state checksum diverged by frame " + divergedFrame);
+            System.exit(1);
+        }
+        System.out.println(log.isComplete() ? "OK: final checksum matches" : "OK: checkpoints match (log was cut short)");
+    }
+
+    /**
+     * Re-simulates a recorded game headless.
+     * @param log input log to replay.
+     * @return the first checkpoint frame where the checksum differs, or -1 if every checkpoint matches.
+     * @throws IOException if the log's starting snapshot could not be read.
+     */
+    public static int replay(InputLog log) throws IOException {
+        Simulation simulation;
+        if (log.getStartSnapshot() != null) {
+            simulation = GameSnapshot.read(log.getStartSnapshot(), true);
+        } else {
+            simulation = new Simulation(log.getSeed(), log.getLevels(), true);
+        }
+        Map<Integer, Long> checkpoints = log.getCheckpoints();
+        List<Command> commands = log.getCommands();
+        List<Command> frameCommands = new ArrayList<>();
+        int next = 0;
+
+        while (simulation.getFrame() < log.getFinalFrame()) {
+            frameCommands.clear();
+            while (next < commands.size() && commands.get(next).getFrame() == simulation.getFrame()) {
+                frameCommands.add(commands.get(next++));
+            }
+            simulation.update(frameCommands);
+
+            Long expected = checkpoints.get(simulation.getFrame());
+            if (expected != null && expected != simulation.getRollingChecksum()) {
+                return simulation.getFrame();
+            }
+        }
+        if (log.isComplete() && log.getFinalChecksum() != simulation.getChecksum()) {
+            return simulation.getFrame();
+        }
+        return -1;
+    }
+}
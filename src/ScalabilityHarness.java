@@ -0,0 +1,231 @@
+import bagel.util.Point;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Headless scalability sweep. For each slicer count, a single-wave script is generated with
+ * {@link WaveScriptGenerator} so that every slicer spawns within about one second, towers are placed at random, and the
+ * game is run for a fixed number of frames. Ticks per second, peak heap and GC time are reported for each point, as a
+ * table, an ASCII plot and optionally a CSV file, along with the first count that can no longer run in real time.
+ * <p>
+ * Usage: {@code java ScalabilityHarness [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code map}: tmx map to play on (default res/levels/1.tmx)</li>
+ *     <li>{@code from}, {@code to}, {@code factor}: slicer counts to sweep (default 1000 to 1000000, x2)</li>
+ *     <li>{@code mix}: slicer type weights, as for {@link WaveScriptGenerator} (default all slicers)</li>
+ *     <li>{@code lane}: lane to spawn on, as for {@link WaveScriptGenerator} (default the first lane)</li>
+ *     <li>{@code towers}: number of tanks and super tanks placed (default 100)</li>
+ *     <li>{@code frames}: frames to run for each point (default 600)</li>
+ *     <li>{@code projectiles}: {@code homing} or {@code scheduled} (see {@link ImpactScheduler}) (default homing)</li>
+ *     <li>{@code math}: {@code double} or {@code fixed} (see {@link FixedPoint}) (default double)</li>
+ *     <li>{@code csv}: file to write results to (default none)</li>
+ * </ul>
+ */
+public class ScalabilityHarness {
+    private static final int REAL_TIME_TICKS_PER_SECOND = 60;
+    private static final int SPAWN_FRAMES = 60;
+    private static final int PLOT_WIDTH = 50;
+    private static final long SEED = 1;
+
+    private String map = "res/levels/1.tmx";
+    private long from = 1000;
+    private long to = 1000000;
+    private double factor = 2;
+    private String mix = "slicer:1";
+    private String lane = null;
+    private int towers = 100;
+    private int frames = 600;
+    private boolean scheduledImpacts = false;
+    private boolean fixedPoint = false;
+    private String csv = null;
+
+    /**
+     * Runs the sweep from the command line.
+     * @param args settings as key=value pairs.
+     */
+    public static void main(String[] args) throws IOException {
+        ScalabilityHarness harness = new ScalabilityHarness();
+        Settings.apply(args, 0, harness::set);
+        harness.run();
+    }
+
+    /**
+     * Changes one setting, using the same keys as the command line.
+     * @param key setting name.
+     * @param value setting value.
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "map":
+                map = value;
+                break;
+            case "from":
+                from = Long.parseLong(value);
+                break;
+            case "to":
+                to = Long.parseLong(value);
+                break;
+            case "factor":
+                factor = Double.parseDouble(value);
+                break;
+            case "mix":
+                mix = value;
+                break;
+            case "lane":
+                lane = value;
+                break;
+            case "towers":
+                towers = Integer.parseInt(value);
+                break;
+            case "frames":
+                frames = Integer.parseInt(value);
+                break;
+            case "projectiles":
+                scheduledImpacts = value.equals("scheduled");
+                break;
+            case "math":
+                fixedPoint = value.equals("fixed");
+                break;
+            case "csv":
+                csv = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Runs every point of the sweep and prints the results.
+     * @throws IOException if a temporary wave script or the CSV file could not be written.
+     */
+    public void run() throws IOException {
+        // Warm up the JIT so the first point isn't measured interpreted
+        measure(from, frames / 2);
+
+        List<long[]> results = new ArrayList<>();
+        System.out.println("slicers      alive   ticks/s  peak heap MB  GC ms");
+        for (long count = from; count <= to; count = (long) Math.ceil(count * factor)) {
+            long[] result = measure(count, frames);
+            results.add(result);
+            System.out.printf("%9d %9d %9d %13d %6d%n", result[0], result[1], result[2], result[3], result[4]);
+            if (result[2] < 1) {
+                break; // Too slow to continue
+            }
+        }
+
+        printPlot(results);
+        if (csv != null) {
+            try (PrintWriter writer = new PrintWriter(new FileWriter(csv))) {
+                writer.println("slicers,alive,ticks_per_second,peak_heap_mb,gc_ms");
+                for (long[] result : results) {
+                    writer.printf("%d,%d,%d,%d,%d%n", result[0], result[1], result[2], result[3], result[4]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Runs one point of the sweep.
+     * @param count number of slicers to spawn.
+     * @param frames number of frames to run.
+     * @return slicer count, slicers alive at the end, ticks per second, peak heap in MB, and GC time in ms.
+     * @throws IOException if the temporary wave script could not be written.
+     */
+    private long[] measure(long count, int frames) throws IOException {
+        File waveFile = File.createTempFile("stress", ".txt");
+        waveFile.deleteOnExit();
+        WaveScriptGenerator generator = new WaveScriptGenerator();
+        generator.set("waves", "1");
+        generator.set("slicers", Long.toString(count));
+        generator.set("mix", mix);
+        generator.set("spawnDelay", Double.toString(SPAWN_FRAMES * 1000.0 / 60 / count));
+        generator.set("eventDelay", "0");
+        if (lane != null) {
+            generator.set("lane", lane);
+        }
+        generator.write(waveFile.getPath());
+
+        System.gc();
+        Simulation simulation = new Simulation(SEED, Collections.singletonList(new LevelDefinition(map, waveFile.getPath())), true);
+        simulation.getCurrentPlayer().setGold(Integer.MAX_VALUE);
+        simulation.setScheduledImpacts(scheduledImpacts);
+        simulation.setFixedPoint(fixedPoint);
+        GameRandom random = new GameRandom(SEED);
+        List<Command> commands = new ArrayList<>();
+        for (int i = 0; i < towers; i++) {
+            Point position = new Point(random.nextDouble() * simulation.getCurrentLevel().getWidth(),
+                    random.nextDouble() * simulation.getCurrentLevel().getHeight());
+            commands.add(new Command(0, i % 2 == 0 ? Command.Type.PLACE_TANK : Command.Type.PLACE_SUPER_TANK, position));
+        }
+        commands.add(new Command(0, Command.Type.START_WAVE));
+
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            pool.resetPeakUsage();
+        }
+        long gcStart = totalGcMillis();
+        long startTime = System.nanoTime();
+        simulation.update(commands);
+        commands.clear();
+        for (int frame = 1; frame < frames; frame++) {
+            simulation.update(commands);
+        }
+        double seconds = (System.nanoTime() - startTime) / 1e9;
+
+        long peakHeap = 0;
+        for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+            if (pool.getType() == MemoryType.HEAP) {
+                peakHeap += pool.getPeakUsage().getUsed();
+            }
+        }
+        long alive = simulation.getCurrentLevel().getAllSlicers().size();
+        return new long[]{count, alive, Math.round(frames / seconds), peakHeap >> 20, totalGcMillis() - gcStart};
+    }
+
+    private static long totalGcMillis() {
+        long total = 0;
+        for (GarbageCollectorMXBean gc : ManagementFactory.getGarbageCollectorMXBeans()) {
+            total += Math.max(0, gc.getCollectionTime());
+        }
+        return total;
+    }
+
+    /**
+     * Prints ticks per second against slicer count as a log-scaled bar chart, marking real-time speed.
+     * @param results sweep results.
+     */
+    private static void printPlot(List<long[]> results) {
+        long maxTicks = REAL_TIME_TICKS_PER_SECOND;
+        for (long[] result : results) {
+            maxTicks = Math.max(maxTicks, result[2]);
+        }
+        double scale = PLOT_WIDTH / Math.log10(maxTicks + 1);
+        int realTimeColumn = (int) Math.round(Math.log10(REAL_TIME_TICKS_PER_SECOND + 1) * scale);
+
+        System.out.println();
+        System.out.println("Ticks per second (log scale, | = real time at " + REAL_TIME_TICKS_PER_SECOND + ")");
+        long breakPoint = -1;
+        for (long[] result : results) {
+            int length = (int) Math.round(Math.log10(result[2] + 1) * scale);
+            StringBuilder bar = new StringBuilder();
+            for (int i = 0; i <= Math.max(length, realTimeColumn); i++) {
+                bar.append(i == realTimeColumn ? '|' : i < length ? '#' : ' ');
+            }
+            System.out.printf("%9d %s %d%n", result[0], bar, result[2]);
+            if (breakPoint < 0 && result[2] < REAL_TIME_TICKS_PER_SECOND) {
+                breakPoint = result[0];
+            }
+        }
+        System.out.println(breakPoint < 0 ? "Real time held for every point"
+                : "Real time first lost at " + breakPoint + " slicers");
+    }
+}
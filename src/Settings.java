@@ -0,0 +1,39 @@
+import java.util.function.BiConsumer;
+
+/**
+ * Reads the key=value settings that the command line tools, job files and scenario files take.
+ */
+public final class Settings {
+    private Settings() {
+    }
+
+    /**
+     * Splits one setting into its key and value, both trimmed.
+     * @param setting setting as key=value.
+     * @return the key, then the value.
+     * @throws IllegalArgumentException if the setting has no '='.
+     */
+    public static String[] split(String setting) {
+        String[] keyValue = setting.split("=", 2);
+        if (keyValue.length != 2) {
+            throw new IllegalArgumentException("Expected key=value but got \"" + setting + "\"");
+        }
+        keyValue[0] = keyValue[0].trim();
+        keyValue[1] = keyValue[1].trim();
+        return keyValue;
+    }
+
+    /**
+     * Applies command line settings in order.
+     * @param args command line arguments.
+     * @param from index of the first setting in {@code args}.
+     * @param target takes each key and value, e.g. a tool's {@code set} method.
+     * @throws IllegalArgumentException if a setting has no '=', or the target refuses it.
+     */
+    public static void apply(String[] args, int from, BiConsumer<String, String> target) {
+        for (int i = from; i < args.length; i++) {
+            String[] setting = split(args[i]);
+            target.accept(setting[0], setting[1]);
+        }
+    }
+}
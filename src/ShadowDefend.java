@@ -1,97 +1,166 @@
 import bagel.*;
-import bagel.map.TiledMap;
 
+import bagel.map.TiledMap;
 import bagel.util.Point;
 import bagel.util.Rectangle;
 
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 
 public class ShadowDefend extends AbstractGame {
-    private static final int GOLD_REWARD_FLAT = 100;
-    private static final int GOLD_REWARD_PER_LEVEL = 150;
+    private static final String DEFAULT_INPUT_LOG = "replays/latest.sdlog";
+    private static final String AUTOSAVE = "saves/autosave.sdsave";
 
-    private final List<Level> levelList = new ArrayList<>();
+    private final List<LevelDefinition> levelDefinitions = new ArrayList<>();
+    // Shared by the simulation and render threads, so each level's bundle is only loaded once
+    private final LevelCache levelCache = new LevelCache();
+    private Simulation simulation;
+    private SimulationLoop simulationLoop;
 
     private StatusPanel statusPanel;
     private BuyPanel buyPanel;
-    private Level currentLevel = null;
-    private Player currentPlayer = null;
-    private List<Tower> towerList = new ArrayList<>();
-    private List<Projectile> projectileList = new ArrayList<>();
-    private List<Explosive> explosiveList = new ArrayList<>();
-    private int timeScale = 1;
-    private Class<?> currentlyBuying = null;
-    private boolean goldAwarded = true;
+    private TiledMap currentMap = null;
+    private TiledMap nextMap = null;
+    private LevelBundle currentBundle = null;
+    private int currentLevelNumber = 0;
+    private TowerType currentlyBuying = null;
+    private RenderSnapshot previousSnapshot = null;
+    private RenderSnapshot currentSnapshot = null;
 
     /**
      * Entry point for Bagel game
      *
      * Explore the capabilities of Bagel: https://people.eng.unimelb.edu.au/mcmurtrye/bagel-doc/
+     * @param args optional file path to record the input log to, defaults to {@code DEFAULT_INPUT_LOG}.
      */
     public static void main(String[] args) {
+        // Read images and fonts from disk while the window opens
+        AssetCache.getDefault().prefetch(getStartupAssets());
+
         // Create new instance of game and run it
-        new ShadowDefend().run();
+        ShadowDefend game = new ShadowDefend(args.length > 0 ? args[0] : DEFAULT_INPUT_LOG);
+        game.simulationLoop.start();
+        game.run();
+        game.simulationLoop.stop();
+        game.autosave();
     }
 
     /**
      * Setup the game
+     * @param inputLogDir file path to record player input to, for replaying with {@link ReplayRunner}.
      */
-    public ShadowDefend(){
+    public ShadowDefend(String inputLogDir){
         // Constructor
-        levelList.add(new Level(new TiledMap("res/levels/1.tmx"), new Player(), "res/levels/waves.txt"));
-        levelList.add(new Level(new TiledMap("res/levels/2.tmx"), new Player(), "res/levels/waves.txt"));
+        for (String map : LevelDefinition.LEVEL_MAPS) {
+            levelDefinitions.add(new LevelDefinition(map, LevelDefinition.WAVE_FILE, levelCache));
+        }
+        long seed = System.nanoTime();
+        ByteBuffer startSnapshot = null;
+        // The simulation runs on its own thread, so it never loads anything that needs the window
+        if (new File(AUTOSAVE).exists()) {
+            try {
+                simulation = GameSnapshot.load(AUTOSAVE, true);
+                startSnapshot = GameSnapshot.write(simulation);
+            } catch (IOException e) {
+                System.out.println("Autosave could not be loaded, starting a new game");
+                e.printStackTrace();
+            }
+        }
+        if (simulation == null) {
+            simulation = new Simulation(seed, levelDefinitions, true);
+        }
+
+        InputLogWriter inputLog = null;
+        try {
+            inputLog = new InputLogWriter(inputLogDir, seed, simulation.getLevelDefinitions(), startSnapshot);
+        } catch (IOException e) {
+            System.out.println("Input log could not be created, game will not be recorded");
+            e.printStackTrace();
+        }
+        simulationLoop = new SimulationLoop(simulation, inputLog);
+
+        // Load every image and the first level's map now, so nothing stalls mid-game to load
+        AssetCache.getDefault().preload();
+        nextMap = new TiledMap(simulation.getLevelDefinitions().get(simulation.getLevelNumber() - 1).getMapFile());
+    }
 
-        // Bagel render bug - quick fix as per Piazza pinned discussion
-        new Image("res/images/slicer.png").draw(0, 0);
+    /**
+     * Lists the files needed before the first frame can be drawn: every slicer, tower, projectile and explosive image,
+     * the panels and their font, and the first level's map.
+     * @return file paths to prefetch.
+     */
+    private static List<String> getStartupAssets() {
+        List<String> assets = new ArrayList<>();
+        for (SlicerType type : SlicerCatalog.getDefault().getTypes()) {
+            assets.add(type.getImage().getFileDir());
+        }
+        for (TowerType type : TowerCatalog.getDefault().getTypes()) {
+            assets.add(type.getImage().getFileDir());
+            if (type.getProjectileImage() != null) {
+                assets.add(type.getProjectileImage().getFileDir());
+            }
+        }
+        assets.add(Explosive.getImage().getFileDir());
+        assets.add(BuyPanel.BUY_PANEL_IMAGE);
+        assets.add(StatusPanel.STATUS_PANEL_IMAGE);
+        assets.add(BuyPanel.FONT);
+        assets.add(LevelDefinition.LEVEL_MAPS[0]);
+        return assets;
     }
 
     /**
-     * Updates the game state approximately 60 times a second, potentially reading from input.
+     * Reads input and renders the latest frame published by the simulation thread. Called once per window refresh,
+     * which need not match the simulation's 60 frames a second.
      * @param input The input instance which provides access to keyboard/mouse state information.
      */
     @Override
     protected void update(Input input) {
-
-        // Level progression
-        if (currentLevel == null || currentLevel.isAllWavesComplete()) {
-            if (levelList.size() > 0) {
-                currentLevel = levelList.remove(0);
-                currentPlayer = currentLevel.getPlayer();
-                statusPanel = new StatusPanel(currentPlayer, currentLevel);
-                buyPanel = new BuyPanel(currentPlayer);
-                towerList = new ArrayList<>();
-                projectileList = new ArrayList<>();
-                explosiveList = new ArrayList<>();
-                timeScale = 1;
-                goldAwarded = true;
-            }
+        RenderSnapshot latest = simulationLoop.getLatestSnapshot();
+        if (latest != currentSnapshot) {
+            previousSnapshot = currentSnapshot;
+            currentSnapshot = latest;
         }
 
-        // Wave progression
-        if (!currentLevel.waveInProgress() && !goldAwarded) {
-            currentPlayer.gainGold(GOLD_REWARD_FLAT + GOLD_REWARD_PER_LEVEL * currentLevel.getCurrentWave());
-            goldAwarded = true;
+        // Level progression, to the map loaded while the last level was played
+        if (currentLevelNumber != currentSnapshot.getLevelNumber()) {
+            currentLevelNumber = currentSnapshot.getLevelNumber();
+            LevelDefinition level = simulation.getLevelDefinitions().get(currentLevelNumber - 1);
+            currentMap = nextMap != null ? nextMap : new TiledMap(level.getMapFile());
+            nextMap = null;
+            // Already loaded by the simulation thread, through the same cache
+            currentBundle = levelCache.getBundle(level);
+            statusPanel = new StatusPanel();
+            buyPanel = new BuyPanel();
+            previousSnapshot = null;
+            if (currentLevelNumber < simulation.getLevelDefinitions().size()) {
+                AssetCache.getDefault().prefetch(Collections.singletonList(
+                        simulation.getLevelDefinitions().get(currentLevelNumber).getMapFile()));
+            }
+        } else if (nextMap == null && !currentSnapshot.isWaveInProgress()
+                && currentSnapshot.getCurrentWave() >= currentBundle.getNumberOfWaves()
+                && currentLevelNumber < simulation.getLevelDefinitions().size()) {
+            // The map needs the render thread, so load it from the file prefetched when the level started, once the
+            // level's last wave has been started and nothing on screen is moving
+            nextMap = new TiledMap(simulation.getLevelDefinitions().get(currentLevelNumber).getMapFile());
         }
 
         // Wave spawning hotkey
-        if (input.wasReleased(Keys.S) && !currentLevel.waveInProgress() && !currentLevel.isAllWavesStarted()) {
-            currentLevel.startNextWave();
-            goldAwarded = false;
+        if (input.wasReleased(Keys.S)) {
+            simulationLoop.submit(new Command(currentSnapshot.getFrame(), Command.Type.START_WAVE));
         }
 
         // Increase timescale
         if (input.wasReleased(Keys.L)) {
-            if (timeScale < 5) {
-                timeScale++;
-            }
+            simulationLoop.submit(new Command(currentSnapshot.getFrame(), Command.Type.INCREASE_TIMESCALE));
         }
 
         // Decrease timescale
         if (input.wasReleased(Keys.K)) {
-            if (timeScale > 1) {
-                timeScale--;
-            }
+            simulationLoop.submit(new Command(currentSnapshot.getFrame(), Command.Type.DECREASE_TIMESCALE));
         }
 
         // Stop buying tower
@@ -107,120 +176,32 @@ public class ShadowDefend extends AbstractGame {
             } else {
                 // Check valid tower placement
                 // Blocked tile
-                boolean tileBool = currentLevel.getMap().getPropertyBoolean((int)currentMousePos.x, (int)currentMousePos.y, "blocked", false);
+                boolean tileBool = currentBundle.isBlocked(currentMousePos.x, currentMousePos.y);
                 // Existing tower
-                boolean towerBool = false;
-                for (Tower tower : towerList) {
-                    if (tower.getImage().getBoundingBoxAt(tower.getPosition()).intersects(currentMousePos)) {
-                        towerBool = true;
-                    }
-                }
+                boolean towerBool = currentSnapshot.intersectsTower(currentMousePos);
                 // Status and buy panels
                 boolean statusBool = BuyPanel.getBuyPanel().getBoundingBox().intersects(currentMousePos) ;
                 boolean buyBool = new Rectangle(statusPanel.getStatusPanelPosition(), statusPanel.getStatusPanel().getWidth(), statusPanel.getStatusPanel().getHeight()) .intersects(currentMousePos);
-                if (!statusBool && !buyBool && (currentlyBuying == AirSupport.class || (!tileBool && !towerBool))) {
-                    if (currentlyBuying == Tank.class) {
-                        if (currentPlayer.spendGold(Tank.getCost())) {
-                            towerList.add(new Tank(currentMousePos));
-                        }
-                    } else if (currentlyBuying == SuperTank.class) {
-                        if (currentPlayer.spendGold(SuperTank.getCost())) {
-                            towerList.add(new SuperTank(currentMousePos));
-                        }
-                    } else if (currentlyBuying == AirSupport.class) {
-                        if (currentPlayer.spendGold(AirSupport.getCost())) {
-                            towerList.add(new AirSupport(currentMousePos));
-                        }
-                    }
+                if (!statusBool && !buyBool && (currentlyBuying.getBehaviour() == TowerType.Behaviour.AIR_SUPPORT || (!tileBool && !towerBool))) {
+                    simulationLoop.submit(new Command(currentSnapshot.getFrame(), Command.placementFor(currentlyBuying), currentMousePos));
                     currentlyBuying = null;
                 }
             }
         }
 
-        // Fast-forward to simulate timescale
-        // Draw only once per frame
-        for (int j = 0; j < timeScale; j++) {
-
-            // Move slicers
-            currentLevel.moveAllWaveEvents();
-
-            // Shoot at slicers
-            for (int t = 0; t < towerList.size(); t++) {
-                if (towerList.get(t) instanceof AirSupport) {
-                    Explosive explosive = ((AirSupport) towerList.get(t)).attack();
-                    if (!((AirSupport) towerList.get(t)).inWindow()) {
-                        towerList.remove(t--);
-                    }
-                    if (explosive != null) {
-                        explosiveList.add(explosive);
-                    }
-                } else {
-                    Projectile projectile = ((StationaryTower) towerList.get(t)).attack(currentLevel);
-                    if (projectile != null) {
-                        projectileList.add(projectile);
-                    }
-                }
-            }
-
-            // Move projectiles
-            for (int i = 0; i < projectileList.size(); i++) {
-                Projectile projectile = projectileList.get(i);
-                if (projectile.checkTargetIsAlive()) {
-                    projectile.move();
-                    if (projectile.checkIntersectionWithTarget()) {
-                        // Projectile hits target
-                        if (projectile.getTarget().takeDamage(projectile.getDamage())) {
-                            // Target is dead
-                            currentLevel.killSlicer(projectile.getTarget());
-                        }
-                        projectileList.remove(i--);
-                    }
-                } else {
-                    // Target is already dead (from other projectiles' damage)
-                    projectileList.remove(i--);
-                }
-            }
-
-            // Explode explosives
-            for (int i = 0; i < explosiveList.size(); i++) {
-                if (explosiveList.get(i).tick()) {
-                    List<Slicer> nearbySlicers = currentLevel.getAllSlicersInRange(explosiveList.get(i).getPosition(), Explosive.getRange());
-                    for (Slicer nearbySlicer : nearbySlicers) {
-                        if (nearbySlicer.takeDamage(explosiveList.get(i).getDamage())) {
-                            // Target is dead
-                            currentLevel.killSlicer(nearbySlicer);
-                        }
-                    }
-                    explosiveList.remove(i--);
-                }
-            }
-
-            // Check for player death
-            if (currentPlayer.getHealth() <= 0) {
-                Window.close();
-            }
-        }
-
-        // Draw map and slicers
-        currentLevel.drawMap();
-        currentLevel.drawAllWaveEvents();
-
-        // Draw towers, projectiles, explosives
-        for (Tower tower : towerList) {
-            tower.draw();
-        }
-
-        for (Projectile projectile : projectileList) {
-            projectile.draw();
+        // Check for player death
+        if (currentSnapshot.isPlayerDead()) {
+            Window.close();
         }
 
-        for (Explosive explosive : explosiveList) {
-            explosive.draw();
-        }
+        // Draw map, then slicers part way between the last two frames, then towers, projectiles and explosives
+        currentMap.draw(0, 0, 0, 0, Window.getWidth(), Window.getHeight());
+        double alpha = (double) (System.nanoTime() - currentSnapshot.getPublishedNanos()) / SimulationLoop.FRAME_NANOS;
+        currentSnapshot.draw(previousSnapshot, Math.max(0, Math.min(1, alpha)));
 
         // Draw panels
-        statusPanel.render(currentlyBuying != null, timeScale);
-        buyPanel.render();
+        statusPanel.render(currentlyBuying != null, currentSnapshot);
+        buyPanel.render(currentSnapshot.getGold());
 
         // Render buy preview
         if (currentlyBuying != null) {
@@ -229,4 +210,23 @@ public class ShadowDefend extends AbstractGame {
 
     }
 
+    /**
+     * Saves the game so it can be resumed next time, if it was closed mid-game. The autosave is deleted once the game
+     * is won or lost. Call this once the window has closed and the simulation thread has stopped.
+     */
+    private void autosave() {
+        File autosave = new File(AUTOSAVE);
+        if (simulation.isPlayerDead() || simulation.isGameComplete()) {
+            autosave.delete();
+            return;
+        }
+        try {
+            autosave.getParentFile().mkdirs();
+            GameSnapshot.save(simulation, AUTOSAVE);
+        } catch (IOException e) {
+            System.out.println("Game could not be saved");
+            e.printStackTrace();
+        }
+    }
+
 }
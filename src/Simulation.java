@@ -0,0 +1,603 @@
+import bagel.util.Point;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.stream.IntStream;
+
+/**
+ * Holds and advances the whole game state: levels, player, towers, projectiles and explosives.
+ * The simulation never reads input or draws anything, so it can run headless at full speed (see {@link ReplayRunner}).
+ * Player actions are applied through {@link Command}s, and all randomness comes from one seeded {@link GameRandom},
+ * so the same seed and commands always produce the same game. A rolling checksum of the state is kept to verify this:
+ * hashing the whole state walks every slicer, tower and projectile, so it is only folded in every
+ * {@value #CHECKSUM_INTERVAL} frames, at the frames input logs check, and once more when the checksum is read.
+ * <p>
+ * Towers are kept by behaviour in {@link StationaryTowers} and {@link AirSupports}, each updated by its own loop.
+ * Each tick, tower targeting runs in two phases. First, every stationary tower picks its target and decides whether
+ * to fire, in parallel when there are enough towers; this phase only reads slicers, so towers cannot affect each other.
+ * Then the results are committed serially in tower order, so the outcome is identical to running single-threaded.
+ * <p>
+ * Projectiles either home in on their target tick by tick (the default), or, with scheduled impacts turned on, have
+ * their hit solved and queued when fired (see {@link ImpactScheduler}). The two modes can give slightly different
+ * games, so a game should stay in one mode. A homing projectile whose target dies or reaches the end is sent after the
+ * nearest slicer within the retarget radius, or discarded if there is none.
+ * <p>
+ * With fixed point mode turned on, slicers and homing projectiles move, and slicers are range checked, in integer
+ * arithmetic (see {@link FixedPoint}), so those results never depend on floating point rounding. Like scheduled
+ * impacts, this gives a slightly different game, so a game should stay in one mode.
+ * <p>
+ * Only the first level is loaded when the game is created. Headless, each following level is loaded on a background
+ * thread while the one before it is played, and handed over when the level changes. It is loaded without the game's
+ * random number generator and slicer pool, which are only given to it once it is handed over, so the loader never
+ * shares them with the game thread, and when a level is loaded never changes the game.
+ */
+public class Simulation {
+    private static final int GOLD_REWARD_FLAT = 100;
+    private static final int GOLD_REWARD_PER_LEVEL = 150;
+    private static final int MAX_TIMESCALE = 5;
+    private static final long CHECKSUM_PRIME = 0x100000001B3L;
+    // Frames between full state hashes folded into the rolling checksum, and between input log checkpoints
+    public static final int CHECKSUM_INTERVAL = 600;
+    private static final int PARALLEL_TARGETING_THRESHOLD = 64; // Fewer towers aren't worth splitting across threads
+    // Furthest a projectile looks for a new target when its target leaves play
+    public static final int DEFAULT_RETARGET_RADIUS = 100;
+
+    // Shared by every game, as only one level is loaded ahead at a time
+    private static final ExecutorService LEVEL_LOADER = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "level-loader");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final List<LevelDefinition> levelDefinitions;
+    private final boolean headless;
+    private Future<Level> nextLevel = null;
+    private final GameRandom random;
+    private final SlicerPool slicerPool = new SlicerPool();
+
+    private Level currentLevel = null;
+    private Player currentPlayer = null;
+    private int levelNumber = 0;
+    private StationaryTowers stationaryTowers = new StationaryTowers();
+    private AirSupports airSupports = new AirSupports();
+    private List<Projectile> projectileList = new ArrayList<>();
+    private ImpactScheduler impactScheduler = new ImpactScheduler();
+    private List<Explosive> explosiveList = new ArrayList<>();
+    private int timeScale = 1;
+    private boolean goldAwarded = true;
+    private boolean lastAirSupportVertical = true;
+    private int frame = 0;
+    private long rollingChecksum = 0;
+    private boolean parallelTargeting = true;
+    private boolean scheduledImpacts = false;
+    private boolean fixedPoint = false;
+    private int retargetRadius = DEFAULT_RETARGET_RADIUS;
+    private int scanInterval = StationaryTowers.DEFAULT_SCAN_INTERVAL;
+    private Slicer[] firedTargets = new Slicer[0];
+
+    /**
+     * Creates a new game, loading and starting the first level.
+     * @param seed seed for all gameplay randomness.
+     * @param levels levels to play, in order.
+     * @param headless true to run without a window (no maps or images are loaded), false otherwise.
+     */
+    public Simulation(long seed, List<LevelDefinition> levels, boolean headless) {
+        this.random = new GameRandom(seed);
+        this.levelDefinitions = levels;
+        this.headless = headless;
+        advanceProgress();
+    }
+
+    /**
+     * Advances the game by one frame: applies the player's commands, then ticks the game {@code timeScale} times.
+     * @param commands commands applied this frame, in order.
+     */
+    public void update(List<Command> commands) {
+        for (Command command : commands) {
+            apply(command);
+        }
+
+        // Fast-forward to simulate timescale
+        for (int j = 0; j < timeScale; j++) {
+            tick();
+        }
+
+        frame++;
+        advanceProgress();
+        if (frame % CHECKSUM_INTERVAL == 0) {
+            rollingChecksum = rollingChecksum * CHECKSUM_PRIME + stateChecksum();
+        }
+    }
+
+    /**
+     * Applies one player command. Tower placements must already be checked as valid by the caller, but gold is
+     * only spent (and the tower placed) here.
+     * @param command command to apply.
+     */
+    private void apply(Command command) {
+        Point position = command.getPosition();
+        switch (command.getType()) {
+            case START_WAVE:
+                if (!currentLevel.waveInProgress() && !currentLevel.isAllWavesStarted()) {
+                    currentLevel.startNextWave();
+                    goldAwarded = false;
+                }
+                break;
+            case INCREASE_TIMESCALE:
+                if (timeScale < MAX_TIMESCALE) {
+                    timeScale++;
+                }
+                break;
+            case DECREASE_TIMESCALE:
+                if (timeScale > 1) {
+                    timeScale--;
+                }
+                break;
+            case PLACE_TANK:
+            case PLACE_SUPER_TANK:
+            case PLACE_AIR_SUPPORT:
+                TowerType towerType = TowerCatalog.getDefault().get(command.getType().getTowerName());
+                if (currentPlayer.spendGold(towerType.getCost())) {
+                    placeTower(towerType, position);
+                }
+                break;
+        }
+    }
+
+    /**
+     * Places an already paid for tower.
+     * @param towerType type of tower.
+     * @param position position of the tower, or the cursor position for air support.
+     */
+    private void placeTower(TowerType towerType, Point position) {
+        if (towerType.getBehaviour() == TowerType.Behaviour.AIR_SUPPORT) {
+            // Flip flight line
+            lastAirSupportVertical = !lastAirSupportVertical;
+            airSupports.add(towerType, position, lastAirSupportVertical, random);
+        } else {
+            stationaryTowers.add(towerType, position);
+        }
+    }
+
+    /**
+     * Ticks time forward once: moves slicers, fires towers, moves projectiles and explodes explosives, then removes
+     * the slicers killed.
+     */
+    private void tick() {
+        // Move slicers, then retarget projectiles chasing slicers that reached the end
+        currentLevel.moveAllWaveEvents();
+        retargetOrphanedProjectiles();
+
+        // Aim stationary towers, only reading slicers
+        int numberOfTowers = stationaryTowers.size();
+        if (firedTargets.length < numberOfTowers) {
+            firedTargets = new Slicer[numberOfTowers * 2];
+        }
+        if (parallelTargeting && numberOfTowers >= PARALLEL_TARGETING_THRESHOLD) {
+            IntStream.range(0, numberOfTowers).parallel().forEach(this::aimTower);
+        } else {
+            for (int t = 0; t < numberOfTowers; t++) {
+                aimTower(t);
+            }
+        }
+
+        // Shoot at slicers, in tower order
+        for (int t = 0; t < numberOfTowers; t++) {
+            Slicer target = firedTargets[t];
+            if (target != null && target.isDoomed()) {
+                // An earlier tower already fired enough at this slicer this tick
+                target = stationaryTowers.retarget(t, currentLevel);
+            }
+            if (target != null) {
+                Projectile projectile = stationaryTowers.fire(t, target);
+                if (scheduledImpacts) {
+                    impactScheduler.schedule(projectile);
+                } else {
+                    projectile.track();
+                    projectileList.add(projectile);
+                }
+            }
+            firedTargets[t] = null;
+        }
+
+        // Fly air support, dropping explosives
+        airSupports.fly(random, explosiveList, currentLevel.getWidth(), currentLevel.getHeight());
+
+        // Apply scheduled hits
+        if (scheduledImpacts) {
+            impactScheduler.applyDueImpacts(currentLevel);
+        }
+
+        // Move projectiles. Each is retargeted as soon as its target leaves play, so targets never need checking
+        for (int i = 0; i < projectileList.size(); i++) {
+            Projectile projectile = projectileList.get(i);
+            if (projectile.getTarget().getHealth() <= 0) {
+                // Target killed earlier this tick, retargeted once deaths are resolved
+                continue;
+            }
+            if (fixedPoint) {
+                projectile.moveFixed();
+            } else {
+                projectile.move();
+            }
+            if (fixedPoint ? projectile.checkIntersectionWithTargetFixed() : projectile.checkIntersectionWithTarget()) {
+                // Projectile hits target
+                projectile.resolve();
+                if (projectile.getTarget().takeDamage(projectile.getDamage())) {
+                    // Target is dead
+                    currentLevel.addDeath(projectile.getTarget());
+                }
+                projectileList.remove(i--);
+            }
+        }
+
+        // Explode explosives
+        for (int i = 0; i < explosiveList.size(); i++) {
+            if (explosiveList.get(i).tick()) {
+                List<Slicer> nearbySlicers = currentLevel.getAllSlicersInRange(explosiveList.get(i).getPosition(), Explosive.getRange());
+                for (Slicer nearbySlicer : nearbySlicers) {
+                    // Slicers killed earlier this tick are still in their wave event until deaths are resolved
+                    if (nearbySlicer.getHealth() > 0 && nearbySlicer.takeDamage(explosiveList.get(i).getDamage())) {
+                        // Target is dead
+                        currentLevel.addDeath(nearbySlicer);
+                    }
+                }
+                explosiveList.remove(i--);
+            }
+        }
+
+        // Remove everything killed this tick in one pass
+        currentLevel.resolveDeaths();
+        retargetOrphanedProjectiles();
+    }
+
+    /**
+     * Sends each projectile whose target has left play after the nearest slicer within {@code retargetRadius} of it
+     * that isn't already doomed, or discards it if there is none.
+     */
+    private void retargetOrphanedProjectiles() {
+        List<Projectile> orphans = slicerPool.getOrphanedProjectiles();
+        if (orphans.isEmpty()) {
+            return;
+        }
+        boolean discarded = false;
+        for (Projectile projectile : orphans) {
+            Slicer target = retargetRadius > 0
+                    ? currentLevel.getNearestSlicerInRange(projectile.getPosition(), retargetRadius) : null;
+            if (target != null) {
+                projectile.retarget(target);
+            } else {
+                projectile.discard();
+                discarded = true;
+            }
+        }
+        orphans.clear();
+        if (discarded) {
+            projectileList.removeIf(Projectile::isDiscarded);
+        }
+    }
+
+    /**
+     * Lets one stationary tower pick its target and decide whether to fire, storing the target in {@code firedTargets}.
+     * Only changes the tower itself, so towers can be aimed in parallel.
+     * @param t index of the tower.
+     */
+    private void aimTower(int t) {
+        firedTargets[t] = stationaryTowers.aim(t, currentLevel);
+    }
+
+    /**
+     * Moves on to the next level when the current one is complete, and awards gold when a wave finishes.
+     */
+    private void advanceProgress() {
+        // Level progression
+        if (currentLevel == null || currentLevel.isAllWavesComplete()) {
+            if (hasNextLevel()) {
+                startNextLevel();
+            }
+        }
+
+        // Wave progression
+        if (!currentLevel.waveInProgress() && !goldAwarded) {
+            currentPlayer.gainGold(GOLD_REWARD_FLAT + GOLD_REWARD_PER_LEVEL * currentLevel.getCurrentWave());
+            goldAwarded = true;
+        }
+    }
+
+    /**
+     * Starts the next level with no towers, projectiles or explosives, then starts loading the level after it.
+     */
+    private void startNextLevel() {
+        currentLevel = takeNextLevel();
+        currentLevel.setFixedPoint(fixedPoint);
+        currentPlayer = currentLevel.getPlayer();
+        levelNumber++;
+        stationaryTowers = new StationaryTowers();
+        stationaryTowers.setScanInterval(scanInterval);
+        airSupports = new AirSupports();
+        projectileList = new ArrayList<>();
+        impactScheduler = new ImpactScheduler();
+        explosiveList = new ArrayList<>();
+        timeScale = 1;
+        goldAwarded = true;
+        loadNextLevelInBackground();
+    }
+
+    /**
+     * Gets the next level, waiting for it if it is still loading in the background, or else loading it now.
+     * @return the next level, loaded.
+     */
+    private Level takeNextLevel() {
+        Future<Level> loading = nextLevel;
+        nextLevel = null;
+        if (loading != null) {
+            try {
+                Level level = loading.get();
+                level.bind(random, slicerPool);
+                return level;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof RuntimeException) {
+                    throw (RuntimeException) e.getCause();
+                }
+                throw new IllegalStateException("Level " + (levelNumber + 1) + " could not be loaded", e.getCause());
+            }
+        }
+        return levelDefinitions.get(levelNumber).load(random, slicerPool, headless);
+    }
+
+    /**
+     * Starts loading the level after the current one on the level loader thread, if there is one. Only done headless,
+     * as loading a level's {@link bagel.map.TiledMap} needs the render thread.
+     */
+    private void loadNextLevelInBackground() {
+        if (headless && hasNextLevel()) {
+            LevelDefinition definition = levelDefinitions.get(levelNumber);
+            nextLevel = LEVEL_LOADER.submit(() -> definition.load(null, null, true));
+        }
+    }
+
+    /**
+     * @return true if there is a level after the current one, false otherwise.
+     */
+    private boolean hasNextLevel() {
+        return levelNumber < levelDefinitions.size();
+    }
+
+    /**
+     * Restores the game-wide state read from a {@link GameSnapshot}, skipping ahead to the saved level.
+     * The level's waves, the player, and the tower, projectile and explosive lists must be restored separately, and
+     * the random state should be restored last, as creating towers can draw random numbers.
+     * @param levelNumber level being played, starting from 1.
+     * @param frame number of frames completed.
+     * @param rollingChecksum rolling state checksum.
+     * @param timeScale current timescale.
+     * @param goldAwarded true if the last wave's gold has already been awarded.
+     * @param lastAirSupportVertical true if the last air support bought flew from top to bottom.
+     */
+    public void restore(int levelNumber, int frame, long rollingChecksum, int timeScale, boolean goldAwarded, boolean lastAirSupportVertical) {
+        // Levels before the saved one are skipped without being loaded
+        while (this.levelNumber < levelNumber - 1 && hasNextLevel()) {
+            if (nextLevel != null) {
+                nextLevel.cancel(false);
+                nextLevel = null;
+            }
+            this.levelNumber++;
+        }
+        if (this.levelNumber < levelNumber && hasNextLevel()) {
+            startNextLevel();
+        }
+        this.frame = frame;
+        this.rollingChecksum = rollingChecksum;
+        this.timeScale = timeScale;
+        this.goldAwarded = goldAwarded;
+        this.lastAirSupportVertical = lastAirSupportVertical;
+    }
+
+    /**
+     * Calculates a checksum of the current game state. Any difference in gold, health, wave, slicer, tower, projectile
+     * or explosive state will (almost certainly) give a different checksum.
+     * @return checksum of the current state.
+     */
+    public long stateChecksum() {
+        long h = levelNumber;
+        h = h * CHECKSUM_PRIME + currentLevel.getCurrentWave();
+        h = h * CHECKSUM_PRIME + currentPlayer.getGold();
+        h = h * CHECKSUM_PRIME + currentPlayer.getHealth();
+        h = h * CHECKSUM_PRIME + timeScale;
+        for (WaveEvent event : currentLevel.getCurrentWaveEvents()) {
+            if (event.isWaveEventComplete()) {
+                continue;
+            }
+            for (Slicer slicer : event.getSlicerList()) {
+                h = h * CHECKSUM_PRIME + hashPoint(slicer.getPosition());
+                h = h * CHECKSUM_PRIME + slicer.getHealth() * 31L + slicer.getDstNum();
+            }
+        }
+        for (int i = 0; i < stationaryTowers.size(); i++) {
+            h = h * CHECKSUM_PRIME + hashPoint(stationaryTowers.getPosition(i));
+            h = h * CHECKSUM_PRIME + Double.doubleToLongBits(stationaryTowers.getCurrentCooldown(i));
+            // Lock-on decides what a tower fires at next, so a difference shows up before cooldowns differ
+            Slicer target = stationaryTowers.getTarget(i);
+            h = h * CHECKSUM_PRIME + (target == null ? -1 : hashPoint(target.getPosition()));
+            h = h * CHECKSUM_PRIME + stationaryTowers.getTicksToScan(i);
+        }
+        for (int i = 0; i < airSupports.size(); i++) {
+            h = h * CHECKSUM_PRIME + Double.doubleToLongBits(airSupports.getX(i)) * 31 + Double.doubleToLongBits(airSupports.getY(i));
+            h = h * CHECKSUM_PRIME + Double.doubleToLongBits(airSupports.getExplosiveCooldown(i));
+        }
+        for (Projectile projectile : projectileList) {
+            h = h * CHECKSUM_PRIME + hashPoint(projectile.getPosition());
+        }
+        for (Explosive explosive : explosiveList) {
+            h = h * CHECKSUM_PRIME + Double.doubleToLongBits(explosive.getTimeToExplosion());
+        }
+        if (scheduledImpacts) {
+            h = h * CHECKSUM_PRIME + impactScheduler.checksum(CHECKSUM_PRIME);
+        }
+        return h;
+    }
+
+    private static long hashPoint(Point point) {
+        return Double.doubleToLongBits(point.x) * 31 + Double.doubleToLongBits(point.y);
+    }
+
+    /**
+     * @return true if the player has run out of health, false otherwise.
+     */
+    public boolean isPlayerDead() {
+        return currentPlayer.getHealth() <= 0;
+    }
+
+    /**
+     * @return true if every wave of every level is complete, false otherwise.
+     */
+    public boolean isGameComplete() {
+        return !hasNextLevel() && currentLevel.isAllWavesComplete();
+    }
+
+    public List<LevelDefinition> getLevelDefinitions() {
+        return levelDefinitions;
+    }
+
+    public GameRandom getRandom() {
+        return random;
+    }
+
+    public SlicerPool getSlicerPool() {
+        return slicerPool;
+    }
+
+    public int getLevelNumber() {
+        return levelNumber;
+    }
+
+    public boolean isGoldAwarded() {
+        return goldAwarded;
+    }
+
+    public boolean isLastAirSupportVertical() {
+        return lastAirSupportVertical;
+    }
+
+    /**
+     * Turns parallel tower targeting on or off. Results are identical either way; this only changes speed.
+     * @param parallelTargeting true to aim towers on multiple threads when there are enough of them.
+     */
+    public void setParallelTargeting(boolean parallelTargeting) {
+        this.parallelTargeting = parallelTargeting;
+    }
+
+    public Level getCurrentLevel() {
+        return currentLevel;
+    }
+
+    public Player getCurrentPlayer() {
+        return currentPlayer;
+    }
+
+    /**
+     * Turns scheduled projectile impacts on or off. This should only be changed before the game starts.
+     * @param scheduledImpacts true to schedule each projectile's hit when fired, false to fly projectiles every tick.
+     */
+    public void setScheduledImpacts(boolean scheduledImpacts) {
+        this.scheduledImpacts = scheduledImpacts;
+    }
+
+    /**
+     * Turns fixed point mode on or off. This should only be changed before the game starts.
+     * @param fixedPoint true to move slicers and homing projectiles in fixed point, false to use doubles.
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        this.fixedPoint = fixedPoint;
+        currentLevel.setFixedPoint(fixedPoint);
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
+    /**
+     * Changes how far a homing projectile looks for a new target when its target leaves play. Changes the game, so
+     * should only be set before it starts.
+     * @param retargetRadius radius in pixels, or 0 to discard such projectiles instead.
+     */
+    public void setRetargetRadius(int retargetRadius) {
+        this.retargetRadius = retargetRadius;
+    }
+
+    public int getRetargetRadius() {
+        return retargetRadius;
+    }
+
+    /**
+     * Changes how often stationary towers with no target look for one while cooling down (see
+     * {@link StationaryTowers}). Changes the game, so should only be set before it starts.
+     * @param scanInterval ticks between searches, at least 1.
+     */
+    public void setScanInterval(int scanInterval) {
+        this.scanInterval = scanInterval;
+        stationaryTowers.setScanInterval(scanInterval);
+    }
+
+    public int getScanInterval() {
+        return scanInterval;
+    }
+
+    public boolean isScheduledImpacts() {
+        return scheduledImpacts;
+    }
+
+    public ImpactScheduler getImpactScheduler() {
+        return impactScheduler;
+    }
+
+    public StationaryTowers getStationaryTowers() {
+        return stationaryTowers;
+    }
+
+    public AirSupports getAirSupports() {
+        return airSupports;
+    }
+
+    public List<Projectile> getProjectileList() {
+        return projectileList;
+    }
+
+    public List<Explosive> getExplosiveList() {
+        return explosiveList;
+    }
+
+    public int getTimeScale() {
+        return timeScale;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * @return rolling checksum as last folded, which covers the state up to the last multiple of
+     * {@value #CHECKSUM_INTERVAL} frames. This is what {@link GameSnapshot}s store.
+     */
+    public long getRollingChecksum() {
+        return rollingChecksum;
+    }
+
+    /**
+     * Returns the rolling checksum with the current state folded in, to compare the end of two games. Costs a full
+     * state hash unless the current frame is a multiple of {@value #CHECKSUM_INTERVAL}.
+     * @return checksum of the whole game so far.
+     */
+    public long getChecksum() {
+        if (frame % CHECKSUM_INTERVAL == 0) {
+            return rollingChecksum;
+        }
+        return rollingChecksum * CHECKSUM_PRIME + stateChecksum();
+    }
+}
@@ -0,0 +1,164 @@
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Runs a {@link Simulation} on its own thread at a fixed 60 frames a second, independently of the render thread.
+ * Player commands are handed over through a {@link SpscQueue} and applied on the next frame; after every frame a
+ * {@link RenderSnapshot} is published for the renderer to draw. Commands and checksums are written to the input log
+ * on the simulation thread, so recorded games replay exactly as they were played.
+ * If the thread falls more than {@code MAX_CATCH_UP_FRAMES} behind (e.g. the machine was suspended), it skips ahead
+ * rather than running the missed frames all at once.
+ */
+public final class SimulationLoop implements Runnable {
+    public static final long FRAME_NANOS = TimeUnit.SECONDS.toNanos(1) / 60;
+    private static final int MAX_CATCH_UP_FRAMES = 5;
+    private static final int COMMAND_QUEUE_CAPACITY = 256;
+
+    private final Simulation simulation;
+    private final SpscQueue<Command> commandQueue = new SpscQueue<>(COMMAND_QUEUE_CAPACITY);
+    private final AtomicReference<RenderSnapshot> latestSnapshot = new AtomicReference<>();
+    private final List<Command> frameCommands = new ArrayList<>();
+    private final Thread thread;
+    private InputLogWriter inputLog;
+    private volatile boolean running = false;
+
+    /**
+     * Creates a loop for a game, publishing a snapshot of its current state straight away.
+     * @param simulation game to run. Once started, it must only be touched by the loop until {@link #stop()} returns.
+     * @param inputLog input log to record to, or {@code null} to not record.
+     */
+    public SimulationLoop(Simulation simulation, InputLogWriter inputLog) {
+        this.simulation = simulation;
+        this.inputLog = inputLog;
+        this.thread = new Thread(this, "simulation");
+        this.thread.setDaemon(true);
+        latestSnapshot.set(new RenderSnapshot(simulation, System.nanoTime()));
+    }
+
+    /**
+     * Starts running frames on the simulation thread.
+     */
+    public void start() {
+        running = true;
+        thread.start();
+    }
+
+    /**
+     * Stops the simulation thread, waiting for the current frame to finish, then finishes the input log.
+     * Afterwards the simulation can be used from the calling thread again, e.g. to save it.
+     */
+    public void stop() {
+        running = false;
+        LockSupport.unpark(thread);
+        try {
+            thread.join();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        closeInputLog();
+    }
+
+    /**
+     * Queues a player command to be applied on the next frame. Must only be called from the render thread.
+     * The command's frame number is replaced with the frame it is actually applied on.
+     * @param command command to apply.
+     */
+    public void submit(Command command) {
+        if (!commandQueue.offer(command)) {
+            System.out.println("Command queue is full, input dropped");
+        }
+    }
+
+    /**
+     * @return snapshot of the most recently finished frame.
+     */
+    public RenderSnapshot getLatestSnapshot() {
+        return latestSnapshot.get();
+    }
+
+    @Override
+    public void run() {
+        long nextFrame = System.nanoTime();
+        while (running && !simulation.isPlayerDead()) {
+            long now = System.nanoTime();
+            if (now < nextFrame) {
+                LockSupport.parkNanos(nextFrame - now);
+                continue;
+            }
+            step();
+            nextFrame += FRAME_NANOS;
+            if (now - nextFrame > MAX_CATCH_UP_FRAMES * FRAME_NANOS) {
+                nextFrame = now;
+            }
+        }
+    }
+
+    /**
+     * Runs one frame with every command queued so far, then publishes the result.
+     */
+    private void step() {
+        frameCommands.clear();
+        Command command;
+        while ((command = commandQueue.poll()) != null) {
+            frameCommands.add(new Command(simulation.getFrame(), command.getType(), command.getPosition()));
+        }
+        recordCommands();
+        simulation.update(frameCommands);
+        recordFrame();
+        latestSnapshot.set(new RenderSnapshot(simulation, System.nanoTime()));
+    }
+
+    /**
+     * Writes this frame's commands to the input log. Recording stops (but the game continues) if the log fails.
+     */
+    private void recordCommands() {
+        if (inputLog == null) {
+            return;
+        }
+        try {
+            for (Command command : frameCommands) {
+                inputLog.record(command);
+            }
+        } catch (IOException e) {
+            System.out.println("Input log could not be written, recording stopped");
+            e.printStackTrace();
+            inputLog = null;
+        }
+    }
+
+    /**
+     * Writes a checksum checkpoint to the input log if one is due.
+     */
+    private void recordFrame() {
+        if (inputLog == null) {
+            return;
+        }
+        try {
+            inputLog.frameComplete(simulation.getFrame(), simulation.getRollingChecksum());
+        } catch (IOException e) {
+            System.out.println("Input log could not be written, recording stopped");
+            e.printStackTrace();
+            inputLog = null;
+        }
+    }
+
+    /**
+     * Finishes the input log with the final checksum.
+     */
+    private void closeInputLog() {
+        if (inputLog == null) {
+            return;
+        }
+        try {
+            inputLog.close(simulation.getFrame(), simulation.getChecksum());
+        } catch (IOException e) {
+            System.out.println("Input log could not be closed");
+            e.printStackTrace();
+        }
+        inputLog = null;
+    }
+}
@@ -1,60 +1,75 @@
-import bagel.DrawOptions;
-import bagel.Image;
 import bagel.util.Point;
 import bagel.util.Vector2;
-import bagel.map.TiledMap;
+
+import java.util.Arrays;
+import java.util.List;
 
 /**
- * This abstract class provides a base from all slicer enemies to build upon. Slicers move along the polyline of the map
- * and disappear at the end, damaging the player. Slicers destroyed on the way by towers grant the player gold and may
- * spawn child slicers at it's current position which continue along the polyline as well.
+ * This class implements and controls slicer enemies. Slicers move along the polyline of the map and disappear at the
+ * end, damaging the player. Slicers destroyed on the way by towers grant the player gold and may spawn child slicers at
+ * it's current position which continue along the polyline as well.
+ * Stats shared by all slicers of a kind (health, speed, reward, penalty, children and image) are held by its
+ * {@link SlicerType}; a slicer only holds its own state.
+ * <p>
+ * Each slicer keeps the homing projectiles chasing it, so that when it leaves play they can be sent after another
+ * slicer straight away (see {@link SlicerPool#release(Slicer)}) instead of each projectile checking its target.
  */
-public abstract class Slicer {
-    private static double MOVEMENT_SCALAR = 1;
+public final class Slicer {
+    private static final Projectile[] NO_PROJECTILES = new Projectile[0];
 
-    private final TiledMap slicerMap;
-    private final double finalMovementSpeed;
-    private final int numberOfChildren;
-    private final int reward;
-    private final int penalty;
-    private final Image slicerImage;
+    private final SlicerType type;
 
+    private List<Point> path;
     private Point position;
     private Vector2 vector;
     private int dstNum;
     private int health;
+    private int pendingDamage = 0;
+    private int generation = 0;
+    private long serial = 0;
+    private Projectile[] projectiles = NO_PROJECTILES;
+    private int numberOfProjectiles = 0;
 
     /**
-     * Creates a new slicer at the start of the polyline, looking to the right. The slicer's movement speed is scaled
-     * by {@code MOVEMENT_SCALAR} which can be manually set, and is shared among all slicers.
-     * @param slicerMap TiledMap containing polyline for slicer to travel along.
-     * @param health starting health for the slicer.
-     * @param movementSpeed base movement speed for the slicer.
-     * @param slicerImage image of slicer.
-     * @param numberOfChildren amount of child slicers to spawn when killed by a tower.
-     * @param reward amount of gold to reward player when killed by a tower.
-     * @param penalty amount of health to take away from player when slicer reaches end of the polyline.
+     * Creates a new slicer at the start of the polyline, looking to the right.
+     * Slicers should normally be taken from a {@link SlicerPool} rather than created directly.
+     * @param type type of slicer, giving its stats and image.
+     * @param path polyline for slicer to travel along.
      */
-    public Slicer(TiledMap slicerMap, int health, double movementSpeed, Image slicerImage, int numberOfChildren, int reward, int penalty) {
-        this.slicerMap = slicerMap;
-        this.health = health;
-        this.finalMovementSpeed = movementSpeed * MOVEMENT_SCALAR;
-        this.slicerImage = slicerImage;
-        this.numberOfChildren = numberOfChildren;
-        this.reward = reward;
-        this.penalty = penalty;
+    public Slicer(SlicerType type, List<Point> path) {
+        this.type = type;
+        reset(path);
+    }
+
+    /**
+     * Puts the slicer back at the start of a polyline at full health, looking to the right, so it can be reused.
+     * @param path polyline for slicer to travel along.
+     */
+    public void reset(List<Point> path) {
+        this.path = path;
+        this.health = type.getHealth();
+        this.pendingDamage = 0;
         this.vector = Vector2.right;
+        Arrays.fill(projectiles, 0, numberOfProjectiles, null);
+        this.numberOfProjectiles = 0;
 
-        position = slicerMap.getAllPolylines().get(0).get(0);
+        position = path.get(0);
         dstNum = 1;
     }
 
     /**
-     * Renders the slicer at it's current position, facing it toward it's destination.
+     * Marks the slicer as gone (dead or reached the end) by moving it to a new generation.
+     * References taken before this, e.g. by projectiles, can check {@link Slicer#getGeneration()} to see they are stale.
+     */
+    public void retire() {
+        generation++;
+    }
+
+    /**
+     * @return angle the slicer is facing, in radians, as used to draw it.
      */
-    public void draw() {
-        DrawOptions opt = new DrawOptions().setRotation(Math.atan2(vector.y, vector.x));
-        slicerImage.draw(position.x, position.y, opt);
+    public double getRotation() {
+        return Math.atan2(vector.y, vector.x);
     }
 
     /**
@@ -62,7 +77,16 @@ public abstract class Slicer {
      */
     public void updateVector() {
         vector = getDestination().asVector().sub(position.asVector());
-        vector = vector.normalised().mul(finalMovementSpeed);
+        vector = vector.normalised().mul(type.getMovementSpeed());
+    }
+
+    /**
+     * Sets the movement vector, e.g. as worked out for many slicers at once by {@link SlicerKernels#steer}.
+     * @param x x component of the vector.
+     * @param y y component of the vector.
+     */
+    public void setVector(double x, double y) {
+        vector = new Vector2(x, y);
     }
 
     /**
@@ -70,7 +94,7 @@ public abstract class Slicer {
      * @return Point co-ordinate of current destination of slicer (not final destination).
      */
     public Point getDestination() {
-        return slicerMap.getAllPolylines().get(0).get(dstNum);
+        return path.get(dstNum);
     }
 
     /**
@@ -87,7 +111,7 @@ public abstract class Slicer {
      */
     public boolean updateDestination() {
         dstNum++;
-        if (dstNum >= slicerMap.getAllPolylines().get(0).size()) {
+        if (dstNum >= path.size()) {
             return false;
         }
         updateVector();
@@ -111,24 +135,108 @@ public abstract class Slicer {
         return health <= 0;
     }
 
+    /**
+     * Records damage from a projectile fired at this slicer, which will land later. Pass a negative amount once the
+     * projectile hits or is discarded.
+     * @param damage damage on its way.
+     */
+    public void addPendingDamage(int damage) {
+        pendingDamage += damage;
+    }
+
+    /**
+     * Records a homing projectile chasing this slicer. Done by {@link Projectile#track()}.
+     * @param projectile projectile targeting this slicer.
+     */
+    public void addProjectile(Projectile projectile) {
+        if (numberOfProjectiles == projectiles.length) {
+            projectiles = Arrays.copyOf(projectiles, Math.max(4, numberOfProjectiles * 2));
+        }
+        projectile.setTargetSlot(numberOfProjectiles);
+        projectiles[numberOfProjectiles++] = projectile;
+    }
+
+    /**
+     * Stops recording a projectile chasing this slicer, e.g. once it hits. Moves the last projectile into its place.
+     * @param projectile projectile previously added with {@link Slicer#addProjectile(Projectile)}.
+     */
+    public void removeProjectile(Projectile projectile) {
+        int slot = projectile.getTargetSlot();
+        Projectile last = projectiles[--numberOfProjectiles];
+        projectiles[slot] = last;
+        last.setTargetSlot(slot);
+        projectiles[numberOfProjectiles] = null;
+        projectile.setTargetSlot(-1);
+    }
+
+    /**
+     * Hands over every projectile chasing this slicer, e.g. as it leaves play, and forgets them.
+     * @param orphans list to add the projectiles to, in the order they were added.
+     */
+    public void takeProjectiles(List<Projectile> orphans) {
+        for (int i = 0; i < numberOfProjectiles; i++) {
+            projectiles[i].setTargetSlot(-1);
+            orphans.add(projectiles[i]);
+            projectiles[i] = null;
+        }
+        numberOfProjectiles = 0;
+    }
+
+    /**
+     * Checks if projectiles already in flight will kill this slicer, so towers can pick another target.
+     * @return true if pending damage is at least the slicer's health, false otherwise.
+     */
+    public boolean isDoomed() {
+        return pendingDamage >= health;
+    }
+
     /**
      * Generates a random point nearby current position to spawn child slicers.
      * This is to prevent child slicers from completely overlapping and appearing as one.
      * The new point will be in a 15x15 pixel square around the current point.
+     * @param random game random number generator.
      * @return point randomly within 15x15 square around current point
      */
-    public Point childSpawnLocation() {
-        return new Point(this.getPosition().x + Math.random()*15, this.getPosition().y + Math.random()*15);
+    public Point childSpawnLocation(GameRandom random) {
+        return new Point(this.getPosition().x + random.nextDouble()*15, this.getPosition().y + random.nextDouble()*15);
+    }
+
+    public SlicerType getType() {
+        return type;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * @return number given to this slicer when it last spawned, unique within its game. Used to follow a slicer
+     * between {@link RenderSnapshot}s.
+     */
+    public long getSerial() {
+        return serial;
     }
 
-    public Slicer onDeath() {
-        return null;
+    public void setSerial(long serial) {
+        this.serial = serial;
     }
 
     public int getHealth() {
         return health;
     }
 
+    public int getPendingDamage() {
+        return pendingDamage;
+    }
+
+    public int getNumberOfProjectiles() {
+        return numberOfProjectiles;
+    }
+
+    public void setHealth(int health) {
+        this.health = health;
+    }
+
     public Point getPosition() {
         return position;
     }
@@ -137,8 +245,8 @@ public abstract class Slicer {
         this.position = position;
     }
 
-    public TiledMap getSlicerMap() {
-        return slicerMap;
+    public List<Point> getPath() {
+        return path;
     }
 
     public int getDstNum() {
@@ -146,30 +254,26 @@ public abstract class Slicer {
     }
 
     public void setDstNum(int dstNum) {
-        if (dstNum >= slicerMap.getAllPolylines().get(0).size()) {
+        if (dstNum >= path.size()) {
             throw new IllegalArgumentException();
         }
         this.dstNum = dstNum;
     }
 
-    public static void setMovementScalar(double movementScalar) {
-        MOVEMENT_SCALAR = movementScalar;
-    }
-
     public double getFinalMovementSpeed() {
-        return finalMovementSpeed;
+        return type.getMovementSpeed();
     }
 
     public int getNumberOfChildren() {
-        return numberOfChildren;
+        return type.getNumberOfChildren();
     }
 
     public int getReward() {
-        return reward;
+        return type.getReward();
     }
 
     public int getPenalty() {
-        return penalty;
+        return type.getPenalty();
     }
 
 }
@@ -0,0 +1,96 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * All slicer types, read from a catalog file so new slicers can be added without new classes.
+ * Each line of the file describes one type:
+ * {@code name,health,speed,reward,penalty,children,child type,image}, e.g.
+ * {@code superslicer,1,1.5,15,2,2,slicer,res/images/superslicer.png}. The child type is {@code none} for slicers
+ * without children, and must be listed earlier in the file otherwise. Lines starting with {@code #} are ignored.
+ * The game's catalog is loaded once from {@code res/data/slicers.txt} and shared by every simulation.
+ */
+public class SlicerCatalog {
+    private static final String DEFAULT_FILE = "res/data/slicers.txt";
+    private static final String NO_CHILD = "none";
+
+    private static SlicerCatalog defaultCatalog;
+
+    private final List<SlicerType> types = new ArrayList<>();
+    private final Map<String, SlicerType> typesByName = new HashMap<>();
+
+    /**
+     * Reads a slicer catalog file.
+     * @param fileDir file path to the catalog.
+     */
+    public SlicerCatalog(String fileDir) {
+        try (Scanner reader = new Scanner(new File(fileDir))) {
+            while (reader.hasNextLine()) {
+                String line = reader.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                SlicerType childType = null;
+                if (!fields[6].equals(NO_CHILD)) {
+                    childType = typesByName.get(fields[6]);
+                    if (childType == null) {
+                        throw new IllegalArgumentException("Child type " + fields[6] + " must be listed before " + fields[0]);
+                    }
+                }
+                SlicerType type = new SlicerType(types.size(), fields[0], Integer.parseInt(fields[1]),
+                        Double.parseDouble(fields[2]), Integer.parseInt(fields[3]), Integer.parseInt(fields[4]),
+                        Integer.parseInt(fields[5]), childType, AssetCache.getDefault().getSprite(fields[7]));
+                types.add(type);
+                typesByName.put(type.getName(), type);
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Could not read slicer catalog " + fileDir, e);
+        }
+        if (types.isEmpty()) {
+            throw new IllegalArgumentException("Slicer catalog " + fileDir + " has no slicer types");
+        }
+    }
+
+    /**
+     * Gets the game's slicer catalog, loading it on first use.
+     * @return catalog read from {@code res/data/slicers.txt}.
+     */
+    public static synchronized SlicerCatalog getDefault() {
+        if (defaultCatalog == null) {
+            defaultCatalog = new SlicerCatalog(DEFAULT_FILE);
+        }
+        return defaultCatalog;
+    }
+
+    /**
+     * Finds the slicer type with the given id.
+     * @param id index of the type in the catalog.
+     * @return slicer type.
+     */
+    public SlicerType get(int id) {
+        return types.get(id);
+    }
+
+    /**
+     * Finds the slicer type with the given name in a wave file, e.g. "megaslicer".
+     * @param name name used in the wave file.
+     * @return matching slicer type, or the first type in the catalog if the name is unknown.
+     */
+    public SlicerType get(String name) {
+        return typesByName.getOrDefault(name, types.get(0));
+    }
+
+    public List<SlicerType> getTypes() {
+        return Collections.unmodifiableList(types);
+    }
+
+    public int size() {
+        return types.size();
+    }
+}
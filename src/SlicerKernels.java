@@ -0,0 +1,169 @@
+/**
+ * Per-slicer maths applied to packed arrays of slicer positions, so it can be done several slicers at a time.
+ * This class is the plain scalar version; {@link VectorSlicerKernels} does the same with the incubating Vector API,
+ * which the JVM only provides when started with {@code --add-modules jdk.incubator.vector}.
+ * {@link SlicerKernels#getDefault()} picks the vector kernels when that module is present, and this class otherwise.
+ * <p>
+ * Both versions do exactly the same floating point operations in the same order as {@link bagel.util.Point} and
+ * {@link bagel.util.Vector2}, so results are bit for bit identical and games replay the same with either. The fixed
+ * point kernels, used in the simulation's fixed point mode, only use integer arithmetic and are shared by both.
+ */
+public class SlicerKernels {
+    private static final String VECTOR_MODULE = "jdk.incubator.vector";
+    private static final String VECTOR_KERNELS = "VectorSlicerKernels";
+    // Set this system property to true to use scalar kernels even when the vector module is present
+    private static final String FORCE_SCALAR_PROPERTY = "shadowdefend.scalarKernels";
+
+    private static SlicerKernels defaultKernels = null;
+
+    /**
+     * Gets the fastest kernels available in this JVM, choosing them the first time this is called.
+     * @return vector kernels if the Vector API module is present, scalar kernels otherwise.
+     */
+    public static synchronized SlicerKernels getDefault() {
+        if (defaultKernels == null) {
+            defaultKernels = new SlicerKernels();
+            if (!Boolean.getBoolean(FORCE_SCALAR_PROPERTY) && ModuleLayer.boot().findModule(VECTOR_MODULE).isPresent()) {
+                try {
+                    // Loaded by name so that the vector kernels are never linked without the module
+                    defaultKernels = (SlicerKernels) Class.forName(VECTOR_KERNELS).getDeclaredConstructor().newInstance();
+                } catch (ReflectiveOperationException | LinkageError e) {
+                    System.out.println("Vector kernels could not be loaded, using scalar kernels");
+                    e.printStackTrace();
+                }
+            }
+        }
+        return defaultKernels;
+    }
+
+    /**
+     * @return short description of these kernels, e.g. for benchmark output.
+     */
+    public String getName() {
+        return "scalar";
+    }
+
+    /**
+     * Works out each slicer's movement for this frame: its heading towards its destination scaled to its speed, as in
+     * {@link Slicer#updateVector()}, and its distance from the destination, as in {@link Slicer#checkDistanceToDst()}.
+     * @param x x co-ordinates of slicers.
+     * @param y y co-ordinates of slicers.
+     * @param destinationX x co-ordinates of slicers' destinations.
+     * @param destinationY y co-ordinates of slicers' destinations.
+     * @param speed slicers' movement speeds.
+     * @param n number of slicers.
+     * @param vectorX receives the x components of slicers' movement vectors.
+     * @param vectorY receives the y components of slicers' movement vectors.
+     * @param destinationDistance receives slicers' distances from their destinations.
+     */
+    public void steer(double[] x, double[] y, double[] destinationX, double[] destinationY, double[] speed, int n,
+                      double[] vectorX, double[] vectorY, double[] destinationDistance) {
+        steerScalar(x, y, destinationX, destinationY, speed, 0, n, vectorX, vectorY, destinationDistance);
+    }
+
+    /**
+     * Scalar version of {@link #steer} for the slicers from index {@code from} up to {@code n}.
+     */
+    protected static void steerScalar(double[] x, double[] y, double[] destinationX, double[] destinationY,
+                                      double[] speed, int from, int n, double[] vectorX, double[] vectorY,
+                                      double[] destinationDistance) {
+        for (int i = from; i < n; i++) {
+            double dx = destinationX[i] - x[i];
+            double dy = destinationY[i] - y[i];
+            double length = Math.sqrt(dx * dx + dy * dy);
+            vectorX[i] = speed[i] * (dx / length);
+            vectorY[i] = speed[i] * (dy / length);
+            destinationDistance[i] = length;
+        }
+    }
+
+    /**
+     * Finds every slicer strictly within range of a point, as measured by {@link bagel.util.Point#distanceTo}.
+     * @param x x co-ordinates of slicers.
+     * @param y y co-ordinates of slicers.
+     * @param n number of slicers.
+     * @param px x co-ordinate of the point.
+     * @param py y co-ordinate of the point.
+     * @param range radius to search around the point.
+     * @param indices receives the indices of slicers in range, in increasing order. Must fit {@code n} slicers.
+     * @param distances receives the distances of slicers in range, in the same order. Must fit {@code n} slicers.
+     * @return number of slicers in range.
+     */
+    public int inRange(double[] x, double[] y, int n, double px, double py, double range, int[] indices,
+                       double[] distances) {
+        return inRangeScalar(x, y, 0, n, px, py, range, indices, distances, 0);
+    }
+
+    /**
+     * Scalar version of {@link #inRange} for the slicers from index {@code from} up to {@code n}, appending to the
+     * {@code count} slicers already found.
+     * @return total number of slicers found.
+     */
+    protected static int inRangeScalar(double[] x, double[] y, int from, int n, double px, double py, double range,
+                                       int[] indices, double[] distances, int count) {
+        for (int i = from; i < n; i++) {
+            double dx = x[i] - px;
+            double dy = y[i] - py;
+            double distance = Math.sqrt(dx * dx + dy * dy);
+            if (distance < range) {
+                indices[count] = i;
+                distances[count] = distance;
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Works out each slicer's movement for this frame in the same way as {@link #steer}, but in fixed point (see
+     * {@link FixedPoint}). Slicers already at their destination get no movement.
+     * @param x fixed point x co-ordinates of slicers.
+     * @param y fixed point y co-ordinates of slicers.
+     * @param destinationX fixed point x co-ordinates of slicers' destinations.
+     * @param destinationY fixed point y co-ordinates of slicers' destinations.
+     * @param speed slicers' fixed point movement speeds.
+     * @param n number of slicers.
+     * @param vectorX receives the x components of slicers' movement vectors.
+     * @param vectorY receives the y components of slicers' movement vectors.
+     * @param destinationDistance receives slicers' fixed point distances from their destinations, rounded down.
+     */
+    public void steerFixed(int[] x, int[] y, int[] destinationX, int[] destinationY, int[] speed, int n,
+                           int[] vectorX, int[] vectorY, int[] destinationDistance) {
+        for (int i = 0; i < n; i++) {
+            long dx = destinationX[i] - x[i];
+            long dy = destinationY[i] - y[i];
+            long length = FixedPoint.sqrt(FixedPoint.lengthSquared(dx, dy));
+            vectorX[i] = length == 0 ? 0 : FixedPoint.scale(dx, length, speed[i]);
+            vectorY[i] = length == 0 ? 0 : FixedPoint.scale(dy, length, speed[i]);
+            destinationDistance[i] = (int) length;
+        }
+    }
+
+    /**
+     * Finds every slicer strictly within range of a point in the same way as {@link #inRange}, but in fixed point,
+     * comparing squared distances.
+     * @param x fixed point x co-ordinates of slicers.
+     * @param y fixed point y co-ordinates of slicers.
+     * @param n number of slicers.
+     * @param px fixed point x co-ordinate of the point.
+     * @param py fixed point y co-ordinate of the point.
+     * @param rangeSquared squared fixed point radius, from {@link FixedPoint#rangeSquared(int)}.
+     * @param indices receives the indices of slicers in range, in increasing order. Must fit {@code n} slicers.
+     * @param distancesSquared receives the squared distances of slicers in range, in the same order. Must fit
+     * {@code n} slicers.
+     * @return number of slicers in range.
+     */
+    public int inRangeFixed(int[] x, int[] y, int n, int px, int py, long rangeSquared, int[] indices,
+                            long[] distancesSquared) {
+        int count = 0;
+        for (int i = 0; i < n; i++) {
+            long distanceSquared = FixedPoint.lengthSquared(x[i] - px, y[i] - py);
+            if (distanceSquared < rangeSquared) {
+                indices[count] = i;
+                distancesSquared[count] = distanceSquared;
+                count++;
+            }
+        }
+        return count;
+    }
+}
@@ -0,0 +1,64 @@
+import bagel.util.Point;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Recycles slicers so that spawning, splitting and dying do not allocate new slicers once the game has warmed up.
+ * Each {@link SlicerType} has its own free list. Released slicers get a new generation number, so anything still
+ * holding a reference to one (e.g. a {@link Projectile}) can tell that its slicer is gone, even after it is reused.
+ * Homing projectiles chasing a released slicer are collected as orphans, for the {@link Simulation} to retarget.
+ */
+public class SlicerPool {
+    private final List<ArrayDeque<Slicer>> freeSlicers = new ArrayList<>();
+    private final List<Projectile> orphanedProjectiles = new ArrayList<>();
+
+    private long nextSerial = 1;
+
+    /**
+     * Creates an empty pool.
+     */
+    public SlicerPool() {
+        for (int i = 0; i < SlicerCatalog.getDefault().size(); i++) {
+            freeSlicers.add(new ArrayDeque<Slicer>());
+        }
+    }
+
+    /**
+     * Takes a slicer of the given type, reset to the start of the polyline, and gives it a new serial number.
+     * A new slicer is only created if none are free.
+     * @param type type of slicer.
+     * @param path polyline for the slicer to follow.
+     * @return slicer at full health at the start of the polyline.
+     */
+    public Slicer acquire(SlicerType type, List<Point> path) {
+        Slicer slicer = freeSlicers.get(type.getId()).poll();
+        if (slicer == null) {
+            slicer = new Slicer(type, path);
+        } else {
+            slicer.reset(path);
+        }
+        slicer.setSerial(nextSerial++);
+        return slicer;
+    }
+
+    /**
+     * Returns a slicer that has died or reached the end of the polyline, so it can be reused. Projectiles chasing it
+     * are added to the orphaned projectiles. The slicer must not be used again by the caller.
+     * @param slicer slicer to release.
+     */
+    public void release(Slicer slicer) {
+        slicer.takeProjectiles(orphanedProjectiles);
+        slicer.retire();
+        freeSlicers.get(slicer.getType().getId()).push(slicer);
+    }
+
+    /**
+     * @return homing projectiles whose target has been released, in the order they were orphaned. The caller should
+     * retarget or discard them, then clear the list.
+     */
+    public List<Projectile> getOrphanedProjectiles() {
+        return orphanedProjectiles;
+    }
+}
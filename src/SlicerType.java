@@ -0,0 +1,83 @@
+/**
+ * One kind of slicer enemy, as read from the slicer catalog (see {@link SlicerCatalog}).
+ * Slicer types are immutable and shared by every slicer of that type, so each {@link Slicer} only needs to hold its
+ * type and its own position, health and destination.
+ */
+public class SlicerType {
+    private final int id;
+    private final String name;
+    private final int health;
+    private final double movementSpeed;
+    private final int reward;
+    private final int penalty;
+    private final int numberOfChildren;
+    private final SlicerType childType;
+    private final Sprite image;
+
+    /**
+     * Creates a new slicer type.
+     * @param id index of the type in its catalog, used to store the type compactly.
+     * @param name name used for the type in wave files, e.g. "megaslicer".
+     * @param health starting health.
+     * @param movementSpeed movement speed in px/frame.
+     * @param reward amount of gold to reward player when killed by a tower.
+     * @param penalty amount of health to take away from player when the slicer reaches end of the polyline.
+     * @param numberOfChildren amount of child slicers to spawn when killed by a tower.
+     * @param childType type of the child slicers, or {@code null} if there are none.
+     * @param image image of the slicer.
+     */
+    public SlicerType(int id, String name, int health, double movementSpeed, int reward, int penalty, int numberOfChildren,
+                      SlicerType childType, Sprite image) {
+        if (numberOfChildren > 0 && childType == null) {
+            throw new IllegalArgumentException("Slicer type " + name + " has children but no child type");
+        }
+        this.id = id;
+        this.name = name;
+        this.health = health;
+        this.movementSpeed = movementSpeed;
+        this.reward = reward;
+        this.penalty = penalty;
+        this.numberOfChildren = childType == null ? 0 : numberOfChildren;
+        this.childType = childType;
+        this.image = image;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getHealth() {
+        return health;
+    }
+
+    public double getMovementSpeed() {
+        return movementSpeed;
+    }
+
+    public int getReward() {
+        return reward;
+    }
+
+    public int getPenalty() {
+        return penalty;
+    }
+
+    public int getNumberOfChildren() {
+        return numberOfChildren;
+    }
+
+    /**
+     * @return type of child spawned on death, or {@code null} if this type has no children.
+     */
+    public SlicerType getChildType() {
+        return childType;
+    }
+
+    public Sprite getImage() {
+        return image;
+    }
+}
@@ -0,0 +1,140 @@
+import bagel.DrawOptions;
+import bagel.Image;
+import bagel.util.Point;
+import bagel.util.Rectangle;
+
+/**
+ * Lazily loaded wrapper around a Bagel {@link Image}.
+ * Bagel images can only be created once a window exists, so game objects hold a Sprite instead and the image is only
+ * loaded the first time it is drawn or measured. This lets the simulation run headless (e.g. {@link ReplayRunner}).
+ * Sprites should be taken from the {@link AssetCache}, so each image is only loaded once.
+ * <p>
+ * If the image has been packed into a {@link TextureAtlas}, the sprite is drawn as a section of the shared atlas image
+ * instead of from its own image.
+ */
+public class Sprite {
+    private final String fileDir;
+    private final TextureAtlas.Region region;
+    private Image image;
+    private Image atlas;
+    // Reused for every draw, which is only ever done on the render thread. Bagel needs a window to create it.
+    private DrawOptions options;
+
+    /**
+     * Creates a sprite for the given image file. Nothing is loaded until the sprite is first used.
+     * @param fileDir file path of the image.
+     */
+    public Sprite(String fileDir) {
+        this.fileDir = fileDir;
+        this.region = TextureAtlas.getDefault().get(fileDir);
+    }
+
+    /**
+     * Renders the sprite centred at the given position.
+     * @param x x co-ordinate of centre.
+     * @param y y co-ordinate of centre.
+     */
+    public void draw(double x, double y) {
+        draw(x, y, 0);
+    }
+
+    /**
+     * Renders the sprite centred at the given position, rotated about its centre.
+     * @param x x co-ordinate of centre.
+     * @param y y co-ordinate of centre.
+     * @param rotation rotation in radians.
+     */
+    public void draw(double x, double y, double rotation) {
+        if (options == null) {
+            options = new DrawOptions();
+            if (region != null) {
+                options.setSection(region.getX(), region.getY(), region.getWidth(), region.getHeight());
+            }
+        }
+        options.setRotation(rotation);
+        if (region == null) {
+            getImage().draw(x, y, options);
+            return;
+        }
+        // Bagel draws the whole atlas centred on the given point minus the section offset, rotated about that centre,
+        // and masks out everything outside the section. Shift it so the section's own centre lands on (x, y).
+        Image atlasImage = getAtlas();
+        double dx = region.getX() + region.getWidth() / 2.0 - atlasImage.getWidth() / 2;
+        double dy = region.getY() + region.getHeight() / 2.0 - atlasImage.getHeight() / 2;
+        double cos = Math.cos(rotation);
+        double sin = Math.sin(rotation);
+        atlasImage.draw(x - (cos * dx - sin * dy) + region.getX(), y - (sin * dx + cos * dy) + region.getY(), options);
+    }
+
+    /**
+     * Renders the sprite centred at the given position with draw options (e.g. blend colour). This always draws from
+     * the sprite's own image, as the options may set a section of their own.
+     * @param x x co-ordinate of centre.
+     * @param y y co-ordinate of centre.
+     * @param options Bagel draw options.
+     */
+    public void draw(double x, double y, DrawOptions options) {
+        getImage().draw(x, y, options);
+    }
+
+    /**
+     * Gets the bounding box of the sprite if it were centred at the given point.
+     * @param position centre of sprite.
+     * @return bounding box.
+     */
+    public Rectangle getBoundingBoxAt(Point position) {
+        if (region == null) {
+            return getImage().getBoundingBoxAt(position);
+        }
+        return new Rectangle(position.x - region.getWidth() / 2.0, position.y - region.getHeight() / 2.0,
+                region.getWidth(), region.getHeight());
+    }
+
+    /**
+     * Loads whatever this sprite draws from (its atlas, or its own image), if it isn't loaded already.
+     */
+    public void load() {
+        if (region == null) {
+            getImage();
+        } else {
+            getAtlas();
+        }
+    }
+
+    /**
+     * Gets the sprite's own Bagel image, loading it if this is the first use.
+     * @return loaded image.
+     */
+    public Image getImage() {
+        if (image == null) {
+            image = new Image(fileDir);
+        }
+        return image;
+    }
+
+    private Image getAtlas() {
+        if (atlas == null) {
+            atlas = AssetCache.getDefault().getImage(region.getAtlasFile());
+        }
+        return atlas;
+    }
+
+    public double getWidth() {
+        return region == null ? getImage().getWidth() : region.getWidth();
+    }
+
+    public double getHeight() {
+        return region == null ? getImage().getHeight() : region.getHeight();
+    }
+
+    public String getFileDir() {
+        return fileDir;
+    }
+
+    /**
+     * @return where this sprite's image was packed, or {@code null} if it is drawn from its own image.
+     */
+    public TextureAtlas.Region getRegion() {
+        return region;
+    }
+}
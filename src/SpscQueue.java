@@ -0,0 +1,73 @@
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * A bounded, lock-free queue for handing items from exactly one producer thread to exactly one consumer thread.
+ * Used to pass player {@link Command}s from the render thread to the {@link SimulationLoop}, and stream records to the
+ * {@link StateStreamViewer}.
+ * @param <T> type of item queued.
+ */
+public class SpscQueue<T> {
+    private final AtomicReferenceArray<T> buffer;
+    private final int mask;
+    // Next slot to read, only written by the consumer
+    private final AtomicLong head = new AtomicLong();
+    // Next slot to write, only written by the producer
+    private final AtomicLong tail = new AtomicLong();
+
+    /**
+     * Creates an empty queue.
+     * @param capacity maximum number of items queued at once, rounded up to a power of two.
+     */
+    public SpscQueue(int capacity) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("Capacity must be positive: " + capacity);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.buffer = new AtomicReferenceArray<>(size);
+        this.mask = size - 1;
+    }
+
+    /**
+     * Adds an item to the back of the queue. Must only be called from the producer thread.
+     * @param item item to add, not {@code null}.
+     * @return true if the item was added, false if the queue is full.
+     */
+    public boolean offer(T item) {
+        long t = tail.get();
+        if (t - head.get() > mask) {
+            return false;
+        }
+        buffer.lazySet((int) t & mask, item);
+        tail.lazySet(t + 1);
+        return true;
+    }
+
+    /**
+     * Removes the item at the front of the queue. Must only be called from the consumer thread.
+     * @return the front item, or {@code null} if the queue is empty.
+     */
+    public T poll() {
+        long h = head.get();
+        if (h == tail.get()) {
+            return null;
+        }
+        int slot = (int) h & mask;
+        T item = buffer.get(slot);
+        buffer.lazySet(slot, null);
+        head.lazySet(h + 1);
+        return item;
+    }
+
+    /**
+     * Counts the items queued. Exact when called from the consumer thread, except that the producer may add more.
+     * @return number of items queued.
+     */
+    public int size() {
+        long h = head.get();
+        return (int) (tail.get() - h);
+    }
+}
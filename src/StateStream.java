@@ -0,0 +1,530 @@
+import bagel.util.Point;
+
+import java.io.BufferedInputStream;
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A game's state streamed frame by frame by a {@link StateStreamWriter}, read back for {@link StateStreamViewer}.
+ * Holds the state as of the last record applied: player values, and where every slicer, tower, projectile and
+ * explosive is. Slicers are only known by how far along their lane they are, so they are drawn on the lane itself.
+ * <p>
+ * Stream format (big-endian, varints are unsigned LEB128, signed values are zigzag encoded first):
+ * <ul>
+ *     <li>Header: magic {@code "SDSS"}, version byte, level count short, map and wave file paths</li>
+ *     <li>Records: varint frame delta, kind byte, varint payload length, then the payload. Keyframes hold the whole
+ *     state, as changes from an empty game; delta records hold changes from the record before. An end record with no
+ *     payload closes the stream.</li>
+ *     <li>Payload, in order:
+ *         <ul>
+ *             <li>Player: a byte with one bit per changed value (level, gold, health, wave, timescale, flags), then
+ *             the change of each, signed</li>
+ *             <li>Slicers removed: count, then the gap before each index in the slicer list</li>
+ *             <li>Slicers moved: count of corrections, then for each the number of slicers to skip and the signed
+ *             correction. Every slicer not corrected moved its type's speed times the timescale along its lane.
+ *             Progress is in 1/{@code QUANTUM} pixels.</li>
+ *             <li>Slicers spawned: count, then for each its serial number (as a signed change from the last one),
+ *             type id, lane and progress</li>
+ *             <li>Stationary towers placed: count, then type id, x and y of each; then towers turned: count, then the
+ *             gap before each index and its new angle byte</li>
+ *             <li>Air supports: count, then type id, x, y and angle byte of every plane</li>
+ *             <li>Projectiles hit: count, then gaps; fired: count, then for each the id of the tower type that fired
+ *             it, x, y, and its target's serial number as a signed change from the last spawned serial</li>
+ *             <li>Explosives exploded: count, then gaps; dropped: count, then x and y of each</li>
+ *         </ul>
+ *     </li>
+ * </ul>
+ * Positions are whole pixels, and angles are 1/256 of a turn.
+ */
+public class StateStream {
+    public static final int MAGIC = 0x53445353;
+    public static final int VERSION = 1;
+    public static final int KEYFRAME = 1;
+    public static final int DELTA = 2;
+    public static final int END = 0x7F;
+    // Progress steps per pixel
+    public static final int QUANTUM = 4;
+
+    // Player values, in stream order
+    public static final int LEVEL = 0;
+    public static final int GOLD = 1;
+    public static final int HEALTH = 2;
+    public static final int WAVE = 3;
+    public static final int TIMESCALE = 4;
+    public static final int FLAGS = 5;
+    public static final int PLAYER_VALUES = 6;
+    // Bits of the FLAGS value
+    public static final int WAVE_IN_PROGRESS = 1;
+    public static final int ALL_WAVES_COMPLETE = 2;
+    public static final int PLAYER_DEAD = 4;
+
+    private final DataInputStream in;
+    private final List<LevelDefinition> levels = new ArrayList<>();
+    private final List<List<List<Point>>> levelLanes = new ArrayList<>();
+    private final List<List<double[]>> levelArcLengths = new ArrayList<>();
+
+    private int frame = 0;
+    private final int[] player = new int[PLAYER_VALUES];
+
+    private int slicerCount = 0;
+    private long lastSerial = 0;
+    private long[] slicerSerials = new long[64];
+    private int[] slicerTypes = new int[64];
+    private int[] slicerLanes = new int[64];
+    private int[] slicerProgress = new int[64];
+
+    private int towerCount = 0;
+    private int[] towerTypes = new int[16];
+    private int[] towerX = new int[16];
+    private int[] towerY = new int[16];
+    private int[] towerAngles = new int[16];
+
+    private int airSupportCount = 0;
+    private int[] airSupportTypes = new int[4];
+    private int[] airSupportX = new int[4];
+    private int[] airSupportY = new int[4];
+    private int[] airSupportAngles = new int[4];
+
+    private int projectileCount = 0;
+    private int[] projectileTypes = new int[64];
+    private double[] projectileX = new double[64];
+    private double[] projectileY = new double[64];
+    private long[] projectileTargets = new long[64];
+
+    private int explosiveCount = 0;
+    private int[] explosiveX = new int[16];
+    private int[] explosiveY = new int[16];
+
+    /**
+     * Opens a stream, reading its header and the lanes of every level. Safe to call headless.
+     * @param stream stream to read, e.g. a file or a socket.
+     * @throws IOException if the header could not be read or this is not a state stream.
+     */
+    public StateStream(InputStream stream) throws IOException {
+        in = new DataInputStream(new BufferedInputStream(stream));
+        if (in.readInt() != MAGIC || in.readByte() != VERSION) {
+            throw new IOException("Not a version " + VERSION + " state stream");
+        }
+        int numberOfLevels = in.readShort();
+        for (int i = 0; i < numberOfLevels; i++) {
+            LevelDefinition level = new LevelDefinition(in.readUTF(), in.readUTF());
+            LevelBundle bundle = level.loadBundle();
+            levels.add(level);
+            levelLanes.add(bundle.getPolylines());
+            levelArcLengths.add(bundle.getAllArcLengths());
+        }
+    }
+
+    /**
+     * Reads the next record, blocking until it has arrived. Records are only read here, so another thread can read
+     * ahead while records are applied.
+     * @return the frame delta and kind (in its first 5 bytes, as an int then a byte) followed by the payload, or
+     * {@code null} once the stream has ended or been cut off.
+     * @throws IOException if the stream could not be read.
+     */
+    public byte[] readRecord() throws IOException {
+        try {
+            int frameDelta = readVarInt(in);
+            int kind = in.readUnsignedByte();
+            if (kind == END) {
+                return null;
+            }
+            byte[] record = new byte[5 + readVarInt(in)];
+            ByteBuffer.wrap(record).putInt(frameDelta).put((byte) kind);
+            in.readFully(record, 5, record.length - 5);
+            return record;
+        } catch (EOFException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Moves the state on by one record from {@link StateStream#readRecord()}. Projectiles are moved towards their
+     * targets, as the stream only holds where they were fired from.
+     * @param record record to apply.
+     */
+    public void apply(byte[] record) {
+        ByteBuffer buffer = ByteBuffer.wrap(record);
+        frame += buffer.getInt();
+        if (buffer.get() == KEYFRAME) {
+            Arrays.fill(player, 0);
+            slicerCount = 0;
+            lastSerial = 0;
+            towerCount = 0;
+            projectileCount = 0;
+            explosiveCount = 0;
+        }
+
+        int changed = buffer.get();
+        for (int i = 0; i < PLAYER_VALUES; i++) {
+            if ((changed & 1 << i) != 0) {
+                player[i] += readSigned(buffer);
+            }
+        }
+        int timeScale = player[TIMESCALE];
+
+        readSlicers(buffer, timeScale);
+        readTowers(buffer);
+        readProjectiles(buffer, timeScale);
+
+        int kept = readRemovals(buffer, explosiveCount, explosiveX, explosiveY);
+        int dropped = readVarInt(buffer);
+        if (kept + dropped > explosiveX.length) {
+            explosiveX = Arrays.copyOf(explosiveX, (kept + dropped) * 2);
+            explosiveY = Arrays.copyOf(explosiveY, (kept + dropped) * 2);
+        }
+        for (int i = kept; i < kept + dropped; i++) {
+            explosiveX[i] = readSigned(buffer);
+            explosiveY[i] = readSigned(buffer);
+        }
+        explosiveCount = kept + dropped;
+    }
+
+    private void readSlicers(ByteBuffer buffer, int timeScale) {
+        slicerCount = readRemovals(buffer, slicerCount, slicerSerials, slicerTypes, slicerLanes, slicerProgress);
+
+        int corrections = readVarInt(buffer);
+        int next = corrections > 0 ? readVarInt(buffer) : -1;
+        SlicerCatalog catalog = SlicerCatalog.getDefault();
+        for (int i = 0; i < slicerCount; i++) {
+            slicerProgress[i] += predictedStep(catalog.get(slicerTypes[i]), timeScale);
+            if (i == next) {
+                slicerProgress[i] += readSigned(buffer);
+                next = --corrections > 0 ? i + 1 + readVarInt(buffer) : -1;
+            }
+        }
+
+        int spawned = readVarInt(buffer);
+        int total = slicerCount + spawned;
+        if (total > slicerSerials.length) {
+            slicerSerials = Arrays.copyOf(slicerSerials, total * 2);
+            slicerTypes = Arrays.copyOf(slicerTypes, total * 2);
+            slicerLanes = Arrays.copyOf(slicerLanes, total * 2);
+            slicerProgress = Arrays.copyOf(slicerProgress, total * 2);
+        }
+        for (int i = slicerCount; i < total; i++) {
+            lastSerial += readSignedLong(buffer);
+            slicerSerials[i] = lastSerial;
+            slicerTypes[i] = readVarInt(buffer);
+            slicerLanes[i] = readVarInt(buffer);
+            slicerProgress[i] = readVarInt(buffer);
+        }
+        slicerCount = total;
+    }
+
+    private void readTowers(ByteBuffer buffer) {
+        int placed = readVarInt(buffer);
+        int total = towerCount + placed;
+        if (total > towerTypes.length) {
+            towerTypes = Arrays.copyOf(towerTypes, total * 2);
+            towerX = Arrays.copyOf(towerX, total * 2);
+            towerY = Arrays.copyOf(towerY, total * 2);
+            towerAngles = Arrays.copyOf(towerAngles, total * 2);
+        }
+        for (int i = towerCount; i < total; i++) {
+            towerTypes[i] = readVarInt(buffer);
+            towerX[i] = readSigned(buffer);
+            towerY[i] = readSigned(buffer);
+            towerAngles[i] = 0;
+        }
+        towerCount = total;
+        int turned = readVarInt(buffer);
+        for (int i = 0, index = -1; i < turned; i++) {
+            index += 1 + readVarInt(buffer);
+            towerAngles[index] = buffer.get() & 0xFF;
+        }
+
+        airSupportCount = readVarInt(buffer);
+        if (airSupportCount > airSupportTypes.length) {
+            airSupportTypes = new int[airSupportCount * 2];
+            airSupportX = new int[airSupportCount * 2];
+            airSupportY = new int[airSupportCount * 2];
+            airSupportAngles = new int[airSupportCount * 2];
+        }
+        for (int i = 0; i < airSupportCount; i++) {
+            airSupportTypes[i] = readVarInt(buffer);
+            airSupportX[i] = readSigned(buffer);
+            airSupportY[i] = readSigned(buffer);
+            airSupportAngles[i] = buffer.get() & 0xFF;
+        }
+    }
+
+    private void readProjectiles(ByteBuffer buffer, int timeScale) {
+        // Chase each target as it is now, as a homing projectile would
+        Map<Long, Integer> slicerIndex = new HashMap<>(slicerCount * 2);
+        for (int i = 0; i < slicerCount; i++) {
+            slicerIndex.put(slicerSerials[i], i);
+        }
+        double step = Projectile.getSpeed() * timeScale;
+        for (int i = 0; i < projectileCount; i++) {
+            Integer target = slicerIndex.get(projectileTargets[i]);
+            if (target != null) {
+                Point position = getSlicerPosition(target);
+                double dx = position.x - projectileX[i];
+                double dy = position.y - projectileY[i];
+                double distance = Math.sqrt(dx * dx + dy * dy);
+                double fraction = distance > step ? step / distance : 1;
+                projectileX[i] += dx * fraction;
+                projectileY[i] += dy * fraction;
+            }
+        }
+
+        int kept = readRemovals(buffer, projectileCount, projectileTypes, projectileX, projectileY, projectileTargets);
+        int fired = readVarInt(buffer);
+        int total = kept + fired;
+        if (total > projectileTypes.length) {
+            projectileTypes = Arrays.copyOf(projectileTypes, total * 2);
+            projectileX = Arrays.copyOf(projectileX, total * 2);
+            projectileY = Arrays.copyOf(projectileY, total * 2);
+            projectileTargets = Arrays.copyOf(projectileTargets, total * 2);
+        }
+        for (int i = kept; i < total; i++) {
+            projectileTypes[i] = readVarInt(buffer);
+            projectileX[i] = readSigned(buffer);
+            projectileY[i] = readSigned(buffer);
+            projectileTargets[i] = lastSerial + readSignedLong(buffer);
+        }
+        projectileCount = total;
+    }
+
+    /**
+     * Reads a list of removed indices and removes them from parallel columns, keeping the rest in order.
+     * @param count number of entries in the columns.
+     * @param columns arrays of the same length (int[], long[] or double[]).
+     * @return number of entries left.
+     */
+    private static int readRemovals(ByteBuffer buffer, int count, Object... columns) {
+        int removed = readVarInt(buffer);
+        if (removed == 0) {
+            return count;
+        }
+        int kept = 0;
+        int nextRemoved = readVarInt(buffer);
+        for (int i = 0; i < count; i++) {
+            if (i == nextRemoved) {
+                nextRemoved = --removed > 0 ? i + 1 + readVarInt(buffer) : -1;
+                continue;
+            }
+            if (kept != i) {
+                for (Object column : columns) {
+                    System.arraycopy(column, i, column, kept, 1);
+                }
+            }
+            kept++;
+        }
+        return kept;
+    }
+
+    /**
+     * How far a slicer moves along its lane in one frame, in progress steps. The writer and reader must work this out
+     * identically.
+     * @param type type of the slicer.
+     * @param timeScale ticks in the frame.
+     * @return progress steps.
+     */
+    public static int predictedStep(SlicerType type, int timeScale) {
+        return (int) Math.round(type.getMovementSpeed() * timeScale * QUANTUM);
+    }
+
+    /**
+     * Works out where a slicer is, from its progress along its lane.
+     * @param i index of the slicer.
+     * @return position on the lane.
+     */
+    public Point getSlicerPosition(int i) {
+        List<Point> lane = getLane(i);
+        double[] arcLengths = levelArcLengths.get(getLevelIndex()).get(slicerLanes[i]);
+        double progress = (double) slicerProgress[i] / QUANTUM;
+        int segment = getSegment(arcLengths, progress);
+        Point from = lane.get(segment - 1);
+        Point to = lane.get(segment);
+        double length = arcLengths[segment] - arcLengths[segment - 1];
+        double fraction = length > 0 ? Math.min(1, Math.max(0, (progress - arcLengths[segment - 1]) / length)) : 0;
+        return new Point(from.x + (to.x - from.x) * fraction, from.y + (to.y - from.y) * fraction);
+    }
+
+    /**
+     * @param i index of the slicer.
+     * @return angle of the lane where the slicer is, in radians.
+     */
+    public double getSlicerRotation(int i) {
+        List<Point> lane = getLane(i);
+        double[] arcLengths = levelArcLengths.get(getLevelIndex()).get(slicerLanes[i]);
+        int segment = getSegment(arcLengths, (double) slicerProgress[i] / QUANTUM);
+        return Math.atan2(lane.get(segment).y - lane.get(segment - 1).y, lane.get(segment).x - lane.get(segment - 1).x);
+    }
+
+    private List<Point> getLane(int i) {
+        return levelLanes.get(getLevelIndex()).get(slicerLanes[i]);
+    }
+
+    /**
+     * @return index of the first point after the given progress, at least 1.
+     */
+    private static int getSegment(double[] arcLengths, double progress) {
+        int segment = Arrays.binarySearch(arcLengths, progress);
+        segment = segment < 0 ? -segment - 1 : segment;
+        return Math.max(1, Math.min(arcLengths.length - 1, segment));
+    }
+
+    private int getLevelIndex() {
+        return Math.max(0, Math.min(levels.size() - 1, player[LEVEL] - 1));
+    }
+
+    /**
+     * Converts an angle to the 1/256 turns the stream stores.
+     * @param radians angle in radians.
+     * @return angle byte, from 0 to 255.
+     */
+    public static int toAngle(double radians) {
+        return (int) Math.round(radians * 256 / (2 * Math.PI)) & 0xFF;
+    }
+
+    /**
+     * Converts an angle byte back to radians.
+     * @param angle angle byte.
+     * @return angle in radians.
+     */
+    public static double toRadians(int angle) {
+        return angle * 2 * Math.PI / 256;
+    }
+
+    private static int readVarInt(DataInputStream in) throws IOException {
+        int value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int readVarInt(ByteBuffer buffer) {
+        return (int) readVarLong(buffer);
+    }
+
+    private static long readVarLong(ByteBuffer buffer) {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = buffer.get() & 0xFF;
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    private static int readSigned(ByteBuffer buffer) {
+        return (int) readSignedLong(buffer);
+    }
+
+    private static long readSignedLong(ByteBuffer buffer) {
+        long value = readVarLong(buffer);
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    public List<LevelDefinition> getLevels() {
+        return levels;
+    }
+
+    public int getFrame() {
+        return frame;
+    }
+
+    /**
+     * @param value one of the player value constants, e.g. {@code GOLD}.
+     * @return the value.
+     */
+    public int getPlayerValue(int value) {
+        return player[value];
+    }
+
+    public int getSlicerCount() {
+        return slicerCount;
+    }
+
+    public long getSlicerSerial(int i) {
+        return slicerSerials[i];
+    }
+
+    public int getSlicerType(int i) {
+        return slicerTypes[i];
+    }
+
+    public int getTowerCount() {
+        return towerCount;
+    }
+
+    public int getTowerType(int i) {
+        return towerTypes[i];
+    }
+
+    public int getTowerX(int i) {
+        return towerX[i];
+    }
+
+    public int getTowerY(int i) {
+        return towerY[i];
+    }
+
+    public int getTowerAngle(int i) {
+        return towerAngles[i];
+    }
+
+    public int getAirSupportCount() {
+        return airSupportCount;
+    }
+
+    public int getAirSupportType(int i) {
+        return airSupportTypes[i];
+    }
+
+    public int getAirSupportX(int i) {
+        return airSupportX[i];
+    }
+
+    public int getAirSupportY(int i) {
+        return airSupportY[i];
+    }
+
+    public int getAirSupportAngle(int i) {
+        return airSupportAngles[i];
+    }
+
+    public int getProjectileCount() {
+        return projectileCount;
+    }
+
+    public int getProjectileType(int i) {
+        return projectileTypes[i];
+    }
+
+    public double getProjectileX(int i) {
+        return projectileX[i];
+    }
+
+    public double getProjectileY(int i) {
+        return projectileY[i];
+    }
+
+    public int getExplosiveCount() {
+        return explosiveCount;
+    }
+
+    public int getExplosiveX(int i) {
+        return explosiveX[i];
+    }
+
+    public int getExplosiveY(int i) {
+        return explosiveY[i];
+    }
+}
@@ -0,0 +1,144 @@
+import bagel.AbstractGame;
+import bagel.Font;
+import bagel.Input;
+import bagel.Keys;
+import bagel.Window;
+import bagel.map.TiledMap;
+import bagel.util.Point;
+
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Watches a game streamed by a {@link StateStreamWriter}, from a file or live from a {@link BatchJob} over TCP.
+ * Records are read on their own thread and applied one per window refresh, so a stream plays back at 60 frames a
+ * second; a live stream that falls behind skips ahead to catch up. The viewer can't play, only watch.
+ * <p>
+ * Usage: {@code java StateStreamViewer <stream file | tcp:port>}.
+ */
+public class StateStreamViewer extends AbstractGame {
+    // Records read ahead before the reader thread waits
+    private static final int QUEUE_CAPACITY = 1024;
+    // Records waiting before playback skips ahead
+    private static final int MAX_LAG = 60;
+
+    private final StateStream stream;
+    private final SpscQueue<byte[]> records = new SpscQueue<>(QUEUE_CAPACITY);
+    private final List<TiledMap> levelMaps = new ArrayList<>();
+    private final Font font = AssetCache.getDefault().getFont(BuyPanel.FONT, 18);
+    private volatile boolean ended = false;
+    private boolean paused = false;
+
+    /**
+     * Runs the viewer from the command line.
+     * @param args file path of the stream, or {@code tcp:<port>} to connect to a game streaming on this machine.
+     * @throws IOException if the stream could not be opened.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: StateStreamViewer <stream file | tcp:port>");
+            System.exit(2);
+        }
+        InputStream in;
+        if (args[0].startsWith("tcp:")) {
+            in = new Socket(InetAddress.getLoopbackAddress(), Integer.parseInt(args[0].substring(4))).getInputStream();
+        } else {
+            in = new FileInputStream(args[0]);
+        }
+        new StateStreamViewer(new StateStream(in)).run();
+    }
+
+    /**
+     * Sets up the viewer and starts reading records.
+     * @param stream stream to watch, with its header already read.
+     */
+    public StateStreamViewer(StateStream stream) {
+        this.stream = stream;
+        for (LevelDefinition level : stream.getLevels()) {
+            levelMaps.add(new TiledMap(level.getMapFile()));
+        }
+        Thread reader = new Thread(this::readRecords, "state-stream-reader");
+        reader.setDaemon(true);
+        reader.start();
+    }
+
+    /**
+     * Reads records into the queue until the stream ends.
+     */
+    private void readRecords() {
+        try {
+            byte[] record;
+            while ((record = stream.readRecord()) != null) {
+                while (!records.offer(record)) {
+                    Thread.sleep(1);
+                }
+            }
+        } catch (IOException e) {
+            System.out.println("State stream could not be read");
+            e.printStackTrace();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        ended = true;
+    }
+
+    /**
+     * Applies the next record and draws the game as it then stands. Space pauses and resumes playback.
+     * @param input The input instance which provides access to keyboard/mouse state information.
+     */
+    @Override
+    protected void update(Input input) {
+        if (input.wasReleased(Keys.SPACE)) {
+            paused = !paused;
+        }
+        if (!paused) {
+            byte[] record = records.poll();
+            for (int skipped = 0; record != null; skipped++) {
+                stream.apply(record);
+                // Only a live stream gets this far behind
+                record = skipped < MAX_LAG && records.size() > MAX_LAG ? records.poll() : null;
+            }
+        }
+        if (stream.getPlayerValue(StateStream.LEVEL) == 0) {
+            return;
+        }
+
+        int level = Math.min(levelMaps.size(), stream.getPlayerValue(StateStream.LEVEL)) - 1;
+        levelMaps.get(level).draw(0, 0, 0, 0, Window.getWidth(), Window.getHeight());
+        SlicerCatalog slicers = SlicerCatalog.getDefault();
+        for (int i = 0; i < stream.getSlicerCount(); i++) {
+            Point position = stream.getSlicerPosition(i);
+            slicers.get(stream.getSlicerType(i)).getImage().draw(position.x, position.y, stream.getSlicerRotation(i));
+        }
+        TowerCatalog towers = TowerCatalog.getDefault();
+        for (int i = 0; i < stream.getTowerCount(); i++) {
+            towers.get(stream.getTowerType(i)).getImage().draw(stream.getTowerX(i), stream.getTowerY(i),
+                    StateStream.toRadians(stream.getTowerAngle(i)));
+        }
+        for (int i = 0; i < stream.getAirSupportCount(); i++) {
+            towers.get(stream.getAirSupportType(i)).getImage().draw(stream.getAirSupportX(i), stream.getAirSupportY(i),
+                    StateStream.toRadians(stream.getAirSupportAngle(i)));
+        }
+        for (int i = 0; i < stream.getProjectileCount(); i++) {
+            Sprite image = towers.get(stream.getProjectileType(i)).getProjectileImage();
+            if (image != null) {
+                image.draw(stream.getProjectileX(i), stream.getProjectileY(i));
+            }
+        }
+        for (int i = 0; i < stream.getExplosiveCount(); i++) {
+            Explosive.getImage().draw(stream.getExplosiveX(i), stream.getExplosiveY(i));
+        }
+
+        String status = String.format("Frame %d  Level %d  Wave %d  Gold %d  Lives %d  Timescale %d%s",
+                stream.getFrame(), stream.getPlayerValue(StateStream.LEVEL), stream.getPlayerValue(StateStream.WAVE),
+                stream.getPlayerValue(StateStream.GOLD), stream.getPlayerValue(StateStream.HEALTH),
+                stream.getPlayerValue(StateStream.TIMESCALE),
+                paused ? "  (paused)" : ended && records.size() == 0 ? "  (ended)" : "");
+        font.drawString(status, 8, 20);
+    }
+}
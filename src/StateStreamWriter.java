@@ -0,0 +1,406 @@
+import bagel.util.Point;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Predicate;
+
+/**
+ * Streams a game's state to spectators and external viewers as it is played, one record per frame.
+ * Only changes are sent: slicers are sent once when they spawn, then only when they move differently from their
+ * type's speed (at corners, or when the timescale changes), and towers, projectiles and explosives only when they
+ * appear, turn or go. A keyframe holding the whole state is sent every {@code KEYFRAME_INTERVAL} frames and at the
+ * start of each level, so a viewer can join a stream part way through.
+ * <p>
+ * Records are buffered. A live stream, e.g. to a socket, is flushed after every frame so the viewer sees each frame as
+ * it is played; a stream to a file is only flushed at keyframes.
+ * @see StateStream for the stream format.
+ */
+public class StateStreamWriter {
+    private static final int KEYFRAME_INTERVAL = 600;
+
+    private final DataOutputStream out;
+    private final boolean live;
+    private final Map<Sprite, Integer> projectileTowerIds = new IdentityHashMap<>();
+
+    private byte[] payload = new byte[4096];
+    private int length = 0;
+    private int lastFrame = 0;
+    private int lastKeyframe = Integer.MIN_VALUE;
+
+    // State as last sent, which the viewer also holds
+    private final int[] player = new int[StateStream.PLAYER_VALUES];
+    private int slicerCount = 0;
+    private long[] slicerSerials = new long[64];
+    private int[] slicerTypes = new int[64];
+    private int[] slicerProgress = new int[64];
+    private long lastSerial = 0;
+    private int towerCount = 0;
+    private int[] towerAngles = new int[16];
+    private final List<Projectile> projectiles = new ArrayList<>();
+    private final Map<Projectile, Long> projectileTargets = new IdentityHashMap<>();
+    private final List<Explosive> explosives = new ArrayList<>();
+
+    // Reused each frame
+    private final List<Slicer> liveSlicers = new ArrayList<>();
+    private final Map<Long, Integer> liveIndex = new HashMap<>();
+    private int[] liveLanes = new int[64];
+    private int[] liveProgress = new int[64];
+    private boolean[] liveSent = new boolean[64];
+    private final Map<Object, Boolean> present = new IdentityHashMap<>();
+    // Number of objects added to the list by the last writeChanges
+    private int added = 0;
+
+    /**
+     * Starts a stream, writing the header.
+     * @param stream stream to write to, e.g. a file or a socket.
+     * @param levels levels of the game, in order.
+     * @param live true to flush every frame, for a viewer watching as the game is played, false to flush only at
+     * keyframes.
+     * @throws IOException if the header could not be written.
+     */
+    public StateStreamWriter(OutputStream stream, List<LevelDefinition> levels, boolean live) throws IOException {
+        this.live = live;
+        out = new DataOutputStream(new BufferedOutputStream(stream));
+        out.writeInt(StateStream.MAGIC);
+        out.writeByte(StateStream.VERSION);
+        out.writeShort(levels.size());
+        for (LevelDefinition level : levels) {
+            out.writeUTF(level.getMapFile());
+            out.writeUTF(level.getWaveFile());
+        }
+        for (TowerType type : TowerCatalog.getDefault().getTypes()) {
+            if (type.getProjectileImage() != null) {
+                projectileTowerIds.put(type.getProjectileImage(), type.getId());
+            }
+        }
+    }
+
+    /**
+     * Sends the changes made by the frame just played. Call this after every {@link Simulation#update(List)}.
+     * @param simulation the game.
+     * @throws IOException if the stream could not be written.
+     */
+    public void frameComplete(Simulation simulation) throws IOException {
+        length = 0;
+        int frame = simulation.getFrame();
+        boolean keyframe = frame - lastKeyframe >= KEYFRAME_INTERVAL
+                || simulation.getLevelNumber() != player[StateStream.LEVEL];
+        if (keyframe) {
+            lastKeyframe = frame;
+            Arrays.fill(player, 0);
+            slicerCount = 0;
+            lastSerial = 0;
+            towerCount = 0;
+            projectiles.clear();
+            projectileTargets.clear();
+            explosives.clear();
+        }
+
+        writePlayer(simulation);
+        writeSlicers(simulation.getCurrentLevel(), simulation.getTimeScale());
+        writeTowers(simulation.getStationaryTowers(), simulation.getAirSupports());
+        writeProjectiles(simulation.getProjectileList());
+        writeChanges(explosives, simulation.getExplosiveList(), explosive -> false);
+        for (int i = explosives.size() - added; i < explosives.size(); i++) {
+            writeSigned((int) Math.round(explosives.get(i).getPosition().x));
+            writeSigned((int) Math.round(explosives.get(i).getPosition().y));
+        }
+
+        writeVarInt(out, frame - lastFrame);
+        out.writeByte(keyframe ? StateStream.KEYFRAME : StateStream.DELTA);
+        writeVarInt(out, length);
+        out.write(payload, 0, length);
+        lastFrame = frame;
+        if (live || keyframe) {
+            // Flushing at keyframes lets a viewer joining late start drawing straight away
+            out.flush();
+        }
+    }
+
+    /**
+     * Ends the stream and closes it.
+     * @throws IOException if the stream could not be written.
+     */
+    public void close() throws IOException {
+        writeVarInt(out, 0);
+        out.writeByte(StateStream.END);
+        out.close();
+    }
+
+    private void writePlayer(Simulation simulation) {
+        Player currentPlayer = simulation.getCurrentPlayer();
+        Level level = simulation.getCurrentLevel();
+        int flags = (level.waveInProgress() ? StateStream.WAVE_IN_PROGRESS : 0)
+                | (level.isAllWavesComplete() ? StateStream.ALL_WAVES_COMPLETE : 0)
+                | (simulation.isPlayerDead() ? StateStream.PLAYER_DEAD : 0);
+        int[] values = {simulation.getLevelNumber(), currentPlayer.getGold(), currentPlayer.getHealth(),
+                level.getCurrentWave(), simulation.getTimeScale(), flags};
+        int changed = 0;
+        for (int i = 0; i < StateStream.PLAYER_VALUES; i++) {
+            if (values[i] != player[i]) {
+                changed |= 1 << i;
+            }
+        }
+        writeByte(changed);
+        for (int i = 0; i < StateStream.PLAYER_VALUES; i++) {
+            if (values[i] != player[i]) {
+                writeSigned(values[i] - player[i]);
+                player[i] = values[i];
+            }
+        }
+    }
+
+    /**
+     * Sends slicers that have gone, corrections to slicers that moved other than predicted, and new slicers.
+     * Slicers are matched by serial number, as slicer objects are reused by the {@link SlicerPool}.
+     */
+    private void writeSlicers(Level level, int timeScale) {
+        liveSlicers.clear();
+        liveIndex.clear();
+        for (WaveEvent event : level.getCurrentWaveEvents()) {
+            if (event.isWaveEventComplete()) {
+                continue;
+            }
+            for (Slicer slicer : event.getSlicerList()) {
+                int i = liveSlicers.size();
+                if (i == liveLanes.length) {
+                    liveLanes = Arrays.copyOf(liveLanes, i * 2);
+                    liveProgress = Arrays.copyOf(liveProgress, i * 2);
+                    liveSent = Arrays.copyOf(liveSent, i * 2);
+                }
+                liveSlicers.add(slicer);
+                liveIndex.put(slicer.getSerial(), i);
+                liveLanes[i] = event.getLane();
+                liveProgress[i] = quantise(slicer, event.getPath(), event.getArcLengths());
+                liveSent[i] = false;
+            }
+        }
+
+        // Gone, keeping the rest in order
+        int removed = 0;
+        for (int i = 0; i < slicerCount; i++) {
+            if (!liveIndex.containsKey(slicerSerials[i])) {
+                removed++;
+            }
+        }
+        writeVarInt(removed);
+        int kept = 0;
+        for (int i = 0, last = -1; i < slicerCount; i++) {
+            if (!liveIndex.containsKey(slicerSerials[i])) {
+                writeVarInt(i - last - 1);
+                last = i;
+            } else {
+                slicerSerials[kept] = slicerSerials[i];
+                slicerTypes[kept] = slicerTypes[i];
+                slicerProgress[kept++] = slicerProgress[i];
+            }
+        }
+        slicerCount = kept;
+
+        // Moved, sending only the difference from where the viewer predicts they are
+        SlicerCatalog catalog = SlicerCatalog.getDefault();
+        int corrections = 0;
+        for (int i = 0; i < slicerCount; i++) {
+            int predicted = slicerProgress[i] + StateStream.predictedStep(catalog.get(slicerTypes[i]), timeScale);
+            if (liveProgress[liveIndex.get(slicerSerials[i])] != predicted) {
+                corrections++;
+            }
+        }
+        writeVarInt(corrections);
+        for (int i = 0, last = -1; i < slicerCount; i++) {
+            int live = liveIndex.get(slicerSerials[i]);
+            int predicted = slicerProgress[i] + StateStream.predictedStep(catalog.get(slicerTypes[i]), timeScale);
+            if (liveProgress[live] != predicted) {
+                writeVarInt(i - last - 1);
+                writeSigned(liveProgress[live] - predicted);
+                last = i;
+            }
+            slicerProgress[i] = liveProgress[live];
+            liveSent[live] = true;
+        }
+
+        // Spawned
+        int total = liveSlicers.size();
+        if (total > slicerSerials.length) {
+            slicerSerials = Arrays.copyOf(slicerSerials, total * 2);
+            slicerTypes = Arrays.copyOf(slicerTypes, total * 2);
+            slicerProgress = Arrays.copyOf(slicerProgress, total * 2);
+        }
+        writeVarInt(total - slicerCount);
+        for (int i = 0; i < total; i++) {
+            if (liveSent[i]) {
+                continue;
+            }
+            Slicer slicer = liveSlicers.get(i);
+            writeSignedLong(slicer.getSerial() - lastSerial);
+            writeVarInt(slicer.getType().getId());
+            writeVarInt(liveLanes[i]);
+            writeVarInt(liveProgress[i]);
+            lastSerial = slicer.getSerial();
+            slicerSerials[slicerCount] = slicer.getSerial();
+            slicerTypes[slicerCount] = slicer.getType().getId();
+            slicerProgress[slicerCount++] = liveProgress[i];
+        }
+    }
+
+    /**
+     * Works out how far a slicer is along its lane, measured back from its destination as in {@link WaveEvent}.
+     * @return progress in steps of 1/{@code QUANTUM} pixels.
+     */
+    private static int quantise(Slicer slicer, List<Point> path, double[] arcLengths) {
+        int dstNum = Math.min(slicer.getDstNum(), path.size() - 1);
+        double segment = arcLengths[dstNum] - arcLengths[dstNum - 1];
+        double back = Math.min(slicer.getPosition().distanceTo(path.get(dstNum)), segment);
+        return (int) Math.round((arcLengths[dstNum] - back) * StateStream.QUANTUM);
+    }
+
+    private void writeTowers(StationaryTowers towers, AirSupports airSupports) {
+        int size = towers.size();
+        if (size > towerAngles.length) {
+            towerAngles = Arrays.copyOf(towerAngles, size * 2);
+        }
+        writeVarInt(size - towerCount);
+        for (int i = towerCount; i < size; i++) {
+            writeVarInt(towers.getType(i).getId());
+            writeSigned((int) Math.round(towers.getPosition(i).x));
+            writeSigned((int) Math.round(towers.getPosition(i).y));
+            towerAngles[i] = 0;
+        }
+        towerCount = size;
+
+        int turned = 0;
+        for (int i = 0; i < size; i++) {
+            if (StateStream.toAngle(towers.getRotation(i)) != towerAngles[i]) {
+                turned++;
+            }
+        }
+        writeVarInt(turned);
+        for (int i = 0, last = -1; i < size; i++) {
+            int angle = StateStream.toAngle(towers.getRotation(i));
+            if (angle != towerAngles[i]) {
+                writeVarInt(i - last - 1);
+                writeByte(angle);
+                towerAngles[i] = angle;
+                last = i;
+            }
+        }
+
+        // Planes move every frame, so they are always sent in full
+        writeVarInt(airSupports.size());
+        for (int i = 0; i < airSupports.size(); i++) {
+            writeVarInt(airSupports.getType(i).getId());
+            writeSigned((int) Math.round(airSupports.getX(i)));
+            writeSigned((int) Math.round(airSupports.getY(i)));
+            writeByte(StateStream.toAngle(airSupports.getRotation(i)));
+        }
+    }
+
+    /**
+     * Sends projectiles that have hit and been fired. A retargeted projectile is sent as hitting, then fired again from
+     * where it is, at its new target.
+     */
+    private void writeProjectiles(List<Projectile> current) {
+        writeChanges(projectiles, current,
+                projectile -> projectileTargets.get(projectile) != projectile.getTarget().getSerial());
+        for (int i = projectiles.size() - added; i < projectiles.size(); i++) {
+            Projectile projectile = projectiles.get(i);
+            writeVarInt(projectileTowerIds.getOrDefault(projectile.getImage(), 0));
+            writeSigned((int) Math.round(projectile.getPosition().x));
+            writeSigned((int) Math.round(projectile.getPosition().y));
+            writeSignedLong(projectile.getTarget().getSerial() - lastSerial);
+            projectileTargets.put(projectile, projectile.getTarget().getSerial());
+        }
+        if (projectileTargets.size() > projectiles.size() * 2) {
+            // Forget projectiles that have hit
+            projectileTargets.keySet().retainAll(projectiles);
+        }
+    }
+
+    /**
+     * Sends which objects have gone from a list since it was last sent, comparing by identity, then the number added.
+     * The list sent is brought up to date, with objects added at the end; the caller then sends the added objects.
+     * @param sent list as last sent.
+     * @param current list as it is now.
+     * @param changed picks objects that have changed since they were sent, which are sent as gone and added again.
+     */
+    private <T> void writeChanges(List<T> sent, List<T> current, Predicate<T> changed) {
+        present.clear();
+        for (T object : current) {
+            present.put(object, Boolean.TRUE);
+        }
+        for (T object : sent) {
+            if (present.containsKey(object) && changed.test(object)) {
+                present.remove(object);
+            }
+        }
+        int removed = 0;
+        for (T object : sent) {
+            if (!present.containsKey(object)) {
+                removed++;
+            }
+        }
+        writeVarInt(removed);
+        int kept = 0;
+        for (int i = 0, last = -1; i < sent.size(); i++) {
+            T object = sent.get(i);
+            if (!present.containsKey(object)) {
+                writeVarInt(i - last - 1);
+                last = i;
+            } else {
+                sent.set(kept++, object);
+            }
+        }
+        sent.subList(kept, sent.size()).clear();
+
+        present.clear();
+        for (T object : sent) {
+            present.put(object, Boolean.TRUE);
+        }
+        for (T object : current) {
+            if (!present.containsKey(object)) {
+                sent.add(object);
+            }
+        }
+        added = sent.size() - kept;
+        writeVarInt(added);
+    }
+
+    private void writeByte(int value) {
+        if (length == payload.length) {
+            payload = Arrays.copyOf(payload, length * 2);
+        }
+        payload[length++] = (byte) value;
+    }
+
+    private void writeVarInt(long value) {
+        while ((value & ~0x7FL) != 0) {
+            writeByte((int) (value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        writeByte((int) value);
+    }
+
+    private void writeSigned(int value) {
+        writeSignedLong(value);
+    }
+
+    private void writeSignedLong(long value) {
+        writeVarInt((value << 1) ^ (value >> 63));
+    }
+
+    private static void writeVarInt(DataOutputStream out, int value) throws IOException {
+        while ((value & ~0x7F) != 0) {
+            out.writeByte((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        out.writeByte(value);
+    }
+}
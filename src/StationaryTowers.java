@@ -0,0 +1,270 @@
+import bagel.util.Point;
+
+import java.util.Arrays;
+
+/**
+ * All stationary towers (e.g. tanks and super tanks) in a level, stored as parallel arrays indexed by tower.
+ * Every stationary tower behaves the same way, differing only in stats, so one loop handles them all without
+ * dispatching on the tower's class. Stats used every tick are copied out of the {@link TowerType} when a tower is
+ * placed. Stationary towers stand still and fire projectiles at the nearest slicer in range.
+ * As they never move, each tower's {@link PathCoverage} of the level's lanes is worked out the first time it aims,
+ * and then used to look only at slicers on the parts of the lanes it can reach.
+ * <p>
+ * A tower locks on to the slicer it finds, and keeps it while it is alive and in range, so range queries are only run
+ * when a tower has no target: every {@code scanInterval} ticks while it cools down, or when it is ready to fire. A
+ * ready tower with no target checks every tick, but only runs the query once the slicers' bounding box and its
+ * coverage show one could be in reach. A tower whose coverage reaches no lane skips all of this unless a slicer has
+ * drifted off its lane.
+ * A tower's rotation is only worked out when it is asked for (e.g. to draw it), from where its target is then.
+ */
+public class StationaryTowers {
+    private static final int INITIAL_CAPACITY = 16;
+    // Ticks between searches for a target while cooling down, by default
+    public static final int DEFAULT_SCAN_INTERVAL = 15;
+
+    private int scanInterval = DEFAULT_SCAN_INTERVAL;
+    private int size = 0;
+    private TowerType[] types = new TowerType[INITIAL_CAPACITY];
+    private Point[] positions = new Point[INITIAL_CAPACITY];
+    private int[] radius = new int[INITIAL_CAPACITY];
+    private int[] projectileCooldown = new int[INITIAL_CAPACITY];
+    private double[] currentCooldown = new double[INITIAL_CAPACITY];
+    private double[] faceX = new double[INITIAL_CAPACITY];
+    private double[] faceY = new double[INITIAL_CAPACITY];
+    private Slicer[] targets = new Slicer[INITIAL_CAPACITY];
+    private int[] targetGenerations = new int[INITIAL_CAPACITY];
+    private int[] ticksToScan = new int[INITIAL_CAPACITY];
+    private PathCoverage[] coverage = new PathCoverage[INITIAL_CAPACITY];
+    private Level[] coverageLevel = new Level[INITIAL_CAPACITY];
+
+    /**
+     * Places a new stationary tower, ready to fire and facing right.
+     * @param type type of tower, which must have {@link TowerType.Behaviour#STATIONARY} behaviour.
+     * @param position place to put the tower.
+     * @return index of the new tower.
+     */
+    public int add(TowerType type, Point position) {
+        if (type.getBehaviour() != TowerType.Behaviour.STATIONARY) {
+            throw new IllegalArgumentException(type.getName() + " is not a stationary tower");
+        }
+        if (size == types.length) {
+            int capacity = size * 2;
+            types = Arrays.copyOf(types, capacity);
+            positions = Arrays.copyOf(positions, capacity);
+            radius = Arrays.copyOf(radius, capacity);
+            projectileCooldown = Arrays.copyOf(projectileCooldown, capacity);
+            currentCooldown = Arrays.copyOf(currentCooldown, capacity);
+            faceX = Arrays.copyOf(faceX, capacity);
+            faceY = Arrays.copyOf(faceY, capacity);
+            targets = Arrays.copyOf(targets, capacity);
+            targetGenerations = Arrays.copyOf(targetGenerations, capacity);
+            ticksToScan = Arrays.copyOf(ticksToScan, capacity);
+            coverage = Arrays.copyOf(coverage, capacity);
+            coverageLevel = Arrays.copyOf(coverageLevel, capacity);
+        }
+        types[size] = type;
+        positions[size] = position;
+        radius[size] = type.getRadius();
+        projectileCooldown[size] = type.getCooldown();
+        currentCooldown[size] = 0;
+        faceX[size] = 1;
+        faceY[size] = 0;
+        targets[size] = null;
+        ticksToScan[size] = 0;
+        coverage[size] = null;
+        coverageLevel[size] = null;
+        return size++;
+    }
+
+    /**
+     * Ticks one tower's cooldown down, and fires at its locked target if the cooldown has reached zero. A tower with
+     * no target (or only a doomed one when ready to fire) looks for the nearest slicer in range, but while cooling down
+     * only every {@code scanInterval} ticks, and when ready only if a slicer could be in reach. Only changes this
+     * tower, so towers can be aimed in parallel.
+     * This should be called every frame for every tower.
+     * @param i index of the tower.
+     * @param level level object containing slicers.
+     * @return slicer to fire a projectile at (see {@link StationaryTowers#fire(int, Slicer)}), or {@code null} if the
+     * tower does not fire this frame.
+     */
+    public Slicer aim(int i, Level level) {
+        currentCooldown[i]--;
+        boolean ready = currentCooldown[i] <= 0;
+        if (!ready && --ticksToScan[i] > 0) {
+            return null;
+        }
+        PathCoverage reach = getCoverage(i, level);
+        if (reach.isEmpty() && !level.hasDriftedSlicers()) {
+            // The tower reaches no lane, so only a slicer that has drifted off one could be in range
+            lockOn(i, null);
+            if (!ready) {
+                ticksToScan[i] = scanInterval;
+            }
+            return null;
+        }
+        Slicer target = getTarget(i);
+        if (target == null || ready && target.isDoomed()) {
+            target = !ready || level.mayHaveSlicerInRange(positions[i], radius[i], reach)
+                    ? level.getNearestSlicerInRange(positions[i], radius[i], reach) : null;
+        }
+        lockOn(i, target);
+        if (!ready) {
+            ticksToScan[i] = scanInterval;
+            return null;
+        }
+        if (target != null) {
+            currentCooldown[i] = projectileCooldown[i];
+        }
+        return target;
+    }
+
+    /**
+     * Picks a new target for a tower whose chosen target was doomed by another tower firing earlier in the same tick.
+     * If there is no other target, the shot is cancelled and the tower stays ready to fire.
+     * @param i index of the tower.
+     * @param level level object containing slicers.
+     * @return new slicer to fire at, or {@code null} if there is none.
+     */
+    public Slicer retarget(int i, Level level) {
+        Slicer target = level.getNearestSlicerInRange(positions[i], radius[i], getCoverage(i, level));
+        lockOn(i, target);
+        if (target == null) {
+            currentCooldown[i] = 0;
+        }
+        return target;
+    }
+
+    /**
+     * Gets a tower's locked target, if it is still alive and in range.
+     * @param i index of the tower.
+     * @return the target, or {@code null} if the tower has none.
+     */
+    public Slicer getTarget(int i) {
+        Slicer target = targets[i];
+        if (target == null || target.getGeneration() != targetGenerations[i] || target.getHealth() <= 0
+                || target.getPosition().distanceTo(positions[i]) >= radius[i]) {
+            return null;
+        }
+        return target;
+    }
+
+    /**
+     * Locks a tower on to a slicer, turning it to face the slicer, or unlocks it. An unlocked tower keeps facing the
+     * way it last faced.
+     * @param i index of the tower.
+     * @param target slicer to lock on to, or {@code null} to unlock.
+     */
+    public void lockOn(int i, Slicer target) {
+        targets[i] = target;
+        if (target != null) {
+            targetGenerations[i] = target.getGeneration();
+            setFacing(i, target.getPosition());
+        }
+    }
+
+    /**
+     * Turns a tower to face a point. Tower images point up, so the tower faces perpendicular to the direction.
+     */
+    private void setFacing(int i, Point point) {
+        faceX[i] = -(point.y - positions[i].y);
+        faceY[i] = point.x - positions[i].x;
+    }
+
+    /**
+     * Gets a tower's coverage of a level's lanes, working it out if the tower hasn't aimed in the level before.
+     * Only changes this tower, so towers can be aimed in parallel.
+     * @param i index of the tower.
+     * @param level level the tower is in.
+     * @return the tower's coverage.
+     */
+    private PathCoverage getCoverage(int i, Level level) {
+        if (coverageLevel[i] != level) {
+            coverage[i] = level.getCoverage(positions[i], radius[i]);
+            coverageLevel[i] = level;
+        }
+        return coverage[i];
+    }
+
+    /**
+     * Creates a projectile from a tower targeting specified slicer, dealing the tower's damage upon reaching it.
+     * @param i index of the tower.
+     * @param target slicer to target.
+     * @return {@link Projectile} with specified target and damage.
+     */
+    public Projectile fire(int i, Slicer target) {
+        return new Projectile(types[i].getProjectileImage(), positions[i], target, types[i].getDamage());
+    }
+
+    public int size() {
+        return size;
+    }
+
+    public TowerType getType(int i) {
+        return types[i];
+    }
+
+    public Point getPosition(int i) {
+        return positions[i];
+    }
+
+    public double getCurrentCooldown(int i) {
+        return currentCooldown[i];
+    }
+
+    public void setCurrentCooldown(int i, double currentCooldown) {
+        this.currentCooldown[i] = currentCooldown;
+    }
+
+    /**
+     * Works out which way a tower faces: towards its target if it has one, or else as it last faced.
+     * @param i index of the tower.
+     * @return angle the tower is facing, in radians, as used to draw it.
+     */
+    public double getRotation(int i) {
+        Slicer target = getTarget(i);
+        if (target == null) {
+            return Math.atan2(faceY[i], faceX[i]);
+        }
+        return Math.atan2(target.getPosition().x - positions[i].x, -(target.getPosition().y - positions[i].y));
+    }
+
+    public double getFaceX(int i) {
+        return faceX[i];
+    }
+
+    public double getFaceY(int i) {
+        return faceY[i];
+    }
+
+    public int getTicksToScan(int i) {
+        return ticksToScan[i];
+    }
+
+    public void setTicksToScan(int i, int ticksToScan) {
+        this.ticksToScan[i] = ticksToScan;
+    }
+
+    /**
+     * Changes how often towers with no target look for one while cooling down. Changes the game, so should only be
+     * set before it starts.
+     * @param scanInterval ticks between searches, at least 1.
+     */
+    public void setScanInterval(int scanInterval) {
+        this.scanInterval = scanInterval;
+    }
+
+    public int getScanInterval() {
+        return scanInterval;
+    }
+
+    /**
+     * Turns a tower to face a direction, e.g. when loading a {@link GameSnapshot}.
+     * @param i index of the tower.
+     * @param x x component of the direction.
+     * @param y y component of the direction.
+     */
+    public void setFacing(int i, double x, double y) {
+        faceX[i] = x;
+        faceY[i] = y;
+    }
+}
@@ -8,27 +8,22 @@ import bagel.util.Point;
 /**
  * This class implements and controls the status panel at the bottom of the screen.
  * The buy panel displays the current wave number, timescale, status and player health.
- * This class should be initialised at the start of the game and {@link StatusPanel#render(boolean, int)} called every frame.
+ * This class should be initialised at the start of the game and {@link StatusPanel#render(boolean, RenderSnapshot)} called every frame.
  */
 public class StatusPanel {
-    private static final Font font = new Font("res/fonts/DejaVuSans-Bold.ttf", 18);
-    private static final Image statusPanel = new Image("res/images/statuspanel.png");
-    private static Point statusPanelPosition;
-    private static double statusTextHeight;
+    public static final String STATUS_PANEL_IMAGE = "res/images/statuspanel.png";
 
-    private final Player player;
-    private final Level level;
+    private final Font font = AssetCache.getDefault().getFont(BuyPanel.FONT, 18);
+    private final Image statusPanel = AssetCache.getDefault().getImage(STATUS_PANEL_IMAGE);
+    private final Point statusPanelPosition;
+    private final double statusTextHeight;
 
     /**
      * Initialises the status panel.
-     * @param player player object to get life value.
-     * @param level level object to get wave information from.
      */
-    public StatusPanel(Player player, Level level) {
+    public StatusPanel() {
         statusTextHeight = Window.getHeight() - statusPanel.getHeight()/2 + 5;
         statusPanelPosition = new Point(0, Window.getHeight() - statusPanel.getHeight());
-        this.player = player;
-        this.level = level;
     }
 
     /**
@@ -43,30 +38,31 @@ public class StatusPanel {
      * </ul>
      * Timescale is rendered in green if above 1, white otherwise.
      * @param currentlyBuying true if currently placing tower.
-     * @param timeScale current timescale.
+     * @param snapshot latest frame, to get wave information, timescale and life value from.
      */
-    public void render(boolean currentlyBuying, int timeScale) {
+    public void render(boolean currentlyBuying, RenderSnapshot snapshot) {
 
         String statusString;
-        if (level.isAllWavesComplete()) {
+        if (snapshot.isAllWavesComplete()) {
             statusString = "Winner!";
         } else if (currentlyBuying) {
             statusString = "Placing";
-        } else if (level.waveInProgress()) {
+        } else if (snapshot.isWaveInProgress()) {
             statusString = "Wave in Progress";
         } else {
             statusString = "Awaiting Start";
         }
 
         DrawOptions opt = new DrawOptions();
+        int timeScale = snapshot.getTimeScale();
         if (timeScale > 1) {
             opt.setBlendColour(Colour.GREEN);
         } else {
             opt.setBlendColour(Colour.WHITE);
         }
 
-        int waveCounter = level.getCurrentWave();
-        if (!level.waveInProgress()) {
+        int waveCounter = snapshot.getCurrentWave();
+        if (!snapshot.isWaveInProgress()) {
             waveCounter++;
         }
 
@@ -74,7 +70,7 @@ public class StatusPanel {
         font.drawString("Wave: " + waveCounter, 5, statusTextHeight);
         font.drawString(String.format("Time scale: %.2f", (double) timeScale), Window.getWidth()/4., statusTextHeight, opt);
         font.drawString("Status: " + statusString, Window.getWidth()/2., statusTextHeight);
-        font.drawString("Lives: " + player.getHealth(), Window.getWidth()-100, statusTextHeight);
+        font.drawString("Lives: " + snapshot.getHealth(), Window.getWidth()-100, statusTextHeight);
     }
 
     public Image getStatusPanel() {
@@ -0,0 +1,122 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * Lookup table from image files to the rectangles they were packed into by {@link AtlasPacker}.
+ * Each line of the table describes one packed image: {@code image,atlas image,x,y,width,height}, e.g.
+ * {@code res/images/tank.png,res/images/atlas/atlas0.png,2,2,64,64}, with pixel co-ordinates of the image's top left
+ * corner in the atlas. Lines starting with {@code #} are ignored.
+ * The game's table is loaded once from {@code res/data/atlas.txt}. If that file doesn't exist, or the system property
+ * {@code shadowdefend.atlas} is {@code false}, the table is empty and every sprite is drawn from its own image.
+ */
+public class TextureAtlas {
+    private static final String DEFAULT_FILE = "res/data/atlas.txt";
+    private static final String ENABLED_PROPERTY = "shadowdefend.atlas";
+
+    private static TextureAtlas defaultAtlas;
+
+    private final Map<String, Region> regions = new HashMap<>();
+
+    /**
+     * Where one image was packed.
+     */
+    public static class Region {
+        private final String atlasFile;
+        private final int x;
+        private final int y;
+        private final int width;
+        private final int height;
+
+        /**
+         * Creates a new region.
+         * @param atlasFile file path of the atlas image.
+         * @param x x co-ordinate of the image's left edge in the atlas.
+         * @param y y co-ordinate of the image's top edge in the atlas.
+         * @param width width of the image.
+         * @param height height of the image.
+         */
+        public Region(String atlasFile, int x, int y, int width, int height) {
+            this.atlasFile = atlasFile;
+            this.x = x;
+            this.y = y;
+            this.width = width;
+            this.height = height;
+        }
+
+        public String getAtlasFile() {
+            return atlasFile;
+        }
+
+        public int getX() {
+            return x;
+        }
+
+        public int getY() {
+            return y;
+        }
+
+        public int getWidth() {
+            return width;
+        }
+
+        public int getHeight() {
+            return height;
+        }
+    }
+
+    /**
+     * Creates an empty table, so every image is drawn on its own.
+     */
+    public TextureAtlas() {
+    }
+
+    /**
+     * Reads a lookup table written by {@link AtlasPacker}.
+     * @param fileDir file path to the table.
+     */
+    public TextureAtlas(String fileDir) {
+        try (Scanner reader = new Scanner(new File(fileDir))) {
+            while (reader.hasNextLine()) {
+                String line = reader.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                if (fields.length != 6) {
+                    throw new IllegalArgumentException("Expected image,atlas,x,y,width,height: " + line);
+                }
+                regions.put(fields[0], new Region(fields[1], Integer.parseInt(fields[2]), Integer.parseInt(fields[3]),
+                        Integer.parseInt(fields[4]), Integer.parseInt(fields[5])));
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Could not read texture atlas " + fileDir, e);
+        }
+    }
+
+    /**
+     * Gets the game's atlas table, loading it on first use.
+     * @return table read from {@code res/data/atlas.txt}, or an empty table if there is none or atlases are disabled.
+     */
+    public static synchronized TextureAtlas getDefault() {
+        if (defaultAtlas == null) {
+            boolean enabled = !"false".equals(System.getProperty(ENABLED_PROPERTY));
+            defaultAtlas = enabled && new File(DEFAULT_FILE).exists() ? new TextureAtlas(DEFAULT_FILE) : new TextureAtlas();
+        }
+        return defaultAtlas;
+    }
+
+    /**
+     * @param fileDir file path of an image.
+     * @return where the image was packed, or {@code null} if it is not in an atlas.
+     */
+    public Region get(String fileDir) {
+        return regions.get(fileDir);
+    }
+
+    public int size() {
+        return regions.size();
+    }
+}
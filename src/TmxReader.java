@@ -0,0 +1,181 @@
+import bagel.util.Point;
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Reads the parts of a Tiled ".tmx" map that the simulation needs, without loading any tile images.
+ * {@link bagel.map.TiledMap} can only be created once a window exists, so headless runs use this instead.
+ * Polylines are read the same way as {@link bagel.map.TiledMap#getAllPolylines()}: each point is offset by its object's
+ * x and y co-ordinates. Tile layers must be csv encoded, and tile properties are read from the map's tilesets,
+ * including external ".tsx" files.
+ */
+public class TmxReader {
+    // Tiled stores flip flags in the top bits of each tile id
+    private static final int TILE_ID_MASK = 0x1FFFFFFF;
+
+    private final List<List<Point>> polylines = new ArrayList<>();
+    private final List<int[]> layers = new ArrayList<>();
+    private final Map<Integer, Map<String, String>> tileProperties = new HashMap<>();
+    private final List<String> tilesetFiles = new ArrayList<>();
+    private final int columns;
+    private final int rows;
+    private final int tileWidth;
+    private final int tileHeight;
+    private final int width;
+    private final int height;
+
+    /**
+     * Parses a tmx file.
+     * @param fileDir file path to the tmx file.
+     */
+    public TmxReader(String fileDir) {
+        try {
+            Document document = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(new File(fileDir));
+            Element map = document.getDocumentElement();
+            columns = Integer.parseInt(map.getAttribute("width"));
+            rows = Integer.parseInt(map.getAttribute("height"));
+            tileWidth = Integer.parseInt(map.getAttribute("tilewidth"));
+            tileHeight = Integer.parseInt(map.getAttribute("tileheight"));
+            width = columns * tileWidth;
+            height = rows * tileHeight;
+
+            NodeList tilesets = map.getElementsByTagName("tileset");
+            for (int i = 0; i < tilesets.getLength(); i++) {
+                Element tileset = (Element) tilesets.item(i);
+                int firstId = Integer.parseInt(tileset.getAttribute("firstgid"));
+                if (!tileset.getAttribute("source").isEmpty()) {
+                    File source = new File(new File(fileDir).getParentFile(), tileset.getAttribute("source"));
+                    tilesetFiles.add(source.getPath());
+                    tileset = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(source).getDocumentElement();
+                }
+                readTileProperties(tileset, firstId);
+            }
+
+            NodeList layerNodes = map.getElementsByTagName("layer");
+            for (int i = 0; i < layerNodes.getLength(); i++) {
+                Element data = (Element) ((Element) layerNodes.item(i)).getElementsByTagName("data").item(0);
+                if (!"csv".equals(data.getAttribute("encoding"))) {
+                    throw new IllegalArgumentException("Only csv encoded tile layers are supported");
+                }
+                String[] ids = data.getTextContent().trim().split("\\s*,\\s*");
+                if (ids.length != columns * rows) {
+                    throw new IllegalArgumentException("Expected " + columns * rows + " tiles in layer " + i);
+                }
+                int[] layer = new int[ids.length];
+                for (int j = 0; j < ids.length; j++) {
+                    layer[j] = (int) (Long.parseLong(ids[j]) & TILE_ID_MASK);
+                }
+                layers.add(layer);
+            }
+
+            NodeList objects = map.getElementsByTagName("object");
+            for (int i = 0; i < objects.getLength(); i++) {
+                Element object = (Element) objects.item(i);
+                NodeList polylineNodes = object.getElementsByTagName("polyline");
+                if (polylineNodes.getLength() == 0) {
+                    continue;
+                }
+                double x = Double.parseDouble(object.getAttribute("x"));
+                double y = Double.parseDouble(object.getAttribute("y"));
+                List<Point> polyline = new ArrayList<>();
+                for (String pair : ((Element) polylineNodes.item(0)).getAttribute("points").trim().split("\\s+")) {
+                    String[] coordinates = pair.split(",");
+                    polyline.add(new Point(x + Double.parseDouble(coordinates[0]), y + Double.parseDouble(coordinates[1])));
+                }
+                polylines.add(polyline);
+            }
+        } catch (Exception e) {
+            throw new IllegalArgumentException("Could not read map " + fileDir, e);
+        }
+    }
+
+    private void readTileProperties(Element tileset, int firstId) {
+        NodeList tiles = tileset.getElementsByTagName("tile");
+        for (int i = 0; i < tiles.getLength(); i++) {
+            Element tile = (Element) tiles.item(i);
+            NodeList properties = tile.getElementsByTagName("property");
+            if (properties.getLength() == 0) {
+                continue;
+            }
+            Map<String, String> values = new HashMap<>();
+            for (int j = 0; j < properties.getLength(); j++) {
+                Element property = (Element) properties.item(j);
+                values.put(property.getAttribute("name"), property.getAttribute("value"));
+            }
+            tileProperties.put(firstId + Integer.parseInt(tile.getAttribute("id")), values);
+        }
+    }
+
+    /**
+     * Gets a property of a tile, as set in its tileset.
+     * @param tileId global tile id, as stored in the tile layers.
+     * @param name property name.
+     * @return value of the property, or {@code null} if the tile doesn't have it.
+     */
+    public String getTileProperty(int tileId, String name) {
+        Map<String, String> values = tileProperties.get(tileId);
+        return values == null ? null : values.get(name);
+    }
+
+    public List<List<Point>> getPolylines() {
+        return polylines;
+    }
+
+    /**
+     * @return file paths of the external ".tsx" tilesets the map uses, in map order.
+     */
+    public List<String> getTilesetFiles() {
+        return tilesetFiles;
+    }
+
+    /**
+     * @return tile layers in map order, each holding one global tile id per tile, row by row (0 for no tile).
+     */
+    public List<int[]> getLayers() {
+        return layers;
+    }
+
+    /**
+     * @return width of the map in tiles.
+     */
+    public int getColumns() {
+        return columns;
+    }
+
+    /**
+     * @return height of the map in tiles.
+     */
+    public int getRows() {
+        return rows;
+    }
+
+    public int getTileWidth() {
+        return tileWidth;
+    }
+
+    public int getTileHeight() {
+        return tileHeight;
+    }
+
+    /**
+     * @return width of the map in pixels.
+     */
+    public int getWidth() {
+        return width;
+    }
+
+    /**
+     * @return height of the map in pixels.
+     */
+    public int getHeight() {
+        return height;
+    }
+}
@@ -0,0 +1,99 @@
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Scanner;
+
+/**
+ * All tower types, read from a catalog file so tower stats and costs are defined in one place.
+ * Each line of the file describes one type:
+ * {@code name,behaviour,cost,radius,cooldown,damage,speed,image,projectile image}, e.g.
+ * {@code tank,stationary,250,100,60,1,0,res/images/tank.png,res/images/tank_projectile.png}. The behaviour is
+ * {@code stationary} or {@code airsupport}, and the projectile image is {@code none} for air support.
+ * Lines starting with {@code #} are ignored. Types are shown in the {@link BuyPanel} in file order.
+ * The game's catalog is loaded once from {@code res/data/towers.txt} and shared by every simulation.
+ */
+public class TowerCatalog {
+    private static final String DEFAULT_FILE = "res/data/towers.txt";
+    private static final String NO_IMAGE = "none";
+
+    private static TowerCatalog defaultCatalog;
+
+    private final List<TowerType> types = new ArrayList<>();
+    private final Map<String, TowerType> typesByName = new HashMap<>();
+
+    /**
+     * Reads a tower catalog file.
+     * @param fileDir file path to the catalog.
+     */
+    public TowerCatalog(String fileDir) {
+        try (Scanner reader = new Scanner(new File(fileDir))) {
+            while (reader.hasNextLine()) {
+                String line = reader.nextLine().trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] fields = line.split(",");
+                TowerType.Behaviour behaviour;
+                switch (fields[1]) {
+                    case "stationary":
+                        behaviour = TowerType.Behaviour.STATIONARY;
+                        break;
+                    case "airsupport":
+                        behaviour = TowerType.Behaviour.AIR_SUPPORT;
+                        break;
+                    default:
+                        throw new IllegalArgumentException("Unknown tower behaviour " + fields[1] + " for " + fields[0]);
+                }
+                TowerType type = new TowerType(types.size(), fields[0], behaviour, Integer.parseInt(fields[2]),
+                        Integer.parseInt(fields[3]), Integer.parseInt(fields[4]), Integer.parseInt(fields[5]),
+                        Double.parseDouble(fields[6]), AssetCache.getDefault().getSprite(fields[7]),
+                        fields[8].equals(NO_IMAGE) ? null : AssetCache.getDefault().getSprite(fields[8]));
+                types.add(type);
+                typesByName.put(type.getName(), type);
+            }
+        } catch (FileNotFoundException e) {
+            throw new IllegalArgumentException("Could not read tower catalog " + fileDir, e);
+        }
+    }
+
+    /**
+     * Gets the game's tower catalog, loading it on first use.
+     * @return catalog read from {@code res/data/towers.txt}.
+     */
+    public static synchronized TowerCatalog getDefault() {
+        if (defaultCatalog == null) {
+            defaultCatalog = new TowerCatalog(DEFAULT_FILE);
+        }
+        return defaultCatalog;
+    }
+
+    /**
+     * Finds the tower type with the given id.
+     * @param id index of the type in the catalog.
+     * @return tower type.
+     */
+    public TowerType get(int id) {
+        return types.get(id);
+    }
+
+    /**
+     * Finds the tower type with the given name, e.g. "supertank".
+     * @param name name of the type.
+     * @return matching tower type, or {@code null} if there is none.
+     */
+    public TowerType get(String name) {
+        return typesByName.get(name);
+    }
+
+    public List<TowerType> getTypes() {
+        return Collections.unmodifiableList(types);
+    }
+
+    public int size() {
+        return types.size();
+    }
+}
@@ -0,0 +1,100 @@
+/**
+ * One kind of tower the player can buy, as read from the tower catalog (see {@link TowerCatalog}).
+ * Tower types are immutable and shared by every tower of that type. How the stats are used depends on the behaviour:
+ * <ul>
+ *     <li>Stationary towers fire a projectile dealing {@code damage} at the nearest slicer within {@code radius},
+ *     at most once every {@code cooldown} frames (see {@link StationaryTowers})</li>
+ *     <li>Air support flies across the map at {@code speed} px/frame, dropping an explosive dealing {@code damage}
+ *     at random intervals of up to {@code cooldown} frames (see {@link AirSupports})</li>
+ * </ul>
+ */
+public class TowerType {
+    /**
+     * How a tower type behaves once placed.
+     */
+    public enum Behaviour {
+        STATIONARY,
+        AIR_SUPPORT
+    }
+
+    private final int id;
+    private final String name;
+    private final Behaviour behaviour;
+    private final int cost;
+    private final int radius;
+    private final int cooldown;
+    private final int damage;
+    private final double speed;
+    private final Sprite image;
+    private final Sprite projectileImage;
+
+    /**
+     * Creates a new tower type.
+     * @param id index of the type in its catalog, used to store the type compactly.
+     * @param name name of the type, e.g. "supertank".
+     * @param behaviour how the tower behaves once placed.
+     * @param cost build cost.
+     * @param radius attack radius in pixels (stationary towers only).
+     * @param cooldown projectile cooldown, or longest explosive drop interval for air support, in frames.
+     * @param damage damage dealt by each projectile or explosive.
+     * @param speed flight speed in px/frame (air support only).
+     * @param image image of the tower.
+     * @param projectileImage image of projectiles, or {@code null} for air support.
+     */
+    public TowerType(int id, String name, Behaviour behaviour, int cost, int radius, int cooldown, int damage,
+                     double speed, Sprite image, Sprite projectileImage) {
+        if (behaviour == Behaviour.STATIONARY && projectileImage == null) {
+            throw new IllegalArgumentException("Stationary tower type " + name + " has no projectile image");
+        }
+        this.id = id;
+        this.name = name;
+        this.behaviour = behaviour;
+        this.cost = cost;
+        this.radius = radius;
+        this.cooldown = cooldown;
+        this.damage = damage;
+        this.speed = speed;
+        this.image = image;
+        this.projectileImage = projectileImage;
+    }
+
+    public int getId() {
+        return id;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public Behaviour getBehaviour() {
+        return behaviour;
+    }
+
+    public int getCost() {
+        return cost;
+    }
+
+    public int getRadius() {
+        return radius;
+    }
+
+    public int getCooldown() {
+        return cooldown;
+    }
+
+    public int getDamage() {
+        return damage;
+    }
+
+    public double getSpeed() {
+        return speed;
+    }
+
+    public Sprite getImage() {
+        return image;
+    }
+
+    public Sprite getProjectileImage() {
+        return projectileImage;
+    }
+}
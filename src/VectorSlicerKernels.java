@@ -0,0 +1,61 @@
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorMask;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * {@link SlicerKernels} written with the incubating Vector API, working on as many slicers at a time as the CPU's
+ * widest vector registers hold (e.g. 4 with AVX2). Any slicers left over at the end are handled by the scalar kernels.
+ * Only create this through {@link SlicerKernels#getDefault()}, which checks that the {@code jdk.incubator.vector}
+ * module is present first.
+ */
+public class VectorSlicerKernels extends SlicerKernels {
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+    // Relative slack on the squared range when screening, far larger than any rounding error
+    private static final double SCREEN_MARGIN = 1 + 1e-9;
+
+    @Override
+    public String getName() {
+        return "vector x" + SPECIES.length();
+    }
+
+    @Override
+    public void steer(double[] x, double[] y, double[] destinationX, double[] destinationY, double[] speed, int n,
+                      double[] vectorX, double[] vectorY, double[] destinationDistance) {
+        int upperBound = SPECIES.loopBound(n);
+        for (int i = 0; i < upperBound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, destinationX, i).sub(DoubleVector.fromArray(SPECIES, x, i));
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, destinationY, i).sub(DoubleVector.fromArray(SPECIES, y, i));
+            DoubleVector length = dx.mul(dx).add(dy.mul(dy)).lanewise(VectorOperators.SQRT);
+            DoubleVector s = DoubleVector.fromArray(SPECIES, speed, i);
+            s.mul(dx.div(length)).intoArray(vectorX, i);
+            s.mul(dy.div(length)).intoArray(vectorY, i);
+            length.intoArray(destinationDistance, i);
+        }
+        steerScalar(x, y, destinationX, destinationY, speed, upperBound, n, vectorX, vectorY, destinationDistance);
+    }
+
+    /**
+     * {@inheritDoc}
+     * Whole vectors of slicers are first screened by squared distance, against a bound slightly above the squared range
+     * so that no slicer in range can be missed to rounding. Only slicers passing the screen have their distance worked
+     * out exactly, with the scalar kernel.
+     */
+    @Override
+    public int inRange(double[] x, double[] y, int n, double px, double py, double range, int[] indices,
+                       double[] distances) {
+        double screen = range * range * SCREEN_MARGIN;
+        int count = 0;
+        int upperBound = SPECIES.loopBound(n);
+        for (int i = 0; i < upperBound; i += SPECIES.length()) {
+            DoubleVector dx = DoubleVector.fromArray(SPECIES, x, i).sub(px);
+            DoubleVector dy = DoubleVector.fromArray(SPECIES, y, i).sub(py);
+            VectorMask<Double> mask = dx.mul(dx).add(dy.mul(dy)).lt(screen);
+            for (long lanes = mask.toLong(); lanes != 0; lanes &= lanes - 1) {
+                int lane = i + Long.numberOfTrailingZeros(lanes);
+                count = inRangeScalar(x, y, lane, lane + 1, px, py, range, indices, distances, count);
+            }
+        }
+        return inRangeScalar(x, y, upperBound, n, px, py, range, indices, distances, count);
+    }
+}
@@ -0,0 +1,435 @@
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Estimates how hard each wave of a wave script is straight from the script and the slicer catalog, without playing
+ * it, so large numbers of generated scripts can be vetted before any are simulated. Spawn times follow the same
+ * frame timing as {@link WaveEvent}, and slicers are assumed to walk the whole lane untouched, so the figures are
+ * those of a wave nobody shoots at:
+ * <ul>
+ *     <li>duration: frames from the wave starting until its last slicer leaves the map</li>
+ *     <li>effective health: damage needed to kill every slicer and every child they would spawn</li>
+ *     <li>reward: gold for killing all of them</li>
+ *     <li>maximum leak: the most lives the wave can take, if every slicer (or, where it is worse, every child) leaks</li>
+ *     <li>arrival curve: slicers spawned in each second, and its peak</li>
+ *     <li>peak concurrent slicers</li>
+ *     <li>required DPS: the most damage per second needed at once to kill every slicer on the map before it reaches
+ *     the end, each slicer's effective health being spread over the time it spends on the lane. A tank deals 1 damage
+ *     per second, a super tank 6.</li>
+ * </ul>
+ * <p>
+ * Usage: {@code java WaveAnalyser [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code waves}: comma separated wave scripts, or a directory of them (default res/levels/waves.txt)</li>
+ *     <li>{@code map}: tmx map whose lanes the slicers walk (default res/levels/1.tmx)</li>
+ *     <li>{@code maxDps}: only list scripts needing at most this DPS (default no limit)</li>
+ *     <li>{@code detail}: {@code true} to print every wave, not just a line per script (default true for a single
+ *     script)</li>
+ *     <li>{@code curve}: {@code true} to also print each wave's arrival curve (default false)</li>
+ * </ul>
+ */
+public class WaveAnalyser {
+    private static final int FRAMES_PER_SECOND = 60;
+
+    private final List<double[]> laneArcLengths;
+    private final SlicerCatalog catalog;
+    // Per slicer type id, worked out once: effective health, reward and maximum leak including children
+    private final long[] effectiveHealth;
+    private final long[] totalReward;
+    private final long[] maxLeak;
+
+    /**
+     * Slicers of one type spawned on one lane by one event, as {@link WaveEvent} spawns them: one slicer every
+     * {@code interval} frames, or, for delays under a frame, several a frame at the scripted rate.
+     */
+    private static class SpawnStream {
+        private final int first;
+        private final int interval;
+        private final double delay;
+        private final int spawnFrames;
+        private final int count;
+        private final int travel;
+        private final int typeId;
+
+        /**
+         * @param first frame of the first spawn.
+         * @param delay frames between spawns, as {@link WaveEvent} counts them.
+         * @param count slicers in total.
+         * @param travel frames a slicer takes to walk the lane.
+         * @param typeId slicer type id.
+         */
+        private SpawnStream(int first, double delay, int count, int travel, int typeId) {
+            this.first = first;
+            this.interval = Math.max((int) Math.ceil(delay), 1);
+            this.delay = delay;
+            this.spawnFrames = isSubFrame() ? Math.max((int) Math.ceil((count - 1) * delay), 1) : count;
+            this.count = count;
+            this.travel = travel;
+            this.typeId = typeId;
+        }
+
+        private boolean isSubFrame() {
+            return delay > 0 && delay < 1;
+        }
+
+        /**
+         * @return frame of the last spawn.
+         */
+        private int getLast() {
+            return first + (spawnFrames - 1) * interval;
+        }
+
+        /**
+         * Counts the slicers spawned up to and including a frame. Under a frame, {@link WaveEvent} spawns while its
+         * timer is not positive, adding the delay each time, so by the k-th frame it has spawned
+         * {@code floor(k / delay) + 1}.
+         * @param frame frame number.
+         * @return number of slicers spawned.
+         */
+        private long spawnedBy(int frame) {
+            if (frame < first) {
+                return 0;
+            }
+            long spawned = isSubFrame() ? (long) Math.floor((frame - first + 1) / delay) + 1
+                    : (frame - first) / interval + 1;
+            return Math.min(spawned, count);
+        }
+    }
+
+    /**
+     * Summary of one wave. Times are in frames at normal speed (60 per second).
+     */
+    public static class WaveEstimate {
+        private final int waveNumber;
+        private final long slicers;
+        private final int duration;
+        private final long effectiveHealth;
+        private final long reward;
+        private final long maxLeak;
+        private final long peakConcurrent;
+        private final long[] arrivals;
+        private final double requiredDps;
+
+        private WaveEstimate(int waveNumber, long slicers, int duration, long effectiveHealth, long reward, long maxLeak,
+                             long peakConcurrent, long[] arrivals, double requiredDps) {
+            this.waveNumber = waveNumber;
+            this.slicers = slicers;
+            this.duration = duration;
+            this.effectiveHealth = effectiveHealth;
+            this.reward = reward;
+            this.maxLeak = maxLeak;
+            this.peakConcurrent = peakConcurrent;
+            this.arrivals = arrivals;
+            this.requiredDps = requiredDps;
+        }
+
+        public int getWaveNumber() {
+            return waveNumber;
+        }
+
+        public long getSlicers() {
+            return slicers;
+        }
+
+        public int getDuration() {
+            return duration;
+        }
+
+        public long getEffectiveHealth() {
+            return effectiveHealth;
+        }
+
+        public long getReward() {
+            return reward;
+        }
+
+        public long getMaxLeak() {
+            return maxLeak;
+        }
+
+        public long getPeakConcurrent() {
+            return peakConcurrent;
+        }
+
+        /**
+         * @return slicers spawned in each second of the wave. Must not be modified.
+         */
+        public long[] getArrivals() {
+            return arrivals;
+        }
+
+        public long getPeakArrivals() {
+            return Arrays.stream(arrivals).max().orElse(0);
+        }
+
+        public double getRequiredDps() {
+            return requiredDps;
+        }
+    }
+
+    /**
+     * Creates an analyser for a map.
+     * @param laneArcLengths distance along each lane's polyline to each of its points (see
+     * {@link PathCoverage#arcLengths(List)}).
+     * @param catalog slicer types the scripts spawn.
+     */
+    public WaveAnalyser(List<double[]> laneArcLengths, SlicerCatalog catalog) {
+        this.laneArcLengths = laneArcLengths;
+        this.catalog = catalog;
+        effectiveHealth = new long[catalog.size()];
+        totalReward = new long[catalog.size()];
+        maxLeak = new long[catalog.size()];
+        // Children may come later in the catalog, so fill in each type on first use
+        Arrays.fill(effectiveHealth, -1);
+        for (SlicerType type : catalog.getTypes()) {
+            cascade(type);
+        }
+    }
+
+    /**
+     * Analyses the script(s) from the command line.
+     * @param args settings as key=value pairs.
+     */
+    public static void main(String[] args) {
+        String waves = LevelDefinition.WAVE_FILE;
+        String map = LevelDefinition.LEVEL_MAPS[0];
+        double maxDps = Double.POSITIVE_INFINITY;
+        Boolean detail = null;
+        boolean curve = false;
+        for (String arg : args) {
+            String[] setting = Settings.split(arg);
+            switch (setting[0]) {
+                case "waves":
+                    waves = setting[1];
+                    break;
+                case "map":
+                    map = setting[1];
+                    break;
+                case "maxDps":
+                    maxDps = Double.parseDouble(setting[1]);
+                    break;
+                case "detail":
+                    detail = Boolean.parseBoolean(setting[1]);
+                    break;
+                case "curve":
+                    curve = Boolean.parseBoolean(setting[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown setting " + setting[0]);
+            }
+        }
+
+        List<String> scripts = new ArrayList<>();
+        File directory = new File(waves);
+        if (directory.isDirectory()) {
+            File[] files = directory.listFiles((dir, name) -> name.endsWith(".txt"));
+            Arrays.sort(files);
+            for (File file : files) {
+                scripts.add(file.getPath());
+            }
+        } else {
+            scripts.addAll(Arrays.asList(waves.split(",")));
+        }
+        if (detail == null) {
+            detail = scripts.size() == 1;
+        }
+
+        WaveAnalyser analyser = new WaveAnalyser(
+                new LevelDefinition(map, LevelDefinition.WAVE_FILE).loadBundle().getAllArcLengths(),
+                SlicerCatalog.getDefault());
+        int listed = 0;
+        long startTime = System.nanoTime();
+        for (String script : scripts) {
+            List<LevelBundle.ScheduledEvent> schedule = new ArrayList<>();
+            for (String line : Level.readWaveFile(script)) {
+                schedule.add(LevelBundle.ScheduledEvent.parse(line));
+            }
+            List<WaveEstimate> estimates = analyser.analyse(schedule);
+            double requiredDps = estimates.stream().mapToDouble(WaveEstimate::getRequiredDps).max().orElse(0);
+            if (requiredDps > maxDps) {
+                continue;
+            }
+            listed++;
+            System.out.printf("%s: %d waves, %.1f s, effective health %d, max leak %d, peak concurrent %d, required DPS %.2f%n",
+                    script, estimates.size(),
+                    estimates.stream().mapToLong(WaveEstimate::getDuration).sum() / (double) FRAMES_PER_SECOND,
+                    estimates.stream().mapToLong(WaveEstimate::getEffectiveHealth).sum(),
+                    estimates.stream().mapToLong(WaveEstimate::getMaxLeak).sum(),
+                    estimates.stream().mapToLong(WaveEstimate::getPeakConcurrent).max().orElse(0), requiredDps);
+            if (detail) {
+                printWaves(estimates, curve);
+            }
+        }
+        System.out.printf("%d of %d scripts listed, analysed in %.1f ms%n", listed, scripts.size(),
+                (System.nanoTime() - startTime) / 1e6);
+    }
+
+    private static void printWaves(List<WaveEstimate> estimates, boolean curve) {
+        System.out.printf("%6s %10s %10s %12s %10s %8s %11s %10s %12s%n", "wave", "slicers", "duration s",
+                "eff. health", "reward", "max leak", "concurrent", "peak/s", "required DPS");
+        for (WaveEstimate estimate : estimates) {
+            System.out.printf("%6d %10d %10.1f %12d %10d %8d %11d %10d %12.2f%n", estimate.getWaveNumber(),
+                    estimate.getSlicers(), estimate.getDuration() / (double) FRAMES_PER_SECOND,
+                    estimate.getEffectiveHealth(), estimate.getReward(), estimate.getMaxLeak(),
+                    estimate.getPeakConcurrent(), estimate.getPeakArrivals(), estimate.getRequiredDps());
+            if (curve) {
+                System.out.println("       arrivals/s: " + Arrays.toString(estimate.getArrivals()));
+            }
+        }
+    }
+
+    /**
+     * Works out a slicer type's effective health, reward and maximum leak, including its children's.
+     */
+    private void cascade(SlicerType type) {
+        int id = type.getId();
+        if (effectiveHealth[id] >= 0) {
+            return;
+        }
+        effectiveHealth[id] = type.getHealth();
+        totalReward[id] = type.getReward();
+        maxLeak[id] = type.getPenalty();
+        SlicerType child = type.getChildType();
+        if (child != null) {
+            cascade(child);
+            effectiveHealth[id] += type.getNumberOfChildren() * effectiveHealth[child.getId()];
+            totalReward[id] += type.getNumberOfChildren() * totalReward[child.getId()];
+            // Killing the slicer just before the end lets its children leak instead
+            maxLeak[id] = Math.max(maxLeak[id], type.getNumberOfChildren() * maxLeak[child.getId()]);
+        }
+    }
+
+    /**
+     * Analyses every wave of a script.
+     * @param schedule events of the script, in file order.
+     * @return estimate of each wave, in order.
+     * @throws IllegalArgumentException if an event spawns on a lane the map doesn't have, or an unknown slicer type.
+     */
+    public List<WaveEstimate> analyse(List<LevelBundle.ScheduledEvent> schedule) {
+        List<WaveEstimate> estimates = new ArrayList<>();
+        int from = 0;
+        while (from < schedule.size()) {
+            int to = from;
+            while (to < schedule.size() && schedule.get(to).getWaveNumber() == schedule.get(from).getWaveNumber()) {
+                to++;
+            }
+            estimates.add(analyseWave(schedule.subList(from, to)));
+            from = to;
+        }
+        return estimates;
+    }
+
+    /**
+     * Works out when each event of a wave starts, as {@link WaveEvent} would, without stepping through its spawns.
+     * Every event (per lane) is a stream of slicers spawned a fixed number of frames apart, so the totals and arrival
+     * curve are counted exactly per stream. Concurrency and DPS treat each stream as spawning at an even rate, which
+     * makes them piecewise linear in time, so their peaks are found by sweeping the streams' corners in order.
+     */
+    private WaveEstimate analyseWave(List<LevelBundle.ScheduledEvent> events) {
+        List<SpawnStream> streams = new ArrayList<>();
+        int start = 0;
+        int end = 0;
+        for (LevelBundle.ScheduledEvent event : events) {
+            // Frames per spawn (or for the delay) as WaveEvent counts them
+            double delay = event.getDelay() * FRAMES_PER_SECOND / 1000;
+            if (event.isDelay()) {
+                start += Math.max((int) Math.ceil(delay) - 1, 0);
+                end = Math.max(end, start);
+                continue;
+            }
+            SlicerType type = catalog.get(event.getSlicerType());
+            if (type == null) {
+                throw new IllegalArgumentException("Unknown slicer type " + event.getSlicerType());
+            }
+            int lanes = laneArcLengths.size();
+            if (event.getLane() >= lanes) {
+                throw new IllegalArgumentException("Wave " + event.getWaveNumber() + " spawns on lane "
+                        + (event.getLane() + 1) + ", but the map only has " + lanes);
+            }
+            // Lanes sharing an event all start with it, and the next event waits for the last of them
+            int groupEnd = start;
+            for (int lane = 0; lane < lanes; lane++) {
+                int share;
+                if (event.getLane() == LevelBundle.ScheduledEvent.ALL_LANES) {
+                    share = event.getNumberOfSlicers() / lanes + (lane < event.getNumberOfSlicers() % lanes ? 1 : 0);
+                } else {
+                    share = lane == event.getLane() ? event.getNumberOfSlicers() : 0;
+                }
+                if (share == 0) {
+                    continue;
+                }
+                double[] arcLengths = laneArcLengths.get(lane);
+                int travel = (int) Math.ceil(arcLengths[arcLengths.length - 1] / type.getMovementSpeed());
+                SpawnStream stream = new SpawnStream(start, delay, share, travel, type.getId());
+                groupEnd = Math.max(groupEnd, stream.getLast());
+                end = Math.max(end, stream.getLast() + travel);
+                streams.add(stream);
+            }
+            start = groupEnd;
+        }
+        int duration = end + 1;
+
+        long slicers = 0;
+        long health = 0;
+        long reward = 0;
+        long leak = 0;
+        long[] arrivals = new long[(duration + FRAMES_PER_SECOND - 1) / FRAMES_PER_SECOND];
+        // Each corner: frame, change in the rate of change of slicers on the map, and of DPS needed
+        double[][] corners = new double[streams.size() * 4][];
+        int corner = 0;
+        for (SpawnStream stream : streams) {
+            int first = stream.first;
+            int interval = stream.interval;
+            int spawnFrames = stream.spawnFrames;
+            int count = stream.count;
+            int travel = stream.travel;
+            int id = stream.typeId;
+            slicers += count;
+            health += count * effectiveHealth[id];
+            reward += count * totalReward[id];
+            leak += count * maxLeak[id];
+            addArrivals(arrivals, stream);
+
+            // Spread evenly over [first, first + span), each slicer is on the map for travel frames
+            int span = spawnFrames * interval;
+            double rate = count / (double) span;
+            double dpsRate = rate * effectiveHealth[id] * FRAMES_PER_SECOND / travel;
+            corners[corner++] = new double[]{first, rate, dpsRate};
+            corners[corner++] = new double[]{first + span, -rate, -dpsRate};
+            corners[corner++] = new double[]{first + travel, -rate, -dpsRate};
+            corners[corner++] = new double[]{first + span + travel, rate, dpsRate};
+        }
+        Arrays.sort(corners, (a, b) -> Double.compare(a[0], b[0]));
+
+        double live = 0;
+        double liveDps = 0;
+        double slope = 0;
+        double dpsSlope = 0;
+        double peakConcurrent = 0;
+        double requiredDps = 0;
+        double frame = 0;
+        for (double[] change : corners) {
+            live += slope * (change[0] - frame);
+            liveDps += dpsSlope * (change[0] - frame);
+            frame = change[0];
+            peakConcurrent = Math.max(peakConcurrent, live);
+            requiredDps = Math.max(requiredDps, liveDps);
+            slope += change[1];
+            dpsSlope += change[2];
+        }
+        return new WaveEstimate(events.get(0).getWaveNumber(), slicers, duration, health, reward, leak,
+                Math.round(peakConcurrent), arrivals, requiredDps);
+    }
+
+    /**
+     * Counts a stream's spawns in each second it covers.
+     */
+    private static void addArrivals(long[] arrivals, SpawnStream stream) {
+        for (int second = stream.first / FRAMES_PER_SECOND; second <= stream.getLast() / FRAMES_PER_SECOND; second++) {
+            arrivals[second] += stream.spawnedBy((second + 1) * FRAMES_PER_SECOND - 1)
+                    - stream.spawnedBy(second * FRAMES_PER_SECOND - 1);
+        }
+    }
+}
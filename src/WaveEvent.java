@@ -1,49 +1,129 @@
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import bagel.map.TiledMap;
 import bagel.util.Point;
 
 /**
  * Manages wave events within a wave, providing methods to start and query event statuses. Also provides methods to
  * control slicers spawned by wave events.
+ * <p>
+ * Each spawn event's slicers travel along one lane (polyline) of the map. The event keeps the bounding box of its
+ * slicers, so range queries from towers nowhere near the lane return straight away without checking any slicers.
+ * It also keeps its slicers sorted by progress along the lane, so towers that know which parts of the lane they cover
+ * (see {@link PathCoverage}) only check the slicers in those parts.
+ * <p>
+ * In fixed point mode (see {@link Simulation#setFixedPoint(boolean)}) slicers are moved and range checked in integer
+ * arithmetic with {@link FixedPoint}. Their positions, destinations and speeds are kept from tick to tick in packed int
+ * arrays, half the size of the double arrays used otherwise, and each slicer's {@link Point} is only written from
+ * them, for drawing and for code outside the wave event.
  */
 public class WaveEvent {
-    // Use to modify movement speeds to match video, as per Piazza pinned discussion
-    private static final double MOVEMENT_SCALAR = 1;
+    private static final SlicerKernels kernels = SlicerKernels.getDefault();
+    // Scratch space for range queries, which towers may make from several threads at once
+    private static final ThreadLocal<RangeQuery> rangeQueries = ThreadLocal.withInitial(RangeQuery::new);
+    // Insertion sort moves allowed per slicer before falling back to a full sort of slicer progress
+    private static final int MAX_SORT_MOVES = 8;
 
     private final Player player;
     private final double delay;
 
-    private TiledMap map;
+    private List<Point> path;
+    private int lane;
+    private double[] arcLengths;
+    private boolean startsWithPrevious = false;
+    private GameRandom random;
+    private SlicerPool slicerPool;
     private double currentTimer;
     private List<Slicer> slicerList = new ArrayList<Slicer>();
+    // Reused by removeDeadSlicers, so resolving deaths doesn't allocate
+    private final List<Slicer> deadSlicers = new ArrayList<>();
     private int slicersToSpawnRemaining;
     private boolean waveEventComplete = false;
     private boolean isDelayEvent;
-    private Class<?> slicerClass;
+    private SlicerType slicerType;
+    private boolean fixedPoint = false;
 
+    // Slicer positions and movement packed in slicerList order for SlicerKernels
+    private double[] packedX = new double[0];
+    private double[] packedY = new double[0];
+    private double[] destinationX = new double[0];
+    private double[] destinationY = new double[0];
+    private double[] speed = new double[0];
+    private double[] vectorX = new double[0];
+    private double[] vectorY = new double[0];
+    private double[] destinationDistance = new double[0];
+    // The same in fixed point, used instead in fixed point mode
+    private int[] fixedX = new int[0];
+    private int[] fixedY = new int[0];
+    private int[] fixedDestinationX = new int[0];
+    private int[] fixedDestinationY = new int[0];
+    private int[] fixedSpeed = new int[0];
+    private int[] fixedVectorX = new int[0];
+    private int[] fixedVectorY = new int[0];
+    private int[] fixedDestinationDistance = new int[0];
+    // Leading slicers whose fixed point position, destination and speed are packed, and so are the real ones
+    private int fixedCount = 0;
+    private int packedCount = 0;
+    private volatile boolean packedValid = false;
+    // Bounding box of the packed slicer positions
+    private double minX;
+    private double minY;
+    private double maxX;
+    private double maxY;
+    // Packed slicer indices sorted by progress along the lane (see progressKey), and the packed indices of slicers too
+    // far from their point on the lane for PathCoverage intervals to find them
+    private long[] progressKeys = new long[0];
+    private int[] drifted = new int[0];
+    private int driftedCount = 0;
+
+    /**
+     * Indices and distances of slicers found by one range query.
+     */
+    private static class RangeQuery {
+        private int[] indices = new int[0];
+        private double[] distances = new double[0];
+        private long[] distancesSquared = new long[0];
+
+        private void ensureCapacity(int n, boolean fixedPoint) {
+            if (indices.length < n) {
+                indices = new int[n];
+            }
+            if (fixedPoint && distancesSquared.length < n) {
+                distancesSquared = new long[n];
+            } else if (!fixedPoint && distances.length < n) {
+                distances = new double[n];
+            }
+        }
+    }
 
     /**
      * Creates a new slicer spawn event.
-     * Slicer spawn events spawn a specified amount of a certain slicer class and ends when all slicers are spawned and
+     * Slicer spawn events spawn a specified amount of a certain slicer type and ends when all slicers are spawned and
      * dead.
      * @param delay Time to wait between slicer spawns, in milliseconds.
-     * @param map TiledMap containing polyline for slicer to travel along.
+     * @param path polyline for slicers to travel along.
+     * @param lane index of the polyline in the map, starting from 0.
+     * @param arcLengths distance along the polyline to each of its points.
      * @param numSlicers Number of slicers to spawn.
-     * @param slicerClass Type of slicer to spawn.
+     * @param slicerType Type of slicer to spawn.
      * @param player Player object containing gold and health values.
+     * @param random game random number generator, used when slicers spawn children.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
      */
-    public WaveEvent(double delay, TiledMap map, int numSlicers, Class<?> slicerClass, Player player) {
+    public WaveEvent(double delay, List<Point> path, int lane, double[] arcLengths, int numSlicers, SlicerType slicerType, Player player, GameRandom random, SlicerPool slicerPool) {
         this.delay = delay * 60 / 1000;
         this.currentTimer = 0;
-        this.map = map;
+        this.path = path;
+        this.lane = lane;
+        this.arcLengths = arcLengths;
         this.player = player;
+        this.random = random;
+        this.slicerPool = slicerPool;
 
         this.slicerList = new ArrayList<>();
         this.slicersToSpawnRemaining = numSlicers;
-        this.slicerClass = slicerClass;
-        Slicer.setMovementScalar(MOVEMENT_SCALAR);
+        this.slicerType = slicerType;
     }
 
     /**
@@ -75,31 +155,33 @@ public class WaveEvent {
         } else {
             if (slicersToSpawnRemaining >= 1) {
                 currentTimer = currentTimer - 1; // Counts frames
-                if (currentTimer <= 0) {
-                    spawnSlicer(slicerClass, 1);
+                if (currentTimer <= 0 && delay > 0 && delay < 1) {
+                    // Delays shorter than one frame spawn several slicers per frame, carrying the time left over to
+                    // the next frame, so slicers still spawn at the scripted rate
+                    double timer = currentTimer;
+                    int spawns = 0;
+                    while (timer <= 0 && spawns < slicersToSpawnRemaining) {
+                        timer += delay;
+                        spawns++;
+                    }
+                    spawnSlicer(slicerType, spawns);
+                    currentTimer = timer;
+                } else if (currentTimer <= 0) {
+                    spawnSlicer(slicerType, 1);
                 }
             }
             // Move all slicers
             // End wave when all slicers are done
-            for (int i = 0; i < slicerList.size(); i++) {
-                if (!updateSlicerPosition(slicerList.get(i))) {
-                    i--;
-                }
+            if (fixedPoint) {
+                moveSlicersFixed();
+            } else {
+                moveSlicers();
             }
             waveEventComplete = slicerList.isEmpty() && slicersToSpawnRemaining == 0;
         }
 
     }
 
-    /**
-     * Renders all slicers in wave event.
-     */
-    public void drawAllSlicers() {
-        for (Slicer slicer : slicerList) {
-            slicer.draw();
-        }
-    }
-
     /**
      * Moves a slicer towards it's next point
      * Updates it's destination if it reaches the next point.
@@ -114,6 +196,8 @@ public class WaveEvent {
             if (!slicer.updateDestination()) {
                 slicerList.remove(slicer);
                 player.loseHealth(slicer.getPenalty());
+                player.addLeak();
+                slicerPool.release(slicer);
                 return false;
             }
         }
@@ -122,53 +206,388 @@ public class WaveEvent {
     }
 
     /**
-     * Destroys the slicer when it gets killed by a tower, granting player gold.
-     * Call this when slicer is killed by a projectile or explosive, not when it reaches the end.
-     * @param slicer slicer to kill.
+     * Moves every slicer one step, in the same way as {@link WaveEvent#updateSlicerPosition(Slicer)}, but works out all
+     * their movement vectors at once with {@link SlicerKernels}. Slicers that reach the end are removed, penalising
+     * the player. Leaves the packed slicer positions up to date for range queries.
+     */
+    private void moveSlicers() {
+        int n = slicerList.size();
+        ensurePackedCapacity(n);
+        for (int i = 0; i < n; i++) {
+            Slicer slicer = slicerList.get(i);
+            Point destination = slicer.getDestination();
+            packedX[i] = slicer.getPosition().x;
+            packedY[i] = slicer.getPosition().y;
+            destinationX[i] = destination.x;
+            destinationY[i] = destination.y;
+            speed[i] = slicer.getFinalMovementSpeed();
+        }
+        kernels.steer(packedX, packedY, destinationX, destinationY, speed, n, vectorX, vectorY, destinationDistance);
+
+        // Slicers still on the polyline are moved down over any that reached the end, keeping their order
+        int kept = 0;
+        resetBounds();
+        driftedCount = 0;
+        for (int i = 0; i < n; i++) {
+            Slicer slicer = slicerList.get(i);
+            slicer.setVector(vectorX[i], vectorY[i]);
+            // Close enough to next point
+            if (destinationDistance[i] < speed[i]) {
+                if (!slicer.updateDestination()) {
+                    player.loseHealth(slicer.getPenalty());
+                    player.addLeak();
+                    slicerPool.release(slicer);
+                    continue;
+                }
+            }
+            slicer.move();
+            slicerList.set(kept, slicer);
+            packedX[kept] = slicer.getPosition().x;
+            packedY[kept] = slicer.getPosition().y;
+            addToBounds(packedX[kept], packedY[kept]);
+            packProgress(kept, slicer);
+            kept++;
+        }
+        slicerList.subList(kept, n).clear();
+        sortProgress(kept);
+        packedCount = kept;
+        packedValid = true;
+    }
+
+    /**
+     * Moves every slicer one step in the same way as {@link WaveEvent#moveSlicers()}, but in fixed point. Each slicer's
+     * position is rounded to the nearest 1/256th of a pixel, so the first step also snaps slicers that were placed
+     * between fixed point positions, e.g. by spawning as a child.
+     */
+    private void moveSlicersFixed() {
+        int n = slicerList.size();
+        ensurePackedCapacity(n);
+        for (int i = fixedCount; i < n; i++) {
+            packFixed(i, slicerList.get(i));
+        }
+        kernels.steerFixed(fixedX, fixedY, fixedDestinationX, fixedDestinationY, fixedSpeed, n, fixedVectorX,
+                fixedVectorY, fixedDestinationDistance);
+
+        // Slicers still on the polyline are moved down over any that reached the end, keeping their order
+        int kept = 0;
+        resetBounds();
+        driftedCount = 0;
+        for (int i = 0; i < n; i++) {
+            Slicer slicer = slicerList.get(i);
+            int vectorX = fixedVectorX[i];
+            int vectorY = fixedVectorY[i];
+            // Close enough to next point
+            if (fixedDestinationDistance[i] < fixedSpeed[i]) {
+                if (!slicer.updateDestination()) {
+                    player.loseHealth(slicer.getPenalty());
+                    player.addLeak();
+                    slicerPool.release(slicer);
+                    continue;
+                }
+                fixedDestinationX[i] = FixedPoint.toFixed(slicer.getDestination().x);
+                fixedDestinationY[i] = FixedPoint.toFixed(slicer.getDestination().y);
+                long dx = fixedDestinationX[i] - fixedX[i];
+                long dy = fixedDestinationY[i] - fixedY[i];
+                long length = FixedPoint.sqrt(FixedPoint.lengthSquared(dx, dy));
+                vectorX = length == 0 ? 0 : FixedPoint.scale(dx, length, fixedSpeed[i]);
+                vectorY = length == 0 ? 0 : FixedPoint.scale(dy, length, fixedSpeed[i]);
+            }
+            slicer.setVector(FixedPoint.toDouble(vectorX), FixedPoint.toDouble(vectorY));
+            fixedX[kept] = fixedX[i] + vectorX;
+            fixedY[kept] = fixedY[i] + vectorY;
+            fixedDestinationX[kept] = fixedDestinationX[i];
+            fixedDestinationY[kept] = fixedDestinationY[i];
+            fixedSpeed[kept] = fixedSpeed[i];
+            slicer.setPosition(new Point(FixedPoint.toDouble(fixedX[kept]), FixedPoint.toDouble(fixedY[kept])));
+            slicerList.set(kept, slicer);
+            addToBounds(slicer.getPosition().x, slicer.getPosition().y);
+            packProgress(kept, slicer);
+            kept++;
+        }
+        slicerList.subList(kept, n).clear();
+        sortProgress(kept);
+        fixedCount = kept;
+        packedCount = kept;
+        packedValid = true;
+    }
+
+    /**
+     * Packs a slicer's fixed point position, destination and speed, from its {@link Point}s, at the end of the packed
+     * slicers. Used for slicers that have just been added, whose positions are already exact in fixed point (see
+     * {@link WaveEvent#spawnChildSlicers(Slicer, int)}), or are snapped to it on their first move.
+     * @param i packed index of the slicer, which must be {@code fixedCount}.
+     * @param slicer the slicer.
      */
-    public void killSlicer(Slicer slicer) {
-        spawnChildSlicers(slicer, slicer.getNumberOfChildren());
-        slicerList.remove(slicer);
-        player.gainGold(slicer.getReward());
+    private void packFixed(int i, Slicer slicer) {
+        fixedX[i] = FixedPoint.toFixed(slicer.getPosition().x);
+        fixedY[i] = FixedPoint.toFixed(slicer.getPosition().y);
+        fixedDestinationX[i] = FixedPoint.toFixed(slicer.getDestination().x);
+        fixedDestinationY[i] = FixedPoint.toFixed(slicer.getDestination().y);
+        fixedSpeed[i] = FixedPoint.toFixed(slicer.getFinalMovementSpeed());
+        fixedCount = i + 1;
     }
 
     /**
-     * Triggers the child slicer spawns when slicer dies.
+     * Makes sure the packed slicer positions match slicerList, repacking them if slicers have been added or removed
+     * since they were last packed.
+     */
+    private void ensurePacked() {
+        if (packedValid && packedCount == slicerList.size()) {
+            return;
+        }
+        synchronized (this) {
+            if (packedValid && packedCount == slicerList.size()) {
+                return;
+            }
+            int n = slicerList.size();
+            ensurePackedCapacity(n);
+            resetBounds();
+            driftedCount = 0;
+            for (int i = 0; i < n; i++) {
+                if (fixedPoint) {
+                    if (i >= fixedCount) {
+                        packFixed(i, slicerList.get(i));
+                    }
+                    addToBounds(FixedPoint.toDouble(fixedX[i]), FixedPoint.toDouble(fixedY[i]));
+                } else {
+                    packedX[i] = slicerList.get(i).getPosition().x;
+                    packedY[i] = slicerList.get(i).getPosition().y;
+                    addToBounds(packedX[i], packedY[i]);
+                }
+                packProgress(i, slicerList.get(i));
+            }
+            sortProgress(n);
+            packedCount = n;
+            packedValid = true;
+        }
+    }
+
+    private void resetBounds() {
+        minX = Double.POSITIVE_INFINITY;
+        minY = Double.POSITIVE_INFINITY;
+        maxX = Double.NEGATIVE_INFINITY;
+        maxY = Double.NEGATIVE_INFINITY;
+    }
+
+    private void addToBounds(double x, double y) {
+        minX = Math.min(minX, x);
+        minY = Math.min(minY, y);
+        maxX = Math.max(maxX, x);
+        maxY = Math.max(maxY, y);
+    }
+
+    /**
+     * Works out how far along the lane a slicer is, and how far it is from that point on the lane, and stores its
+     * progress key at the given packed index (to be sorted by {@link WaveEvent#sortProgress(int)}).
+     * Progress is measured back from the slicer's destination, so slicers that have drifted off the lane still get a
+     * point on the segment they are travelling along.
+     * @param i packed index of the slicer.
+     * @param slicer the slicer.
+     */
+    private void packProgress(int i, Slicer slicer) {
+        int dstNum = slicer.getDstNum();
+        Point destination = path.get(dstNum);
+        Point previous = path.get(dstNum - 1);
+        double segment = arcLengths[dstNum] - arcLengths[dstNum - 1];
+        double toX = destination.x - slicer.getPosition().x;
+        double toY = destination.y - slicer.getPosition().y;
+        double back = Math.min(Math.sqrt(toX * toX + toY * toY), segment);
+        double fraction = segment > 0 ? back / segment : 0;
+        double offX = destination.x + (previous.x - destination.x) * fraction - slicer.getPosition().x;
+        double offY = destination.y + (previous.y - destination.y) * fraction - slicer.getPosition().y;
+        // A pixel of slack for rounding, as for the bounding box
+        if (Math.sqrt(offX * offX + offY * offY) > PathCoverage.MARGIN - 1) {
+            drifted[driftedCount++] = i;
+        }
+        progressKeys[i] = progressKey(arcLengths[dstNum] - back, i);
+    }
+
+    /**
+     * Packs a slicer's progress and index into one sortable number: slicers further along the lane sort first, as
+     * they mostly are in slicerList already. Progress is rounded to a float, which rounds in the same direction for
+     * every value, so looking up a range of progress never misses a slicer.
+     * @param progress distance along the lane.
+     * @param index packed index of the slicer.
+     * @return sort key.
+     */
+    private static long progressKey(double progress, int index) {
+        return (long) progressBits(progress) << 32 | index;
+    }
+
+    private static int progressBits(double progress) {
+        return Integer.MAX_VALUE - Float.floatToIntBits((float) Math.max(0, progress));
+    }
+
+    /**
+     * Sorts the first {@code n} progress keys. Slicers rarely pass each other, so an insertion sort is usually close
+     * to one pass; if too many keys are out of order it falls back to a full sort.
+     * @param n number of slicers.
+     */
+    private void sortProgress(int n) {
+        long moves = 0;
+        for (int i = 1; i < n; i++) {
+            long key = progressKeys[i];
+            int j = i - 1;
+            while (j >= 0 && progressKeys[j] > key) {
+                progressKeys[j + 1] = progressKeys[j];
+                j--;
+            }
+            progressKeys[j + 1] = key;
+            moves += i - 1 - j;
+            if (moves > (long) n * MAX_SORT_MOVES) {
+                Arrays.sort(progressKeys, 0, n);
+                return;
+            }
+        }
+    }
+
+    /**
+     * Finds the first of the sorted progress keys that is at least {@code key}.
+     * @return index into progressKeys, or packedCount if every key is smaller.
+     */
+    private int searchProgress(long key) {
+        int low = 0;
+        int high = packedCount;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (progressKeys[middle] < key) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Checks if any packed slicer could be in range of a point, using their bounding box. Call after
+     * {@link WaveEvent#ensurePacked()}.
+     * @param position point centred in search.
+     * @param range radius to search around point.
+     * @return false if every slicer is definitely out of range, true otherwise.
+     */
+    private boolean boundsInRange(Point position, int range) {
+        // A pixel of slack, so rounding never culls a slicer the exact check would find
+        double reach = range + 1;
+        return position.x + reach >= minX && position.x - reach <= maxX
+                && position.y + reach >= minY && position.y - reach <= maxY;
+    }
+
+    /**
+     * Grows the packed arrays to fit at least {@code n} slicers.
+     * @param n number of slicers.
+     */
+    private void ensurePackedCapacity(int n) {
+        if (progressKeys.length >= n) {
+            return;
+        }
+        int capacity = Math.max(n, progressKeys.length * 2);
+        progressKeys = new long[capacity];
+        drifted = new int[capacity];
+        if (fixedPoint) {
+            // Packed slicers keep their real positions here, so these are copied
+            fixedX = Arrays.copyOf(fixedX, capacity);
+            fixedY = Arrays.copyOf(fixedY, capacity);
+            fixedDestinationX = Arrays.copyOf(fixedDestinationX, capacity);
+            fixedDestinationY = Arrays.copyOf(fixedDestinationY, capacity);
+            fixedSpeed = Arrays.copyOf(fixedSpeed, capacity);
+            fixedVectorX = new int[capacity];
+            fixedVectorY = new int[capacity];
+            fixedDestinationDistance = new int[capacity];
+            return;
+        }
+        packedX = new double[capacity];
+        packedY = new double[capacity];
+        destinationX = new double[capacity];
+        destinationY = new double[capacity];
+        speed = new double[capacity];
+        vectorX = new double[capacity];
+        vectorY = new double[capacity];
+        destinationDistance = new double[capacity];
+    }
+
+    /**
+     * Removes every slicer killed by towers this tick (those with no health left) in one pass, keeping the others in
+     * order, then spawns their children at the end of the list and returns them to the slicer pool. Gold and kills are
+     * counted by {@link Level#resolveDeaths()}.
+     * @return number of slicers removed.
+     */
+    public int removeDeadSlicers() {
+        int n = slicerList.size();
+        int kept = 0;
+        int fixedKept = 0;
+        for (int i = 0; i < n; i++) {
+            Slicer slicer = slicerList.get(i);
+            if (slicer.getHealth() > 0) {
+                if (i < fixedCount) {
+                    // Fixed point state moves down with the slicer
+                    fixedX[kept] = fixedX[i];
+                    fixedY[kept] = fixedY[i];
+                    fixedDestinationX[kept] = fixedDestinationX[i];
+                    fixedDestinationY[kept] = fixedDestinationY[i];
+                    fixedSpeed[kept] = fixedSpeed[i];
+                    fixedKept++;
+                }
+                slicerList.set(kept++, slicer);
+            } else {
+                deadSlicers.add(slicer);
+            }
+        }
+        int removed = deadSlicers.size();
+        if (removed == 0) {
+            return 0;
+        }
+        slicerList.subList(kept, n).clear();
+        fixedCount = fixedKept;
+        for (Slicer slicer : deadSlicers) {
+            spawnChildSlicers(slicer, slicer.getNumberOfChildren());
+            slicerPool.release(slicer);
+        }
+        deadSlicers.clear();
+        packedValid = false;
+        return removed;
+    }
+
+    /**
+     * Triggers the child slicer spawns when slicer dies. Each child is of the slicer's child type and inherits the
+     * slicer's current position (slightly offset randomly) and destination.
      * @param slicer slicer which just died.
      * @param n number of children to spawn.
      */
     public void spawnChildSlicers(Slicer slicer, int n) {
+        SlicerType childType = slicer.getType().getChildType();
+        if (childType == null) {
+            return;
+        }
         for (int i = 0; i < n; i ++) {
-            slicerList.add(slicer.onDeath());
+            Slicer child = slicerPool.acquire(childType, slicer.getPath());
+            child.setDstNum(slicer.getDstNum());
+            Point position = slicer.childSpawnLocation(random);
+            child.setPosition(fixedPoint ? FixedPoint.snap(position) : position);
+            slicerList.add(child);
         }
+        packedValid = false;
     }
 
     /**
      * Spawns slicers at the start of the polyline, as part of a wave event. Decrements slicersRemaining and resets
-     * slicer spawn timer. All slicers are spawned immediately (unused functionality, left for future use).
-     * @param slicerClass class of slicer to spawn.
+     * slicer spawn timer. All slicers are spawned immediately, which is used when the spawn delay is under one frame
+     * (the caller then sets the timer).
+     * @param slicerType type of slicer to spawn.
      * @param n number of slicers to spawn.
      */
-    public void spawnSlicer(Class<?> slicerClass, int n) {
+    public void spawnSlicer(SlicerType slicerType, int n) {
         for (int i = 0; i < n; i ++) {
-            if (slicerClass == RegularSlicer.class) {
-                slicerList.add(new RegularSlicer(map));
-            } else if (slicerClass == SuperSlicer.class) {
-                slicerList.add(new SuperSlicer(map));
-            } else if (slicerClass == MegaSlicer.class) {
-                slicerList.add(new MegaSlicer(map));
-            } else if (slicerClass == ApexSlicer.class) {
-                slicerList.add(new ApexSlicer(map));
-            } else {
-                break;
-            }
+            slicerList.add(slicerPool.acquire(slicerType, path));
             slicersToSpawnRemaining--;
             currentTimer = delay;
         }
+        packedValid = false;
     }
 
     /**
-     * Finds the nearest slicer to a specific point and range.
+     * Finds the nearest slicer to a specific point and range, skipping slicers that projectiles already in flight will
+     * kill (see {@link Slicer#isDoomed()}).
      * @param position point centred in search.
      * @param range radius to search around point.
      * @return nearest Slicer, otherwise null if none in range.
@@ -177,20 +596,206 @@ public class WaveEvent {
         if (slicerList.size() == 0) {
             return null;
         }
+        ensurePacked();
+        if (!boundsInRange(position, range)) {
+            return null;
+        }
+        RangeQuery query = rangeQueries.get();
+        int count = inRange(query, position, range);
+        Slicer nearest = null;
+        if (fixedPoint) {
+            long minDistanceSquared = Long.MAX_VALUE;
+            for (int i = 0; i < count; i++) {
+                Slicer slicer = slicerList.get(query.indices[i]);
+                if (!slicer.isDoomed() && query.distancesSquared[i] < minDistanceSquared) {
+                    minDistanceSquared = query.distancesSquared[i];
+                    nearest = slicer;
+                }
+            }
+            return nearest;
+        }
+        double minDistance = Double.MAX_VALUE;
+        for (int i = 0; i < count; i++) {
+            Slicer slicer = slicerList.get(query.indices[i]);
+            if (!slicer.isDoomed() && query.distances[i] < minDistance) {
+                minDistance = query.distances[i];
+                nearest = slicer;
+            }
+        }
+        return nearest;
+    }
+
+    /**
+     * Finds the nearest slicer to a point in the same way as {@link WaveEvent#getNearestSlicerInRange(Point, int)},
+     * but only checks slicers whose progress along the lane is inside the given intervals, and any slicers that have
+     * drifted further than {@link PathCoverage#MARGIN} from the lane.
+     * @param position point centred in search.
+     * @param range radius to search around point.
+     * @param intervals parts of this event's lane in range of the point (see {@link PathCoverage#getIntervals(int)}).
+     * @return nearest Slicer, otherwise null if none in range.
+     */
+    public Slicer getNearestSlicerInRange(Point position, int range, double[] intervals) {
+        if (slicerList.size() == 0) {
+            return null;
+        }
+        ensurePacked();
+        if (!boundsInRange(position, range)) {
+            return null;
+        }
+        if (fixedPoint) {
+            return getNearestSlicerInRangeFixed(position, range, intervals);
+        }
         double minDistance = Double.MAX_VALUE;
-        int index = -1;
-        for (int i = 0; i < slicerList.size(); i++) {
-            double distance = slicerList.get(i).getPosition().distanceTo(position);
-            if (distance < minDistance && distance < range) {
+        int nearest = -1;
+        for (int k = 0; k < intervals.length; k += 2) {
+            // Keys sort furthest along first, so the end of the interval comes first
+            int from = searchProgress((long) progressBits(intervals[k + 1]) << 32);
+            int to = searchProgress((long) progressBits(intervals[k]) << 32 | 0xFFFFFFFFL);
+            for (int j = from; j < to; j++) {
+                int i = (int) progressKeys[j];
+                double distance = distanceTo(i, position);
+                // Ties go to the slicer first in slicerList, as when checking every slicer
+                if (distance < range && (distance < minDistance || distance == minDistance && i < nearest)
+                        && !slicerList.get(i).isDoomed()) {
+                    minDistance = distance;
+                    nearest = i;
+                }
+            }
+        }
+        for (int j = 0; j < driftedCount; j++) {
+            int i = drifted[j];
+            double distance = distanceTo(i, position);
+            if (distance < range && (distance < minDistance || distance == minDistance && i < nearest)
+                    && !slicerList.get(i).isDoomed()) {
                 minDistance = distance;
-                index = i;
+                nearest = i;
             }
         }
-        if (index != -1) {
-            return slicerList.get(index);
-        } else {
-            return null;
+        return nearest < 0 ? null : slicerList.get(nearest);
+    }
+
+    /**
+     * Measures how far a slicer is from a point in the same way as this event's range queries, so the nearest slicers
+     * found by several events can be compared.
+     * @param slicer the slicer.
+     * @param position point centred in search.
+     * @return the distance, or in fixed point mode the squared fixed point distance.
+     */
+    public double rangeDistance(Slicer slicer, Point position) {
+        if (fixedPoint) {
+            return FixedPoint.lengthSquared(FixedPoint.toFixed(slicer.getPosition().x) - FixedPoint.toFixed(position.x),
+                    FixedPoint.toFixed(slicer.getPosition().y) - FixedPoint.toFixed(position.y));
         }
+        return slicer.getPosition().distanceTo(position);
+    }
+
+    private double distanceTo(int i, Point position) {
+        double dx = packedX[i] - position.x;
+        double dy = packedY[i] - position.y;
+        return Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /**
+     * Checks cheaply if {@link WaveEvent#getNearestSlicerInRange(Point, int, double[])} could find a slicer, from the
+     * bounding box and from whether any slicer's progress is inside the intervals. Only slicers that have drifted off
+     * the lane have their distances measured.
+     * @param position point centred in search.
+     * @param range radius to search around point.
+     * @param intervals parts of this event's lane in range of the point (see {@link PathCoverage#getIntervals(int)}).
+     * @return false if no slicer can be in range, true otherwise.
+     */
+    public boolean mayHaveSlicerInRange(Point position, int range, double[] intervals) {
+        if (slicerList.size() == 0) {
+            return false;
+        }
+        ensurePacked();
+        if (!boundsInRange(position, range)) {
+            return false;
+        }
+        for (int k = 0; k < intervals.length; k += 2) {
+            if (searchProgress((long) progressBits(intervals[k + 1]) << 32)
+                    < searchProgress((long) progressBits(intervals[k]) << 32 | 0xFFFFFFFFL)) {
+                return true;
+            }
+        }
+        // A pixel of slack, as for the bounding box
+        double reach = range + 1;
+        for (int j = 0; j < driftedCount; j++) {
+            int i = drifted[j];
+            double dx = (fixedPoint ? FixedPoint.toDouble(fixedX[i]) : packedX[i]) - position.x;
+            double dy = (fixedPoint ? FixedPoint.toDouble(fixedY[i]) : packedY[i]) - position.y;
+            if (dx * dx + dy * dy < reach * reach) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Checks if any slicer has drifted further than {@link PathCoverage#MARGIN} from the lane, so that it could be in
+     * range of a point even where the point's {@link PathCoverage} doesn't reach the lane.
+     * @return true if any slicer has drifted off the lane.
+     */
+    public boolean hasDriftedSlicers() {
+        if (slicerList.size() == 0) {
+            return false;
+        }
+        ensurePacked();
+        return driftedCount > 0;
+    }
+
+    /**
+     * Fixed point version of {@link WaveEvent#getNearestSlicerInRange(Point, int, double[])}, comparing squared
+     * distances. Call after {@link WaveEvent#ensurePacked()}.
+     */
+    private Slicer getNearestSlicerInRangeFixed(Point position, int range, double[] intervals) {
+        int px = FixedPoint.toFixed(position.x);
+        int py = FixedPoint.toFixed(position.y);
+        long rangeSquared = FixedPoint.rangeSquared(range);
+        long minDistanceSquared = Long.MAX_VALUE;
+        int nearest = -1;
+        for (int k = 0; k < intervals.length; k += 2) {
+            int from = searchProgress((long) progressBits(intervals[k + 1]) << 32);
+            int to = searchProgress((long) progressBits(intervals[k]) << 32 | 0xFFFFFFFFL);
+            for (int j = from; j < to; j++) {
+                int i = (int) progressKeys[j];
+                long distanceSquared = FixedPoint.lengthSquared(fixedX[i] - px, fixedY[i] - py);
+                if (distanceSquared < rangeSquared && (distanceSquared < minDistanceSquared
+                        || distanceSquared == minDistanceSquared && i < nearest) && !slicerList.get(i).isDoomed()) {
+                    minDistanceSquared = distanceSquared;
+                    nearest = i;
+                }
+            }
+        }
+        for (int j = 0; j < driftedCount; j++) {
+            int i = drifted[j];
+            long distanceSquared = FixedPoint.lengthSquared(fixedX[i] - px, fixedY[i] - py);
+            if (distanceSquared < rangeSquared && (distanceSquared < minDistanceSquared
+                    || distanceSquared == minDistanceSquared && i < nearest) && !slicerList.get(i).isDoomed()) {
+                minDistanceSquared = distanceSquared;
+                nearest = i;
+            }
+        }
+        return nearest < 0 ? null : slicerList.get(nearest);
+    }
+
+    /**
+     * Finds every packed slicer strictly within range of a point with {@link SlicerKernels}, in fixed point in fixed
+     * point mode. Call after {@link WaveEvent#ensurePacked()}.
+     * @param query receives the slicers' indices, and their distances (or squared fixed point distances).
+     * @param position point centred in search.
+     * @param range radius to search around point.
+     * @return number of slicers in range.
+     */
+    private int inRange(RangeQuery query, Point position, int range) {
+        query.ensureCapacity(packedCount, fixedPoint);
+        if (fixedPoint) {
+            return kernels.inRangeFixed(fixedX, fixedY, packedCount, FixedPoint.toFixed(position.x),
+                    FixedPoint.toFixed(position.y), FixedPoint.rangeSquared(range), query.indices,
+                    query.distancesSquared);
+        }
+        return kernels.inRange(packedX, packedY, packedCount, position.x, position.y, range, query.indices,
+                query.distances);
     }
 
     /**
@@ -204,10 +809,14 @@ public class WaveEvent {
         if (slicerList.size() == 0) {
             return slicerList;
         }
-        for (Slicer slicer : slicerList) {
-            if (slicer.getPosition().distanceTo(position) < range) {
-                nearbySlicerList.add(slicer);
-            }
+        ensurePacked();
+        if (!boundsInRange(position, range)) {
+            return nearbySlicerList;
+        }
+        RangeQuery query = rangeQueries.get();
+        int count = inRange(query, position, range);
+        for (int i = 0; i < count; i++) {
+            nearbySlicerList.add(slicerList.get(query.indices[i]));
         }
         return nearbySlicerList;
     }
@@ -224,10 +833,88 @@ public class WaveEvent {
         }
     }
 
+    /**
+     * Restores the event's timers and counters, e.g. when loading a {@link GameSnapshot}.
+     * Slicers still alive should be added to {@link WaveEvent#getSlicerList()} separately.
+     * @param currentTimer frames left until the next spawn (or until a delay event ends).
+     * @param slicersToSpawnRemaining number of slicers still to spawn.
+     * @param waveEventComplete true if the event has finished.
+     */
+    public void restore(double currentTimer, int slicersToSpawnRemaining, boolean waveEventComplete) {
+        this.currentTimer = currentTimer;
+        this.slicersToSpawnRemaining = slicersToSpawnRemaining;
+        this.waveEventComplete = waveEventComplete;
+        this.packedValid = false;
+        this.fixedCount = 0;
+    }
+
+    /**
+     * Makes this event start at the same time as the event before it, instead of waiting for it, and makes the next
+     * event wait for both. Used for events that share their slicers out across several lanes.
+     * @param startsWithPrevious true to start with the previous event, false to wait for it.
+     */
+    public void setStartsWithPrevious(boolean startsWithPrevious) {
+        this.startsWithPrevious = startsWithPrevious;
+    }
+
+    public boolean startsWithPrevious() {
+        return startsWithPrevious;
+    }
+
+    /**
+     * Gives the event the game's random number generator and slicer pool (see {@link Level#bind}). Delay events
+     * don't use them.
+     * @param random game random number generator, used when slicers spawn children.
+     * @param slicerPool pool to take new slicers from and return dead slicers to.
+     */
+    public void bind(GameRandom random, SlicerPool slicerPool) {
+        if (!isDelayEvent) {
+            this.random = random;
+            this.slicerPool = slicerPool;
+        }
+    }
+
+    /**
+     * Turns fixed point mode on or off. This should only be changed before the event's slicers spawn.
+     * @param fixedPoint true to move and range check slicers in fixed point, false to use doubles.
+     */
+    public void setFixedPoint(boolean fixedPoint) {
+        if (this.fixedPoint != fixedPoint) {
+            this.fixedPoint = fixedPoint;
+            progressKeys = new long[0];
+            packedValid = false;
+            fixedCount = 0;
+        }
+    }
+
+    public boolean isFixedPoint() {
+        return fixedPoint;
+    }
+
     public List<Slicer> getSlicerList() {
         return slicerList;
     }
 
+    public List<Point> getPath() {
+        return path;
+    }
+
+    public int getLane() {
+        return lane;
+    }
+
+    public double[] getArcLengths() {
+        return arcLengths;
+    }
+
+    public double getCurrentTimer() {
+        return currentTimer;
+    }
+
+    public int getSlicersToSpawnRemaining() {
+        return slicersToSpawnRemaining;
+    }
+
     public boolean isWaveEventComplete() {
         return waveEventComplete;
     }
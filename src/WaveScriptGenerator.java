@@ -0,0 +1,144 @@
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Generates synthetic wave scripts in the same format as "waves.txt", for stress testing the engine with far more
+ * slicers than the stock waves. Each wave's slicers are split into spawn events by type, separated by delay events.
+ * Spawn delays shorter than one frame (about 16.7ms) spawn several slicers per frame, so very large waves still
+ * spawn quickly.
+ * <p>
+ * Usage: {@code java WaveScriptGenerator <output file> [key=value ...]}, with keys:
+ * <ul>
+ *     <li>{@code waves}: number of waves (default 10)</li>
+ *     <li>{@code slicers}: slicers in the first wave (default 100)</li>
+ *     <li>{@code growth}: multiplier for the number of slicers in each following wave (default 2)</li>
+ *     <li>{@code mix}: type weights, e.g. {@code slicer:70,superslicer:20,megaslicer:8,apexslicer:2} (default all slicers)</li>
+ *     <li>{@code spawnDelay}: milliseconds between spawns within an event (default 100)</li>
+ *     <li>{@code eventDelay}: milliseconds between spawn events, 0 for none (default 1000)</li>
+ *     <li>{@code lane}: lane to spawn on, numbered from 1, or {@code all} to share slicers across every lane
+ *     (default the first lane)</li>
+ * </ul>
+ */
+public class WaveScriptGenerator {
+    private int waves = 10;
+    private long slicers = 100;
+    private double growth = 2;
+    private final Map<String, Double> mix = new LinkedHashMap<>();
+    private double spawnDelay = 100;
+    private double eventDelay = 1000;
+    private String lane = null;
+
+    /**
+     * Creates a generator with default settings: 10 waves of regular slicers, doubling from 100.
+     */
+    public WaveScriptGenerator() {
+        mix.put("slicer", 1.0);
+    }
+
+    /**
+     * Generates a script from the command line.
+     * @param args output file, then settings as key=value pairs.
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 1) {
+            System.out.println("Usage: WaveScriptGenerator <output file> [waves=N] [slicers=N] [growth=X] [mix=type:weight,...] [spawnDelay=ms] [eventDelay=ms] [lane=N|all]");
+            System.exit(2);
+        }
+        WaveScriptGenerator generator = new WaveScriptGenerator();
+        Settings.apply(args, 1, generator::set);
+        generator.write(args[0]);
+    }
+
+    /**
+     * Changes one setting, using the same keys as the command line.
+     * @param key setting name.
+     * @param value setting value.
+     */
+    public void set(String key, String value) {
+        switch (key) {
+            case "waves":
+                waves = Integer.parseInt(value);
+                break;
+            case "slicers":
+                slicers = Long.parseLong(value);
+                break;
+            case "growth":
+                growth = Double.parseDouble(value);
+                break;
+            case "mix":
+                mix.clear();
+                for (String entry : value.split(",")) {
+                    String[] typeWeight = entry.split(":");
+                    mix.put(typeWeight[0], Double.parseDouble(typeWeight[1]));
+                }
+                break;
+            case "spawnDelay":
+                spawnDelay = Double.parseDouble(value);
+                break;
+            case "eventDelay":
+                eventDelay = Double.parseDouble(value);
+                break;
+            case "lane":
+                lane = value;
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown setting " + key);
+        }
+    }
+
+    /**
+     * Generates the script's lines.
+     * @return lines in waves.txt format.
+     */
+    public List<String> generate() {
+        List<String> lines = new ArrayList<>();
+        double totalWeight = mix.values().stream().mapToDouble(Double::doubleValue).sum();
+        double waveSlicers = slicers;
+        for (int wave = 1; wave <= waves; wave++) {
+            long remaining = Math.round(waveSlicers);
+            double weightRemaining = totalWeight;
+            boolean firstEvent = true;
+            for (Map.Entry<String, Double> type : mix.entrySet()) {
+                // Last type takes the rounding remainder
+                long count = weightRemaining <= type.getValue() ? remaining : Math.round(remaining * type.getValue() / weightRemaining);
+                weightRemaining -= type.getValue();
+                remaining -= count;
+                // Events hold an int count, so very large counts are split
+                while (count > 0) {
+                    long eventCount = Math.min(count, Integer.MAX_VALUE);
+                    if (!firstEvent && eventDelay > 0) {
+                        lines.add(wave + ",delay," + formatNumber(eventDelay));
+                    }
+                    lines.add(wave + ",spawn," + eventCount + "," + type.getKey() + "," + formatNumber(spawnDelay)
+                            + (lane == null ? "" : "," + lane));
+                    count -= eventCount;
+                    firstEvent = false;
+                }
+            }
+            waveSlicers *= growth;
+        }
+        return lines;
+    }
+
+    /**
+     * Generates the script and writes it to a file.
+     * @param fileDir file path to write to.
+     * @throws IOException if the file could not be written.
+     */
+    public void write(String fileDir) throws IOException {
+        try (PrintWriter writer = new PrintWriter(new FileWriter(fileDir))) {
+            for (String line : generate()) {
+                writer.println(line);
+            }
+        }
+    }
+
+    private static String formatNumber(double value) {
+        return value == Math.rint(value) ? Long.toString((long) value) : Double.toString(value);
+    }
+}